@@ -0,0 +1,63 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.AuditLog;
+import com.halilsahin.scratch.SpinEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Seeded spins with and without appending them to an audit log, to check that auditing keeps up with spinning.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuditLogBenchmark {
+
+    private SpinEngine engine;
+    private File file;
+    private AuditLog log;
+    private long seed;
+
+    @Setup
+    public void setUp(GameState state) throws IOException {
+        engine = new SpinEngine(state.game);
+        file = File.createTempFile("spins", ".audit");
+        file.delete();
+        log = AuditLog.open(file.toPath(), state.game);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        log.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int seededSpin() {
+        return engine.spinReward(100, seed++);
+    }
+
+    @Benchmark
+    public int auditedSpin() throws IOException {
+        long spinSeed = seed++;
+        int reward = engine.spinReward(100, spinSeed);
+        log.append(spinSeed, 100, engine.lastGrid(), engine.lastEvaluation());
+        return reward;
+    }
+}
@@ -0,0 +1,76 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.BatchEvaluator;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a batch of generated grids: one by one through {@link RewardCalculator}, and cell by cell through
+ * {@link BatchEvaluator} with the scalar and the Vector API kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchEvaluatorBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({"single", "scalar", "vector"})
+    public String backend;
+
+    private RewardCalculator calculator;
+    private RewardCalculator.Evaluation evaluation;
+    private Grid[] grids;
+    private BatchEvaluator evaluator;
+    private final int[] rewards = new int[BATCH];
+    private final long[] combinations = new long[BATCH];
+    private final int[] bonusSymbols = new int[BATCH];
+
+    @Setup
+    public void setUp(GameState state) {
+        if ("vector".equals(backend) && !BatchEvaluator.isVectorAvailable()) {
+            throw new IllegalStateException("The Vector API backend is not available in this runtime");
+        }
+        MatrixGenerator generator = new MatrixGenerator(state.game, new SplittableRandom(42)::nextLong);
+        calculator = new RewardCalculator(state.game);
+        evaluation = new RewardCalculator.Evaluation(state.game);
+        evaluator = new BatchEvaluator(state.game, BATCH, "vector".equals(backend));
+        grids = new Grid[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            grids[i] = generator.generateGrid();
+            evaluator.setGrid(i, grids[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long evaluate() {
+        if ("single".equals(backend)) {
+            long total = 0;
+            for (Grid grid : grids) {
+                total += calculator.evaluate(grid, 100, evaluation);
+            }
+            return total;
+        }
+        return evaluator.evaluate(BATCH, 100, rewards, combinations, bonusSymbols);
+    }
+}
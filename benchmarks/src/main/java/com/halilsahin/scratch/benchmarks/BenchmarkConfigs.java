@@ -0,0 +1,198 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds synthetic square games and fixed matrices for the benchmarks.
+ *
+ * @author Halil Şahin
+ */
+public final class BenchmarkConfigs {
+
+    /**
+     * Bonus symbols of every synthetic game, in declaration order.
+     */
+    public static final List<String> BONUS_SYMBOLS = Arrays.asList("10x", "5x", "+1000", "+500", "MISS");
+
+    private BenchmarkConfigs() {
+    }
+
+    /**
+     * Creates a game in the style of the shipped configuration.
+     *
+     * @param size         the number of rows and columns
+     * @param symbols      the number of standard symbols
+     * @param combinations the number of win combinations; four of them are linear (rows, columns and both
+     *                     diagonals), the rest are same_symbols combinations starting at three symbols
+     * @return the configuration
+     */
+    public static Config create(int size, int symbols, int combinations) {
+        Config config = new Config();
+        config.setRows(size);
+        config.setColumns(size);
+
+        Map<String, Config.Symbol> symbolMap = new LinkedHashMap<>();
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < symbols; i++) {
+            Config.Symbol symbol = new Config.Symbol();
+            symbol.setType("standard");
+            symbol.setRewardMultiplier(symbols - i);
+            symbolMap.put(standardSymbol(i), symbol);
+            weights.put(standardSymbol(i), i + 1);
+        }
+        symbolMap.put("10x", bonus("multiply_reward", 10, null));
+        symbolMap.put("5x", bonus("multiply_reward", 5, null));
+        symbolMap.put("+1000", bonus("extra_bonus", 0, 1000));
+        symbolMap.put("+500", bonus("extra_bonus", 0, 500));
+        symbolMap.put("MISS", bonus("miss", 0, null));
+        config.setSymbols(symbolMap);
+
+        List<Config.StandardSymbolProbability> cells = new ArrayList<>();
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                Config.StandardSymbolProbability probability = new Config.StandardSymbolProbability();
+                probability.setRow(r);
+                probability.setColumn(c);
+                probability.setSymbols(weights);
+                cells.add(probability);
+            }
+        }
+        Config.BonusSymbolProbability bonusProbability = new Config.BonusSymbolProbability();
+        Map<String, Integer> bonusWeights = new LinkedHashMap<>();
+        for (int i = 0; i < BONUS_SYMBOLS.size(); i++) {
+            bonusWeights.put(BONUS_SYMBOLS.get(i), i + 1);
+        }
+        bonusProbability.setSymbols(bonusWeights);
+        Config.Probabilities probabilities = new Config.Probabilities();
+        probabilities.setStandardSymbols(cells);
+        probabilities.setBonusSymbols(bonusProbability);
+        config.setProbabilities(probabilities);
+
+        Map<String, Config.WinCombination> winCombinations = new LinkedHashMap<>();
+        int sameCombinations = Math.max(1, Math.min(combinations - 4, size * size - 2));
+        for (int i = 0; i < sameCombinations; i++) {
+            Config.WinCombination combination = new Config.WinCombination();
+            combination.setWhen("same_symbols");
+            combination.setGroup("same_symbols");
+            combination.setCount(3 + i);
+            combination.setRewardMultiplier(1 + i * 0.5);
+            winCombinations.put("same_symbol_" + (3 + i) + "_times", combination);
+        }
+        List<List<String>> horizontal = new ArrayList<>();
+        List<List<String>> vertical = new ArrayList<>();
+        List<String> leftToRight = new ArrayList<>();
+        List<String> rightToLeft = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            List<String> row = new ArrayList<>();
+            List<String> column = new ArrayList<>();
+            for (int j = 0; j < size; j++) {
+                row.add(i + ":" + j);
+                column.add(j + ":" + i);
+            }
+            horizontal.add(row);
+            vertical.add(column);
+            leftToRight.add(i + ":" + i);
+            rightToLeft.add(i + ":" + (size - 1 - i));
+        }
+        winCombinations.put("same_symbols_horizontally", linear(2, "horizontally_linear_symbols", horizontal));
+        winCombinations.put("same_symbols_vertically", linear(2, "vertically_linear_symbols", vertical));
+        winCombinations.put("same_symbols_diagonally_left_to_right",
+                linear(5, "ltr_diagonally_linear_symbols", Arrays.asList(leftToRight)));
+        winCombinations.put("same_symbols_diagonally_right_to_left",
+                linear(5, "rtl_diagonally_linear_symbols", Arrays.asList(rightToLeft)));
+        config.setWinCombinations(winCombinations);
+        return config;
+    }
+
+    /**
+     * Adds a linear combination of slot-style paylines to a game: every line takes one cell per column, starting in a
+     * random row and moving at most one row up or down per column. Lines are generated from a fixed seed.
+     *
+     * @param config   the game to extend
+     * @param paylines the number of paylines
+     * @return the configuration
+     */
+    public static Config withPaylines(Config config, int paylines) {
+        SplittableRandom random = new SplittableRandom(paylines);
+        int rows = config.getRows();
+        List<List<String>> areas = new ArrayList<>();
+        for (int i = 0; i < paylines; i++) {
+            List<String> line = new ArrayList<>();
+            int row = random.nextInt(rows);
+            for (int c = 0; c < config.getColumns(); c++) {
+                line.add(row + ":" + c);
+                row = Math.max(0, Math.min(rows - 1, row + random.nextInt(3) - 1));
+            }
+            areas.add(line);
+        }
+        Map<String, Config.WinCombination> winCombinations = new LinkedHashMap<>(config.getWinCombinations());
+        winCombinations.put("same_symbols_on_payline", linear(3, "payline_linear_symbols", areas));
+        config.setWinCombinations(winCombinations);
+        return config;
+    }
+
+    /**
+     * Creates a fixed matrix for the given game.
+     *
+     * @param config   the game
+     * @param scenario one of {@code winning}, {@code losing} or {@code bonus-heavy}
+     * @return the matrix
+     */
+    public static String[][] matrix(Config config, String scenario) {
+        int rows = config.getRows();
+        int columns = config.getColumns();
+        int symbols = config.getSymbols().size() - BONUS_SYMBOLS.size();
+        String[][] matrix = new String[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int cell = r * columns + c;
+                switch (scenario) {
+                    case "winning":
+                        // The top-left symbol fills the first row, column and diagonal
+                        matrix[r][c] = r == 0 || c == 0 || r == c ? standardSymbol(0) : standardSymbol(1 + cell % (symbols - 1));
+                        break;
+                    case "losing":
+                        // Every standard symbol at most twice, bonus symbols elsewhere
+                        matrix[r][c] = cell < 2 * symbols ? standardSymbol(cell / 2) : "MISS";
+                        break;
+                    case "bonus-heavy":
+                        matrix[r][c] = cell % 2 == 0 ? BONUS_SYMBOLS.get(cell / 2 % BONUS_SYMBOLS.size())
+                                : standardSymbol(cell % symbols);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown scenario: " + scenario);
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private static String standardSymbol(int index) {
+        return "S" + index;
+    }
+
+    private static Config.Symbol bonus(String impact, double multiplier, Integer extra) {
+        Config.Symbol symbol = new Config.Symbol();
+        symbol.setType("bonus");
+        symbol.setImpact(impact);
+        symbol.setRewardMultiplier(multiplier);
+        symbol.setExtra(extra);
+        return symbol;
+    }
+
+    private static Config.WinCombination linear(double multiplier, String group, List<List<String>> areas) {
+        Config.WinCombination combination = new Config.WinCombination();
+        combination.setWhen("linear_symbols");
+        combination.setGroup(group);
+        combination.setRewardMultiplier(multiplier);
+        combination.setCoveredAreas(areas);
+        return combination;
+    }
+}
@@ -0,0 +1,40 @@
+package com.halilsahin.scratch.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.module.ModuleFinder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the benchmarks with the standard JMH command line, always adding the GC profiler so that
+ * allocation rates are reported next to the timings. Where the runtime ships the Vector API, it is added to the
+ * forked JVMs so that the vector batch backend can be measured.
+ *
+ * @author Halil Şahin
+ */
+public final class BenchmarkRunner {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        List<String> jvmArgsAppend = new ArrayList<>(commandLine.getJvmArgsAppend().orElse(new ArrayList<>()));
+        if (ModuleFinder.ofSystem().find(VECTOR_MODULE).isPresent()) {
+            jvmArgsAppend.add("--add-modules=" + VECTOR_MODULE);
+        }
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend(jvmArgsAppend.toArray(new String[0]))
+                .build()).run();
+    }
+}
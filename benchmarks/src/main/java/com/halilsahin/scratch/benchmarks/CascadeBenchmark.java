@@ -0,0 +1,86 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Config;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.IncrementalEvaluator;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One cascade step: a few random cells are refilled and the grid is evaluated again, either from scratch with
+ * {@link RewardCalculator} or by updating an {@link IncrementalEvaluator}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CascadeBenchmark {
+
+    @Param({"3", "10"})
+    public int size;
+
+    @Param({"0", "100"})
+    public int paylines;
+
+    @Param({"3"})
+    public int changedCells;
+
+    private MatrixGenerator generator;
+    private RewardCalculator calculator;
+    private RewardCalculator.Evaluation evaluation;
+    private IncrementalEvaluator state;
+    private Grid grid;
+    private SplittableRandom random;
+    private int[] changed;
+
+    @Setup
+    public void setUp() {
+        Config config = BenchmarkConfigs.create(size, 12, 32);
+        CompiledGame game = CompiledGame.compile(paylines > 0 ? BenchmarkConfigs.withPaylines(config, paylines) : config);
+        random = new SplittableRandom(42);
+        generator = new MatrixGenerator(game, random::nextLong);
+        calculator = new RewardCalculator(game);
+        evaluation = new RewardCalculator.Evaluation(game);
+        grid = generator.generateGrid();
+        state = new IncrementalEvaluator(game);
+        state.load(grid);
+        changed = new int[changedCells];
+    }
+
+    private void refill() {
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = random.nextInt(grid.size());
+        }
+        generator.refill(grid, changed, changed.length);
+    }
+
+    @Benchmark
+    public int fullEvaluation() {
+        refill();
+        return calculator.evaluate(grid, 100, evaluation);
+    }
+
+    @Benchmark
+    public int incremental() {
+        refill();
+        state.update(grid, changed, changed.length);
+        return state.evaluate(100);
+    }
+}
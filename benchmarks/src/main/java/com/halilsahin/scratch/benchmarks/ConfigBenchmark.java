@@ -0,0 +1,68 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.halilsahin.scratch.BinaryConfig;
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Config;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a configuration file, as JSON and in its binary form, and compiling it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigBenchmark {
+
+    private File file;
+    private File binaryFile;
+    private Config config;
+
+    @Setup
+    public void setUp(GameState state) throws IOException {
+        file = File.createTempFile("config", ".json");
+        Files.write(file.toPath(), new ObjectMapper().writeValueAsBytes(state.config));
+        binaryFile = File.createTempFile("config", ".bin");
+        BinaryConfig.write(state.config, binaryFile.toPath());
+        config = state.config;
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        binaryFile.delete();
+    }
+
+    @Benchmark
+    public Config load() throws IOException {
+        return Config.load(file.getPath());
+    }
+
+    @Benchmark
+    public Config loadBinary() throws IOException {
+        return Config.load(binaryFile.getPath());
+    }
+
+    @Benchmark
+    public CompiledGame compile() {
+        return CompiledGame.compile(config);
+    }
+}
@@ -0,0 +1,80 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import com.halilsahin.scratch.SpinEngine;
+import com.halilsahin.scratch.SpinMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent spins against one shared game. {@code sharedGenerator} is a single
+ * {@link MatrixGenerator} whose {@link java.util.Random} every thread contends on; {@code engine} is a shared
+ * {@link SpinEngine} drawing from thread-local randomness, and {@code meteredEngine} the same engine recording
+ * {@link SpinMetrics}. Compare runs with {@code -t 1}, {@code -t 2}, ... up to the number of cores to see how each
+ * scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        MatrixGenerator generator;
+        RewardCalculator calculator;
+        SpinEngine engine;
+        SpinEngine meteredEngine;
+
+        @Setup
+        public void setUp(GameState state) {
+            generator = new MatrixGenerator(state.game);
+            calculator = new RewardCalculator(state.game);
+            engine = new SpinEngine(state.game);
+            meteredEngine = new SpinEngine(state.game, null, new SpinMetrics(state.game));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Local {
+        Grid grid;
+        RewardCalculator.Evaluation evaluation;
+
+        @Setup
+        public void setUp(GameState state) {
+            grid = Grid.of(state.game);
+            evaluation = new RewardCalculator.Evaluation(state.game);
+        }
+    }
+
+    @Benchmark
+    public int sharedGenerator(Shared shared, Local local) {
+        shared.generator.generateGrid(local.grid);
+        return shared.calculator.evaluate(local.grid, 100, local.evaluation);
+    }
+
+    @Benchmark
+    public int engine(Shared shared) {
+        return shared.engine.spinReward(100);
+    }
+
+    @Benchmark
+    public int meteredEngine(Shared shared) {
+        return shared.meteredEngine.spinReward(100);
+    }
+}
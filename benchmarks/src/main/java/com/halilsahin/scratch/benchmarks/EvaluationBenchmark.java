@@ -0,0 +1,55 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reward calculation on fixed matrices, through the {@code String[][]} API and the allocation-free grid path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+
+    @Param({"winning", "losing", "bonus-heavy"})
+    public String scenario;
+
+    private RewardCalculator calculator;
+    private String[][] matrix;
+    private Grid grid;
+    private RewardCalculator.Evaluation evaluation;
+
+    @Setup
+    public void setUp(GameState state) {
+        calculator = new RewardCalculator(state.game);
+        matrix = BenchmarkConfigs.matrix(state.config, scenario);
+        grid = Grid.fromMatrix(state.game, matrix);
+        evaluation = new RewardCalculator.Evaluation(state.game);
+    }
+
+    @Benchmark
+    public RewardCalculator.Result calculateReward() {
+        return calculator.calculateReward(matrix, 100);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return calculator.evaluate(grid, 100, evaluation);
+    }
+}
@@ -0,0 +1,35 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Config;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Synthetic game shared by the benchmarks, parameterized by grid size, symbol count and combination count.
+ *
+ * @author Halil Şahin
+ */
+@State(Scope.Benchmark)
+public class GameState {
+
+    @Param({"3", "5", "7", "10"})
+    public int size;
+
+    @Param({"6", "12"})
+    public int symbols;
+
+    @Param({"11", "32"})
+    public int combinations;
+
+    public Config config;
+    public CompiledGame game;
+
+    @Setup
+    public void setUp() {
+        config = BenchmarkConfigs.create(size, symbols, combinations);
+        game = CompiledGame.compile(config);
+    }
+}
@@ -0,0 +1,49 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matrix generation, both into a reused grid and as a freshly allocated {@code String[][]}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+
+    private MatrixGenerator generator;
+    private Grid grid;
+
+    @Setup
+    public void setUp(GameState state) {
+        generator = new MatrixGenerator(state.game, new SplittableRandom(42)::nextLong);
+        grid = Grid.of(state.game);
+    }
+
+    @Benchmark
+    public Grid generateGrid() {
+        generator.generateGrid(grid);
+        return grid;
+    }
+
+    @Benchmark
+    public String[][] generateMatrix() {
+        return generator.generateMatrix();
+    }
+}
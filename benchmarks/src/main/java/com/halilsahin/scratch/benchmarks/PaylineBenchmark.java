@@ -0,0 +1,73 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation cost of large grids with many paylines, averaged over a pool of generated grids.
+ * Fewer symbols mean more cells matching their neighbours, so comparing symbol counts at a fixed payline count
+ * shows how the cost follows matching cells rather than the number of paylines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PaylineBenchmark {
+
+    private static final int GRIDS = 1024;
+
+    @Param({"7", "10"})
+    public int size;
+
+    @Param({"4", "16"})
+    public int symbols;
+
+    @Param({"10", "100", "500"})
+    public int paylines;
+
+    private RewardCalculator calculator;
+    private Grid[] grids;
+    private RewardCalculator.Evaluation evaluation;
+
+    @Setup
+    public void setUp() {
+        CompiledGame game = CompiledGame.compile(
+                BenchmarkConfigs.withPaylines(BenchmarkConfigs.create(size, symbols, 11), paylines));
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(42)::nextLong);
+        grids = new Grid[GRIDS];
+        for (int i = 0; i < GRIDS; i++) {
+            grids[i] = generator.generateGrid();
+        }
+        calculator = new RewardCalculator(game);
+        evaluation = new RewardCalculator.Evaluation(game);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GRIDS)
+    public long evaluate() {
+        long total = 0;
+        for (Grid grid : grids) {
+            total += calculator.evaluate(grid, 100, evaluation);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,73 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Config;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.PayoutTable;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spins on small grids with and without a {@link PayoutTable}, with the stock combinations and with additional
+ * paylines. Grids are freshly generated, so the hit rate of the table is the one a long simulation or a server would
+ * see once the table has filled up.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PayoutTableBenchmark {
+
+    @Param({"3"})
+    public int size;
+
+    @Param({"4", "12"})
+    public int symbols;
+
+    @Param({"32"})
+    public int combinations;
+
+    @Param({"0", "100"})
+    public int paylines;
+
+    @Param({"0", "4"})
+    public int tableMiB;
+
+    private MatrixGenerator generator;
+    private RewardCalculator calculator;
+    private Grid grid;
+    private RewardCalculator.Evaluation evaluation;
+
+    @Setup
+    public void setUp() {
+        Config config = BenchmarkConfigs.create(size, symbols, combinations);
+        CompiledGame game = CompiledGame.compile(paylines > 0 ? BenchmarkConfigs.withPaylines(config, paylines) : config);
+        generator = new MatrixGenerator(game, new SplittableRandom(42)::nextLong);
+        calculator = tableMiB > 0 ? new RewardCalculator(game, new PayoutTable(game, (long) tableMiB << 20))
+                : new RewardCalculator(game);
+        grid = Grid.of(game);
+        evaluation = new RewardCalculator.Evaluation(game);
+    }
+
+    @Benchmark
+    public int spin() {
+        generator.generateGrid(grid);
+        return calculator.evaluate(grid, 100, evaluation);
+    }
+}
@@ -0,0 +1,64 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.NdjsonResultWriter;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a winning spin: pretty-printed through {@link RewardCalculator.Result#toString()}, and as
+ * NDJSON lines from the result or directly from the grid and evaluation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+    private RewardCalculator.Result result;
+    private Grid grid;
+    private RewardCalculator.Evaluation evaluation;
+    private NdjsonResultWriter writer;
+
+    @Setup
+    public void setUp(GameState state) {
+        RewardCalculator calculator = new RewardCalculator(state.game);
+        result = calculator.calculateReward(BenchmarkConfigs.matrix(state.config, "winning"), 100);
+        grid = Grid.fromMatrix(state.game, result.getMatrix());
+        evaluation = new RewardCalculator.Evaluation(state.game);
+        calculator.evaluate(grid, 100, evaluation);
+        writer = new NdjsonResultWriter(OutputStream.nullOutputStream(), state.game, 1024);
+    }
+
+    @Benchmark
+    public String resultToString() {
+        return result.toString();
+    }
+
+    @Benchmark
+    public NdjsonResultWriter ndjsonResult() throws IOException {
+        writer.write(result);
+        return writer;
+    }
+
+    @Benchmark
+    public NdjsonResultWriter ndjsonEvaluation() throws IOException {
+        writer.write(grid, evaluation);
+        return writer;
+    }
+}
@@ -0,0 +1,85 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.CompiledGame;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import com.halilsahin.scratch.SpecializedEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation cost of the interpreted calculator against the evaluator generated for the game, averaged over a pool
+ * of generated grids. Zero paylines leave only the same_symbols combinations of the synthetic game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpecializedEvaluatorBenchmark {
+
+    private static final int GRIDS = 1024;
+
+    @Param({"3", "10"})
+    public int size;
+
+    @Param({"8"})
+    public int symbols;
+
+    @Param({"0", "100", "500"})
+    public int paylines;
+
+    private RewardCalculator interpreted;
+    private RewardCalculator specialized;
+    private Grid[] grids;
+    private RewardCalculator.Evaluation evaluation;
+
+    @Setup
+    public void setUp() {
+        CompiledGame game = CompiledGame.compile(
+                BenchmarkConfigs.withPaylines(BenchmarkConfigs.create(size, symbols, 11), paylines));
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(42)::nextLong);
+        grids = new Grid[GRIDS];
+        for (int i = 0; i < GRIDS; i++) {
+            grids[i] = generator.generateGrid();
+        }
+        interpreted = new RewardCalculator(game);
+        specialized = new RewardCalculator(SpecializedEvaluator.compile(game));
+        evaluation = new RewardCalculator.Evaluation(game);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GRIDS)
+    public long interpreted() {
+        long total = 0;
+        for (Grid grid : grids) {
+            total += interpreted.evaluate(grid, 100, evaluation);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GRIDS)
+    public long specialized() {
+        long total = 0;
+        for (Grid grid : grids) {
+            total += specialized.evaluate(grid, 100, evaluation);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,60 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.BatchSpinner;
+import com.halilsahin.scratch.Grid;
+import com.halilsahin.scratch.MatrixGenerator;
+import com.halilsahin.scratch.RewardCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full spins: generation plus evaluation, as a single {@link RewardCalculator.Result} and in batches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SpinBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private MatrixGenerator generator;
+    private RewardCalculator calculator;
+    private BatchSpinner spinner;
+    private final int[] rewards = new int[BATCH];
+    private final long[] combinations = new long[BATCH];
+    private final int[] bonusSymbols = new int[BATCH];
+
+    @Setup
+    public void setUp(GameState state) {
+        generator = new MatrixGenerator(state.game, new SplittableRandom(42)::nextLong);
+        calculator = new RewardCalculator(state.game);
+        spinner = new BatchSpinner(new MatrixGenerator(state.game, new SplittableRandom(43)::nextLong), calculator);
+    }
+
+    @Benchmark
+    public RewardCalculator.Result spin() {
+        Grid grid = generator.generateGrid();
+        return calculator.calculateReward(grid, 100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long spinBatch() {
+        return spinner.spinBatch(BATCH, 100, rewards, combinations, bonusSymbols);
+    }
+}
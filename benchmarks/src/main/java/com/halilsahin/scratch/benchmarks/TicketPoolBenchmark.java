@@ -0,0 +1,69 @@
+package com.halilsahin.scratch.benchmarks;
+
+import com.halilsahin.scratch.SpinEngine;
+import com.halilsahin.scratch.TicketPool;
+import com.halilsahin.scratch.TicketPoolBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issuing a ticket from a pre-generated {@link TicketPool} compared with generating and evaluating a spin on demand.
+ * The pool is reopened whenever it sells out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TicketPoolBenchmark {
+
+    private static final int TICKETS = 1_000_000;
+
+    private SpinEngine engine;
+    private File file;
+    private TicketPool pool;
+
+    @Setup
+    public void setUp(GameState state) throws IOException {
+        engine = new SpinEngine(state.game);
+        file = File.createTempFile("tickets", ".pool");
+        new TicketPoolBuilder(state.game).build(file.toPath(), TICKETS, 100, 42L, 1);
+        pool = TicketPool.open(file.toPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int spin() {
+        return engine.spinReward(100);
+    }
+
+    @Benchmark
+    public int issueTicket() throws IOException {
+        long ticket = pool.next();
+        if (ticket < 0) {
+            pool.close();
+            pool = TicketPool.open(file.toPath());
+            ticket = pool.next();
+        }
+        return pool.reward(ticket);
+    }
+}
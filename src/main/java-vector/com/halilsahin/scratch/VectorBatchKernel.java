@@ -0,0 +1,66 @@
+package com.halilsahin.scratch;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BatchKernel} on the Vector API: every instruction handles the same cell of as many grids as the preferred
+ * vector shape holds bytes, e.g. 32 grids with AVX2.
+ * <p>
+ * Compiled only by the {@code vector} build profile and loaded reflectively by {@link BatchEvaluator}.
+ *
+ * @author Halil Şahin
+ */
+final class VectorBatchKernel implements BatchKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    // Below this width the Vector API is no faster than scalar code
+    private static final int MIN_LANES = 16;
+
+    VectorBatchKernel() {
+        int lanes = SPECIES.length();
+        if (lanes < MIN_LANES || Long.SIZE % lanes != 0) {
+            throw new UnsupportedOperationException("No suitable vector shape: " + lanes + " byte lanes");
+        }
+    }
+
+    @Override
+    public void count(byte[] cells, int capacity, int n, int symbols, byte[] counts) {
+        int lanes = SPECIES.length();
+        int cellCount = cells.length / capacity;
+        for (int symbol = 0; symbol < symbols; symbol++) {
+            byte value = (byte) symbol;
+            for (int g = 0; g < n; g += lanes) {
+                ByteVector sum = ByteVector.zero(SPECIES);
+                for (int cell = 0; cell < cellCount; cell++) {
+                    ByteVector v = ByteVector.fromArray(SPECIES, cells, cell * capacity + g);
+                    sum = sum.add((byte) 1, v.compare(VectorOperators.EQ, value));
+                }
+                sum.intoArray(counts, symbol * capacity + g);
+            }
+        }
+    }
+
+    @Override
+    public void matchAreas(byte[] cells, int capacity, int n, int[] areaOffsets, int[] areaCells, long[] hits) {
+        int lanes = SPECIES.length();
+        int words = capacity >>> 6;
+        for (int area = 0; area + 1 < areaOffsets.length; area++) {
+            int start = areaOffsets[area];
+            int end = areaOffsets[area + 1];
+            int first = areaCells[start] * capacity;
+            for (int g = 0; g < n; g += lanes) {
+                ByteVector anchor = ByteVector.fromArray(SPECIES, cells, first + g);
+                VectorMask<Byte> covered = SPECIES.maskAll(true);
+                for (int i = start + 1; i < end && covered.anyTrue(); i++) {
+                    covered = covered.and(ByteVector.fromArray(SPECIES, cells, areaCells[i] * capacity + g).eq(anchor));
+                }
+                long bits = covered.toLong() << (g & 63);
+                int index = area * words + (g >>> 6);
+                hits[index] = (g & 63) == 0 ? bits : hits[index] | bits;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.halilsahin.scratch;
+
+import java.util.Arrays;
+
+/**
+ * Draws outcomes from a fixed discrete distribution in constant time using Vose's alias method.
+ * <p>
+ * The table is built once from integer weights with exact integer arithmetic; a draw consumes 64 random bits,
+ * the upper half selecting a column and the lower half deciding between the column and its alias.
+ * Sampling never allocates, and its cost does not depend on the magnitude of the weights.
+ *
+ * @author Halil Şahin
+ */
+public final class AliasSampler {
+
+    private final int[] outcomes;
+    private final int[] aliases;
+    // Acceptance thresholds in [0, totalWeight]; a column is kept when the drawn value is below its threshold
+    private final long[] thresholds;
+    private final long totalWeight;
+    private final int[] weights;
+
+    /**
+     * Builds the alias table.
+     *
+     * @param outcomes the values returned by {@link #sample(long)}, parallel to the weights
+     * @param weights  the positive weights of the outcomes
+     * @throws IllegalArgumentException if the arrays are empty, differ in length or contain non-positive weights
+     */
+    public AliasSampler(int[] outcomes, int[] weights) {
+        if (outcomes.length == 0 || outcomes.length != weights.length) {
+            throw new IllegalArgumentException("Outcomes and weights must be non-empty and of equal length");
+        }
+        int n = weights.length;
+        long total = 0;
+        for (int weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weights must be positive");
+            }
+            total += weight;
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Total weight exceeds " + Integer.MAX_VALUE);
+        }
+
+        this.outcomes = outcomes.clone();
+        this.weights = weights.clone();
+        this.aliases = new int[n];
+        this.thresholds = new long[n];
+        this.totalWeight = total;
+
+        // Scale every weight by n so that a full column holds exactly the total weight
+        long[] scaled = new long[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = (long) weights[i] * n;
+            aliases[i] = i;
+            if (scaled[i] < total) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            thresholds[less] = scaled[less];
+            aliases[less] = more;
+            scaled[more] -= total - scaled[less];
+            if (scaled[more] < total) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // Whatever is left is full up to rounding
+        while (largeSize > 0) {
+            thresholds[large[--largeSize]] = total;
+        }
+        while (smallSize > 0) {
+            thresholds[small[--smallSize]] = total;
+        }
+    }
+
+    /**
+     * Draws an outcome.
+     *
+     * @param randomBits 64 uniformly distributed random bits
+     * @return the drawn outcome
+     */
+    public int sample(long randomBits) {
+        int column = (int) (((randomBits >>> 32) * thresholds.length) >>> 32);
+        long value = ((randomBits & 0xFFFFFFFFL) * totalWeight) >>> 32;
+        return value < thresholds[column] ? outcomes[column] : outcomes[aliases[column]];
+    }
+
+    /**
+     * Returns the number of outcomes in the distribution.
+     */
+    public int size() {
+        return outcomes.length;
+    }
+
+    public int outcome(int index) {
+        return outcomes[index];
+    }
+
+    public int weight(int index) {
+        return weights[index];
+    }
+
+    /**
+     * Returns the probability of the outcome at the given index.
+     */
+    public double probability(int index) {
+        return (double) weights[index] / totalWeight;
+    }
+
+    @Override
+    public String toString() {
+        return "AliasSampler{outcomes=" + Arrays.toString(outcomes) + ", weights=" + Arrays.toString(weights) + "}";
+    }
+}
@@ -0,0 +1,318 @@
+package com.halilsahin.scratch;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Append-only binary log of played spins, detailed enough to reproduce and verify every one of them.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header (magic, format version, cell count, record size) followed
+ * by fixed-width big-endian records:
+ * <pre>
+ *  offset  size   field
+ *       0     8   spin seed, see {@link SpinEngine#spinReward(int, long)}
+ *       8     8   fingerprint of the game version, see {@link CompiledGame#getFingerprint()}
+ *      16     4   betting amount
+ *      20     4   total reward
+ *      24     8   applied win combination ids, bit i for combination id i
+ *      32     1   ordinal of the bonus symbol in the grid, -1 if none
+ *      33 cells   symbol ordinals of the grid, row-major
+ * </pre>
+ * Fixed-width records make the log seekable by record number and cheap to write: {@link #append} copies one record
+ * into a direct buffer, and the buffer reaches the file channel in large writes whenever it fills up or
+ * {@link #flush()} is called. {@link #sync()} additionally forces the data to the storage device.
+ * <p>
+ * Appends are synchronized, so one log can be shared by all threads serving the same game. Opening an existing log
+ * appends to it; a torn record left behind by a crash is cut off first.
+ *
+ * @author Halil Şahin
+ */
+public class AuditLog implements Closeable, Flushable {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditLog.class.getName());
+
+    static final long MAGIC = 0x5343524155444954L; // "SCRAUDIT"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int CELLS_OFFSET = 33;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final int cells;
+    private final int recordSize;
+    private final ByteBuffer buffer;
+    private long records;
+
+    private AuditLog(FileChannel channel, int cells, long records) {
+        this.channel = channel;
+        this.cells = cells;
+        this.recordSize = CELLS_OFFSET + cells;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, recordSize));
+        this.records = records;
+    }
+
+    /**
+     * Opens a log for spins of the given game, creating it if it does not exist.
+     *
+     * @param path the log file
+     * @param game the game whose spins will be logged; later versions of it may be logged as well as long as the
+     *             grid size stays the same
+     * @return the opened log, positioned at its end
+     * @throws IOException if the file cannot be opened or holds a log for a different grid size
+     */
+    public static AuditLog open(Path path, CompiledGame game) throws IOException {
+        if (game.getCombinationCount() > Long.SIZE) {
+            throw new IllegalArgumentException("Audit logs support at most " + Long.SIZE + " win combinations");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            int recordSize = CELLS_OFFSET + game.cells;
+            long size = channel.size();
+            if (size == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(game.cells).putInt(recordSize).putInt(0);
+                header.flip();
+                writeFully(channel, header, 0);
+                channel.position(HEADER_SIZE);
+                return new AuditLog(channel, game.cells, 0);
+            }
+            int cells = readHeader(channel, path);
+            if (cells != game.cells) {
+                throw new IOException("Audit log " + path + " holds grids of " + cells + " cells, the game has " + game.cells);
+            }
+            long records = (size - HEADER_SIZE) / recordSize;
+            long end = HEADER_SIZE + records * recordSize;
+            if (end != size) {
+                LOGGER.warning("Truncating torn record at the end of audit log " + path);
+                channel.truncate(end);
+            }
+            channel.position(end);
+            return new AuditLog(channel, cells, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing log for reading.
+     *
+     * @param path the log file
+     * @return a reader positioned before the first record
+     * @throws IOException if the file cannot be read or is not an audit log
+     */
+    public static Reader read(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            int cells = readHeader(channel, path);
+            channel.position(HEADER_SIZE);
+            return new Reader(channel, cells);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends the record of one spin.
+     *
+     * @param seed       the seed the spin was generated from
+     * @param betAmount  the betting amount
+     * @param grid       the generated grid
+     * @param evaluation the evaluation of the grid
+     * @throws IOException if writing to the file fails
+     */
+    public synchronized void append(long seed, int betAmount, Grid grid, RewardCalculator.Evaluation evaluation)
+            throws IOException {
+        if (grid.cells.length != cells) {
+            throw new IllegalArgumentException("Grid size does not match the audit log");
+        }
+        if (buffer.remaining() < recordSize) {
+            drain();
+        }
+        buffer.putLong(seed)
+                .putLong(evaluation.game.fingerprint)
+                .putInt(betAmount)
+                .putInt(evaluation.getReward())
+                .putLong(evaluation.winningCombinationMask())
+                .put((byte) evaluation.getBonusSymbol())
+                .put(grid.cells);
+        records++;
+    }
+
+    /**
+     * Returns the number of records in the log, including buffered ones.
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Hands all buffered records to the operating system.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        drain();
+    }
+
+    /**
+     * Writes all buffered records and forces them to the storage device.
+     */
+    public synchronized void sync() throws IOException {
+        drain();
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not an audit log: " + path);
+            }
+        }
+        header.flip();
+        if (header.getLong() != MAGIC) {
+            throw new IOException("Not an audit log: " + path);
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported audit log version " + version + " in " + path);
+        }
+        int cells = header.getInt();
+        int recordSize = header.getInt();
+        if (cells <= 0 || recordSize != CELLS_OFFSET + cells) {
+            throw new IOException("Corrupt audit log header in " + path);
+        }
+        return cells;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            position += channel.write(data, position);
+        }
+    }
+
+    /**
+     * Sequential reader of an audit log. The accessors describe the record most recently read by {@link #next()}.
+     */
+    public static final class Reader implements Closeable {
+        private final FileChannel channel;
+        private final int recordSize;
+        private final ByteBuffer buffer;
+        private final byte[] cells;
+        private long seed;
+        private long fingerprint;
+        private int betAmount;
+        private int reward;
+        private long combinationMask;
+        private int bonusSymbol;
+
+        private Reader(FileChannel channel, int cells) {
+            this.channel = channel;
+            this.recordSize = CELLS_OFFSET + cells;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, recordSize));
+            this.buffer.flip();
+            this.cells = new byte[cells];
+        }
+
+        /**
+         * Reads the next record.
+         *
+         * @return false at the end of the log
+         * @throws IOException if reading fails or the log ends in a torn record
+         */
+        public boolean next() throws IOException {
+            if (buffer.remaining() < recordSize) {
+                buffer.compact();
+                while (buffer.position() < recordSize) {
+                    if (channel.read(buffer) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (buffer.remaining() == 0) {
+                    return false;
+                }
+                if (buffer.remaining() < recordSize) {
+                    throw new EOFException("Audit log ends in a torn record");
+                }
+            }
+            seed = buffer.getLong();
+            fingerprint = buffer.getLong();
+            betAmount = buffer.getInt();
+            reward = buffer.getInt();
+            combinationMask = buffer.getLong();
+            bonusSymbol = buffer.get();
+            buffer.get(cells);
+            return true;
+        }
+
+        public int getCells() {
+            return cells.length;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public int getBetAmount() {
+            return betAmount;
+        }
+
+        public int getReward() {
+            return reward;
+        }
+
+        public long getCombinationMask() {
+            return combinationMask;
+        }
+
+        public int getBonusSymbol() {
+            return bonusSymbol;
+        }
+
+        /**
+         * Returns the ordinal of the symbol at the given row-major cell of the recorded grid.
+         */
+        public int cell(int index) {
+            return cells[index];
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
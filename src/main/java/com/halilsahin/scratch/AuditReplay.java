@@ -0,0 +1,152 @@
+package com.halilsahin.scratch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifies an {@link AuditLog} by replaying every recorded spin.
+ * <p>
+ * Each record is matched to the configuration it was played with by fingerprint. Its grid is regenerated from the
+ * recorded seed, compared cell by cell with the recorded grid, and evaluated again; the reward, applied combinations
+ * and bonus symbol must all match the record. Any difference, whether from a tampered log, a changed configuration
+ * or a change in the generator or calculator, is reported as a mismatch.
+ *
+ * @author Halil Şahin
+ */
+public class AuditReplay {
+
+    private static final Logger LOGGER = Logger.getLogger(AuditReplay.class.getName());
+    private static final int MAX_REPORTED_MISMATCHES = 100;
+
+    private final Map<Long, Replayer> replayers = new HashMap<>();
+
+    /**
+     * Creates a replay tool that knows the given game versions.
+     *
+     * @param games every configuration version the log may contain
+     */
+    public AuditReplay(List<CompiledGame> games) {
+        for (CompiledGame game : games) {
+            replayers.put(game.getFingerprint(), new Replayer(game));
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option logOption = new Option("a", "audit-log", true, "audit log to verify");
+        logOption.setRequired(true);
+        options.addOption(logOption);
+        Option configOption = new Option("c", "config", true, "config file path, may be repeated for every version in the log");
+        configOption.setRequired(true);
+        options.addOption(configOption);
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: " + e.getMessage(), e);
+            new HelpFormatter().printHelp("audit-replay", options);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            List<CompiledGame> games = new ArrayList<>();
+            for (String configPath : cmd.getOptionValues("config")) {
+                games.add(CompiledGame.compile(Config.load(configPath)));
+            }
+            ReplayReport report = new AuditReplay(games).replay(Paths.get(cmd.getOptionValue("audit-log")));
+            LOGGER.info(report.toString());
+            if (!report.isClean()) {
+                System.exit(2);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read: " + e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays every record of the given log.
+     *
+     * @param path the audit log
+     * @return the verification summary
+     * @throws IOException if the log cannot be read
+     */
+    public ReplayReport replay(Path path) throws IOException {
+        long records = 0;
+        long verified = 0;
+        long mismatches = 0;
+        long unknownVersions = 0;
+        List<Long> mismatchedRecords = new ArrayList<>();
+
+        try (AuditLog.Reader reader = AuditLog.read(path)) {
+            while (reader.next()) {
+                Replayer replayer = replayers.get(reader.getFingerprint());
+                if (replayer == null || replayer.game.cells != reader.getCells()) {
+                    unknownVersions++;
+                } else if (replayer.matches(reader)) {
+                    verified++;
+                } else {
+                    mismatches++;
+                    if (mismatchedRecords.size() < MAX_REPORTED_MISMATCHES) {
+                        mismatchedRecords.add(records);
+                    }
+                }
+                records++;
+            }
+        }
+
+        ReplayReport report = new ReplayReport();
+        report.setRecords(records);
+        report.setVerified(verified);
+        report.setMismatches(mismatches);
+        report.setUnknownVersions(unknownVersions);
+        report.setMismatchedRecords(mismatchedRecords);
+        return report;
+    }
+
+    private static final class Replayer {
+        private final CompiledGame game;
+        private final MatrixGenerator generator;
+        private final RewardCalculator calculator;
+        private final Grid grid;
+        private final RewardCalculator.Evaluation evaluation;
+        private final SplitMix64 random = new SplitMix64(0);
+
+        private Replayer(CompiledGame game) {
+            this.game = game;
+            this.generator = new MatrixGenerator(game, random);
+            this.calculator = new RewardCalculator(game);
+            this.grid = Grid.of(game);
+            this.evaluation = new RewardCalculator.Evaluation(game);
+        }
+
+        private boolean matches(AuditLog.Reader record) {
+            generator.generateGrid(grid, random.reset(record.getSeed()));
+            for (int cell = 0; cell < grid.cells.length; cell++) {
+                if (grid.cells[cell] != record.cell(cell)) {
+                    return false;
+                }
+            }
+            int reward = calculator.evaluate(grid.cells, record.getBetAmount(), evaluation);
+            return reward == record.getReward()
+                    && evaluation.winningCombinationMask() == record.getCombinationMask()
+                    && evaluation.getBonusSymbol() == record.getBonusSymbol();
+        }
+    }
+}
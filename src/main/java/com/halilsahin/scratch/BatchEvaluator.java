@@ -0,0 +1,328 @@
+package com.halilsahin.scratch;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Evaluates many grids at once for throughput-bound jobs such as RTP simulation.
+ * <p>
+ * Grids are stored cell by cell, so that the same cell of consecutive grids is contiguous in memory. Symbol
+ * histograms and covered-area matches are then computed for a whole batch by a {@link BatchKernel}, which uses
+ * SIMD instructions through the Vector API when it is available, and the rewards are settled per grid from those
+ * results. Rewards, applied combinations and bonus symbols are identical to {@link RewardCalculator}.
+ * <p>
+ * The Vector API backend is compiled on JDK 17 and newer and needs {@code --add-modules jdk.incubator.vector} at
+ * runtime; without it, or with {@code -Dscratch.vector=false}, the scalar backend is used. An evaluator is not
+ * thread-safe; use one per thread.
+ *
+ * @author Halil Şahin
+ */
+public final class BatchEvaluator {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchEvaluator.class.getName());
+    private static final BatchKernel VECTOR_KERNEL = loadVectorKernel();
+
+    private final CompiledGame game;
+    private final RewardCalculator calculator;
+    private final BatchKernel kernel;
+    private final int capacity;
+    private final byte[] cells;
+    private final byte[] counts;
+    private final long[] hits;
+    private final int[] linearCombinations;
+
+    /**
+     * Creates an evaluator using the Vector API backend if available.
+     *
+     * @param game     the compiled game
+     * @param capacity the maximum number of grids per batch, rounded up to a multiple of 64
+     */
+    public BatchEvaluator(CompiledGame game, int capacity) {
+        this(game, capacity, true);
+    }
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param game        the compiled game
+     * @param capacity    the maximum number of grids per batch, rounded up to a multiple of 64
+     * @param allowVector whether the Vector API backend may be used
+     * @throws IllegalArgumentException if the game is not {@link #isSupported(CompiledGame) supported}
+     */
+    public BatchEvaluator(CompiledGame game, int capacity, boolean allowVector) {
+        if (!isSupported(game)) {
+            throw new IllegalArgumentException("Batch evaluation supports at most " + Byte.MAX_VALUE + " cells and "
+                    + Long.SIZE + " win combinations");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.game = game;
+        this.calculator = new RewardCalculator(game);
+        this.kernel = allowVector && VECTOR_KERNEL != null ? VECTOR_KERNEL : new ScalarBatchKernel();
+        this.capacity = (capacity + 63) & ~63;
+        this.cells = new byte[game.cells * this.capacity];
+        this.counts = new byte[game.getSymbolCount() * this.capacity];
+        this.hits = new long[(game.areaOffsets.length - 1) * (this.capacity >>> 6)];
+        this.linearCombinations = new int[game.getSymbolCount() * this.capacity];
+    }
+
+    /**
+     * Returns whether batches can be evaluated for the given game: symbol counts are kept in bytes and applied
+     * combinations reported as a 64-bit mask.
+     */
+    public static boolean isSupported(CompiledGame game) {
+        return game.cells <= Byte.MAX_VALUE && game.getCombinationCount() <= Long.SIZE;
+    }
+
+    /**
+     * Returns whether the Vector API backend is available in this runtime.
+     */
+    public static boolean isVectorAvailable() {
+        return VECTOR_KERNEL != null;
+    }
+
+    /**
+     * Returns {@code vector} or {@code scalar}, depending on the backend in use.
+     */
+    public String getBackend() {
+        return kernel == VECTOR_KERNEL ? "vector" : "scalar";
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Generates grids into the batch from the generator's own random source, drawing the same random values as
+     * generating them one by one.
+     *
+     * @param n         the number of grids
+     * @param generator the generator of the game
+     */
+    public void generate(int n, MatrixGenerator generator) {
+        generate(n, generator, generator.getRandom());
+    }
+
+    /**
+     * Generates grids into the batch, drawing the same random values as generating them one by one.
+     *
+     * @param n         the number of grids
+     * @param generator the generator of the game
+     * @param random    the source of random bits
+     */
+    public void generate(int n, MatrixGenerator generator, LongSupplier random) {
+        checkBatchSize(n);
+        if (generator.getGame() != game) {
+            throw new IllegalArgumentException("Generator does not match the game");
+        }
+        for (int g = 0; g < n; g++) {
+            generator.generateStrided(cells, g, capacity, random);
+        }
+    }
+
+    /**
+     * Generates every grid of the batch from its own seed, drawing the same random values as
+     * {@link SpinEngine#spinReward(int, long)} does for that seed.
+     *
+     * @param n         the number of grids
+     * @param generator the generator of the game
+     * @param seeds     the seed of each grid
+     * @param offset    the index of the seed of the first grid
+     */
+    public void generate(int n, MatrixGenerator generator, long[] seeds, int offset) {
+        checkBatchSize(n);
+        if (generator.getGame() != game) {
+            throw new IllegalArgumentException("Generator does not match the game");
+        }
+        SplitMix64 random = new SplitMix64(0);
+        for (int g = 0; g < n; g++) {
+            generator.generateStrided(cells, g, capacity, random.reset(seeds[offset + g]));
+        }
+    }
+
+    /**
+     * Stores a grid in the batch.
+     *
+     * @param index the position in the batch
+     * @param grid  the grid
+     */
+    public void setGrid(int index, Grid grid) {
+        checkBatchSize(index + 1);
+        if (grid.size() != game.cells) {
+            throw new IllegalArgumentException("Grid size does not match the game");
+        }
+        for (int cell = 0; cell < game.cells; cell++) {
+            cells[cell * capacity + index] = grid.cells[cell];
+        }
+    }
+
+    /**
+     * Copies a grid of the batch.
+     *
+     * @param index the position in the batch
+     * @param grid  receives the grid
+     */
+    public void getGrid(int index, Grid grid) {
+        checkBatchSize(index + 1);
+        if (grid.size() != game.cells) {
+            throw new IllegalArgumentException("Grid size does not match the game");
+        }
+        for (int cell = 0; cell < game.cells; cell++) {
+            grid.cells[cell] = cells[cell * capacity + index];
+        }
+    }
+
+    /**
+     * Evaluates the first {@code n} grids of the batch.
+     *
+     * @param n                   the number of grids
+     * @param betAmount           the betting amount of every grid
+     * @param rewards             receives the total reward of each grid
+     * @param winningCombinations receives the applied combination ids of each grid as a bitmask, may be null
+     * @param bonusSymbols        receives the ordinal of the last bonus symbol of each grid, or -1, may be null
+     * @return the sum of all rewards
+     */
+    public long evaluate(int n, int betAmount, int[] rewards, long[] winningCombinations, int[] bonusSymbols) {
+        return evaluate(n, betAmount, rewards, winningCombinations, bonusSymbols, 0);
+    }
+
+    /**
+     * Evaluates the first {@code n} grids of the batch, writing the outcome of grid {@code g} to index
+     * {@code offset + g} of the output arrays.
+     */
+    long evaluate(int n, int betAmount, int[] rewards, long[] winningCombinations, int[] bonusSymbols, int offset) {
+        checkBatchSize(n);
+        int length = offset + n;
+        if (offset < 0 || rewards.length < length || (winningCombinations != null && winningCombinations.length < length)
+                || (bonusSymbols != null && bonusSymbols.length < length)) {
+            throw new IllegalArgumentException("Output arrays must hold at least " + length + " entries");
+        }
+
+        kernel.count(cells, capacity, n, game.getSymbolCount(), counts);
+        kernel.matchAreas(cells, capacity, n, game.areaOffsets, game.areaCells, hits);
+        collectLinearCombinations(n);
+
+        long totalReward = 0;
+        for (int g = 0; g < n; g++) {
+            int reward = 0;
+            boolean won = false;
+            long combinations = 0;
+            for (int symbol : game.standardSymbols) {
+                int count = counts[symbol * capacity + g];
+                if (count == 0) {
+                    continue;
+                }
+                int countCombination = game.bestCountCombination[count];
+                int linearCombination = linearCombinations[symbol * capacity + g];
+                for (int combination : game.emptyLineCombinations) {
+                    linearCombination = better(combination, linearCombination);
+                }
+                if (countCombination >= 0 || linearCombination >= 0) {
+                    reward += calculator.symbolReward(betAmount, symbol, countCombination,
+                            linearCombination >= 0 ? game.combinationMultipliers[linearCombination] : 0);
+                    won = true;
+                    if (countCombination >= 0) {
+                        combinations |= 1L << countCombination;
+                    }
+                    if (linearCombination >= 0) {
+                        combinations |= 1L << linearCombination;
+                    }
+                }
+            }
+
+            // Generated grids hold a single bonus cell, which is found from the counts alone
+            int bonusCells = 0;
+            int bonusSymbol = -1;
+            for (int symbol : game.bonusSymbols) {
+                int count = counts[symbol * capacity + g];
+                if (count > 0) {
+                    bonusCells += count;
+                    bonusSymbol = symbol;
+                }
+            }
+            if (bonusCells == 1) {
+                reward = calculator.applyBonus(reward, bonusSymbol);
+            } else if (bonusCells > 1) {
+                // Bonus impacts do not commute, so apply them in row-major order
+                for (int cell = 0; cell < game.cells; cell++) {
+                    int symbol = cells[cell * capacity + g];
+                    if (!game.standard[symbol]) {
+                        bonusSymbol = symbol;
+                        reward = calculator.applyBonus(reward, symbol);
+                    }
+                }
+            }
+
+            if (!won) {
+                reward = 0;
+            }
+            rewards[offset + g] = reward;
+            totalReward += reward;
+            if (winningCombinations != null) {
+                winningCombinations[offset + g] = combinations;
+            }
+            if (bonusSymbols != null) {
+                bonusSymbols[offset + g] = bonusSymbol;
+            }
+        }
+        return totalReward;
+    }
+
+    /**
+     * Turns the area matches into the best linear combination per standard symbol and grid.
+     */
+    private void collectLinearCombinations(int n) {
+        Arrays.fill(linearCombinations, -1);
+        int words = capacity >>> 6;
+        for (int area = 0; area < game.areaCombinations.length; area++) {
+            int combination = game.areaCombinations[area];
+            int first = game.areaCells[game.areaOffsets[area]] * capacity;
+            for (int word = 0; word < words && word << 6 < n; word++) {
+                long bits = hits[area * words + word];
+                if (n < (word + 1) << 6) {
+                    bits &= (1L << (n - (word << 6))) - 1;
+                }
+                while (bits != 0) {
+                    int g = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    int symbol = cells[first + g];
+                    if (game.standard[symbol]) {
+                        int index = symbol * capacity + g;
+                        linearCombinations[index] = better(combination, linearCombinations[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks between an offered linear combination and the current one, like {@link RewardCalculator} does.
+     */
+    private int better(int offered, int current) {
+        double multiplier = game.combinationMultipliers[offered];
+        double best = current >= 0 ? game.combinationMultipliers[current] : 0;
+        return multiplier > best || (multiplier == best && offered < current) ? offered : current;
+    }
+
+    private void checkBatchSize(int n) {
+        if (n < 0 || n > capacity) {
+            throw new IllegalArgumentException("Batch size must be between 0 and " + capacity + ": " + n);
+        }
+    }
+
+    private static BatchKernel loadVectorKernel() {
+        if (!Boolean.parseBoolean(System.getProperty("scratch.vector", "true"))) {
+            return null;
+        }
+        try {
+            return (BatchKernel) Class.forName("com.halilsahin.scratch.VectorBatchKernel")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.FINE, "Vector API backend unavailable, using scalar batch evaluation", e);
+            return null;
+        }
+    }
+}
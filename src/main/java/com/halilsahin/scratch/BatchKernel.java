@@ -0,0 +1,38 @@
+package com.halilsahin.scratch;
+
+/**
+ * Data-parallel part of {@link BatchEvaluator}: symbol histograms and covered-area matching over a batch of grids
+ * stored cell by cell, i.e. cell {@code c} of grid {@code g} at index {@code c * capacity + g}.
+ * <p>
+ * {@link ScalarBatchKernel} is always available; a Vector API implementation is compiled on JDK 17+ and used when
+ * the {@code jdk.incubator.vector} module is present at runtime.
+ *
+ * @author Halil Şahin
+ */
+interface BatchKernel {
+
+    /**
+     * Counts symbol occurrences: {@code counts[symbol * capacity + g]} receives the number of cells of grid
+     * {@code g} holding {@code symbol}, for every {@code g < n}.
+     *
+     * @param cells    the grids, cell by cell
+     * @param capacity the number of grids the buffers are laid out for, a multiple of 64
+     * @param n        the number of grids to count
+     * @param symbols  the number of symbols
+     * @param counts   receives the counts
+     */
+    void count(byte[] cells, int capacity, int n, int symbols, byte[] counts);
+
+    /**
+     * Matches covered areas: bit {@code g % 64} of {@code hits[area * (capacity / 64) + g / 64]} is set if every cell
+     * of the area holds the same symbol in grid {@code g}. Bits of grids at and above {@code n} are unspecified.
+     *
+     * @param cells       the grids, cell by cell
+     * @param capacity    the number of grids the buffers are laid out for, a multiple of 64
+     * @param n           the number of grids to match
+     * @param areaOffsets the start of every area in {@code areaCells}, followed by the end of the last one
+     * @param areaCells   the cells of all areas
+     * @param hits        receives the matches
+     */
+    void matchAreas(byte[] cells, int capacity, int n, int[] areaOffsets, int[] areaCells, long[] hits);
+}
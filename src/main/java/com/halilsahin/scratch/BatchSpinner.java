@@ -0,0 +1,140 @@
+package com.halilsahin.scratch;
+
+/**
+ * Plays many spins in a row and writes their outcomes into caller-supplied primitive arrays.
+ * <p>
+ * The spinner owns one grid and one {@link RewardCalculator.Evaluation} that are reused for every spin,
+ * so a batch performs no allocation regardless of its size. Games small enough for a {@link BatchEvaluator} are
+ * generated and evaluated in chunks through it instead, with the same random values consumed and the same outcomes,
+ * unless the calculator evaluates through a payout table or a generated evaluator, which is then used spin by spin.
+ * It is meant for settlement and RTP jobs; use one spinner per thread.
+ *
+ * @author Halil Şahin
+ */
+public class BatchSpinner {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final MatrixGenerator generator;
+    private final RewardCalculator calculator;
+    private final Grid grid;
+    private final RewardCalculator.Evaluation evaluation;
+    private final SplitMix64 seeded = new SplitMix64(0);
+    // Null if the game is too large for batch evaluation, or the calculator is not the interpreted one
+    private final BatchEvaluator batchEvaluator;
+    // Position of the last spin in the batch evaluator, -1 once copied to the grid
+    private int lastIndex = -1;
+
+    public BatchSpinner(CompiledGame game) {
+        this(new MatrixGenerator(game), new RewardCalculator(game));
+    }
+
+    public BatchSpinner(MatrixGenerator generator, RewardCalculator calculator) {
+        CompiledGame game = generator.getGame();
+        if (calculator.getGame() != game) {
+            throw new IllegalArgumentException("Generator and calculator must use the same game");
+        }
+        if (game.getCombinationCount() > Long.SIZE) {
+            throw new IllegalArgumentException("Batch spins support at most " + Long.SIZE + " win combinations");
+        }
+        this.generator = generator;
+        this.calculator = calculator;
+        this.grid = Grid.of(game);
+        this.evaluation = new RewardCalculator.Evaluation(game);
+        this.batchEvaluator = BatchEvaluator.isSupported(game) && calculator.isInterpreted()
+                ? new BatchEvaluator(game, CHUNK_SIZE) : null;
+    }
+
+    /**
+     * Plays {@code n} spins and stores the outcome of spin {@code i} at index {@code i} of the output arrays.
+     *
+     * @param n                   the number of spins
+     * @param betAmount           the betting amount of every spin
+     * @param rewards             receives the total reward of each spin
+     * @param winningCombinations receives the applied combination ids of each spin as a bitmask
+     *                            (bit {@code i} for combination id {@code i}, 0 for a loss), may be null
+     * @param bonusSymbols        receives the ordinal of the bonus symbol of each spin, or -1 if none was placed,
+     *                            may be null
+     * @return the sum of all rewards in the batch
+     */
+    public long spinBatch(int n, int betAmount, int[] rewards, long[] winningCombinations, int[] bonusSymbols) {
+        return spinBatch(n, betAmount, null, rewards, winningCombinations, bonusSymbols);
+    }
+
+    /**
+     * Plays {@code n} spins, each generated from its own seed as by {@link SpinEngine#spinReward(int, long)}, and
+     * stores the outcome of spin {@code i} at index {@code i} of the output arrays. Since a spin depends on nothing
+     * but its seed, the outcomes do not depend on how spins are split into batches or across threads.
+     *
+     * @param n                   the number of spins
+     * @param betAmount           the betting amount of every spin
+     * @param seeds               the seed of each spin, or null to draw from the generator's own random source
+     * @param rewards             receives the total reward of each spin
+     * @param winningCombinations receives the applied combination ids of each spin as a bitmask, may be null
+     * @param bonusSymbols        receives the ordinal of the bonus symbol of each spin, or -1, may be null
+     * @return the sum of all rewards in the batch
+     */
+    public long spinBatch(int n, int betAmount, long[] seeds, int[] rewards, long[] winningCombinations,
+                          int[] bonusSymbols) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Spin count must not be negative: " + n);
+        }
+        if (rewards == null || rewards.length < n
+                || (seeds != null && seeds.length < n)
+                || (winningCombinations != null && winningCombinations.length < n)
+                || (bonusSymbols != null && bonusSymbols.length < n)) {
+            throw new IllegalArgumentException("Output arrays must hold at least " + n + " entries");
+        }
+
+        if (batchEvaluator != null) {
+            return spinChunks(n, betAmount, seeds, rewards, winningCombinations, bonusSymbols);
+        }
+
+        lastIndex = -1;
+        long totalReward = 0;
+        for (int i = 0; i < n; i++) {
+            if (seeds != null) {
+                generator.generateGrid(grid, seeded.reset(seeds[i]));
+            } else {
+                generator.generateGrid(grid);
+            }
+            int reward = calculator.evaluate(grid.cells, betAmount, evaluation);
+            rewards[i] = reward;
+            totalReward += reward;
+            if (winningCombinations != null) {
+                winningCombinations[i] = evaluation.won ? evaluation.winningCombinationMask() : 0L;
+            }
+            if (bonusSymbols != null) {
+                bonusSymbols[i] = evaluation.bonusSymbol;
+            }
+        }
+        return totalReward;
+    }
+
+    /**
+     * Returns the grid of the last spin. It is overwritten by the next spin.
+     */
+    public Grid lastGrid() {
+        if (lastIndex >= 0) {
+            batchEvaluator.getGrid(lastIndex, grid);
+            lastIndex = -1;
+        }
+        return grid;
+    }
+
+    private long spinChunks(int n, int betAmount, long[] seeds, int[] rewards, long[] winningCombinations,
+                            int[] bonusSymbols) {
+        long totalReward = 0;
+        for (int start = 0; start < n; start += CHUNK_SIZE) {
+            int size = Math.min(CHUNK_SIZE, n - start);
+            if (seeds != null) {
+                batchEvaluator.generate(size, generator, seeds, start);
+            } else {
+                batchEvaluator.generate(size, generator);
+            }
+            totalReward += batchEvaluator.evaluate(size, betAmount, rewards, winningCombinations, bonusSymbols, start);
+            lastIndex = size - 1;
+        }
+        return totalReward;
+    }
+}
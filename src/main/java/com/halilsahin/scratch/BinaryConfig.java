@@ -0,0 +1,316 @@
+package com.halilsahin.scratch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compact binary form of a {@link Config}, produced at build time so that a game loads without JSON parsing.
+ * <p>
+ * The build runs {@link #main(String[])} on {@code config.json} after compiling the sources. The configuration is
+ * validated by compiling it into a {@link CompiledGame} before anything is written, so a broken configuration fails
+ * the build rather than the first start. The output starts with an 8-byte magic, followed by a format version and the
+ * fields of the configuration in declaration order. Strings are modified UTF-8, and maps keep their order, so symbol
+ * ordinals, combination ids and the game fingerprint match those of the JSON file.
+ * {@link Config#load(String)} recognizes the binary form by its magic, and reading it touches neither Jackson nor
+ * reflection.
+ *
+ * @author Halil Şahin
+ */
+public final class BinaryConfig {
+
+    private static final Logger LOGGER = Logger.getLogger(BinaryConfig.class.getName());
+    private static final byte[] MAGIC = "SCRCONFG".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private BinaryConfig() {
+    }
+
+    /**
+     * Validates a JSON configuration and writes its binary form.
+     *
+     * @param args the JSON configuration file and the binary file to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            LOGGER.severe("Usage: BinaryConfig <config.json> <config.bin>");
+            System.exit(1);
+            return;
+        }
+        try {
+            Config config = Config.load(args[0]);
+            CompiledGame game = CompiledGame.compile(config);
+            Path target = Paths.get(args[1]);
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            write(config, target);
+            LOGGER.info(String.format("Compiled %s into %s (%d bytes, fingerprint %016x)",
+                    args[0], args[1], Files.size(target), game.getFingerprint()));
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Invalid configuration " + args[0] + ": " + e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns whether the given file contents are a binary configuration.
+     *
+     * @param bytes the file contents, or at least their start
+     * @return true if the contents start with the binary magic
+     */
+    static boolean isBinary(byte[] bytes) {
+        return bytes.length >= MAGIC.length
+                && Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Writes the binary form of a configuration.
+     *
+     * @param config the configuration
+     * @param path   the file to write
+     * @throws IOException if writing fails
+     */
+    public static void write(Config config, Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(config, out);
+        }
+    }
+
+    /**
+     * Writes the binary form of a configuration to a stream.
+     *
+     * @param config the configuration
+     * @param stream the stream to write to, left open
+     * @throws IOException if writing fails
+     */
+    public static void write(Config config, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(config.getRows());
+        out.writeInt(config.getColumns());
+
+        Map<String, Config.Symbol> symbols = config.getSymbols();
+        writeSize(out, symbols == null ? null : symbols.size());
+        if (symbols != null) {
+            for (Map.Entry<String, Config.Symbol> entry : symbols.entrySet()) {
+                Config.Symbol symbol = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeDouble(symbol.getRewardMultiplier());
+                writeString(out, symbol.getType());
+                writeString(out, symbol.getImpact());
+                writeInteger(out, symbol.getExtra());
+            }
+        }
+
+        Config.Probabilities probabilities = config.getProbabilities();
+        out.writeBoolean(probabilities != null);
+        if (probabilities != null) {
+            List<Config.StandardSymbolProbability> standard = probabilities.getStandardSymbols();
+            writeSize(out, standard == null ? null : standard.size());
+            if (standard != null) {
+                for (Config.StandardSymbolProbability probability : standard) {
+                    out.writeInt(probability.getColumn());
+                    out.writeInt(probability.getRow());
+                    writeWeights(out, probability.getSymbols());
+                }
+            }
+            Config.BonusSymbolProbability bonus = probabilities.getBonusSymbols();
+            out.writeBoolean(bonus != null);
+            if (bonus != null) {
+                writeWeights(out, bonus.getSymbols());
+            }
+        }
+
+        Map<String, Config.WinCombination> combinations = config.getWinCombinations();
+        writeSize(out, combinations == null ? null : combinations.size());
+        if (combinations != null) {
+            for (Map.Entry<String, Config.WinCombination> entry : combinations.entrySet()) {
+                Config.WinCombination combination = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeDouble(combination.getRewardMultiplier());
+                writeString(out, combination.getWhen());
+                out.writeInt(combination.getCount());
+                writeString(out, combination.getGroup());
+                List<List<String>> areas = combination.getCoveredAreas();
+                writeSize(out, areas == null ? null : areas.size());
+                if (areas != null) {
+                    for (List<String> area : areas) {
+                        out.writeInt(area.size());
+                        for (String cell : area) {
+                            out.writeUTF(cell);
+                        }
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a binary configuration.
+     *
+     * @param path the file to read
+     * @return the configuration
+     * @throws IOException if the file cannot be read or is not a binary configuration of a supported version
+     */
+    public static Config read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a binary configuration from a stream.
+     *
+     * @param stream the stream to read from, left open
+     * @return the configuration
+     * @throws IOException if the stream cannot be read or does not hold a binary configuration of a supported version
+     */
+    public static Config read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary configuration");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary configuration version " + version);
+        }
+
+        Config config = new Config();
+        config.setRows(in.readInt());
+        config.setColumns(in.readInt());
+
+        int symbolCount = in.readInt();
+        if (symbolCount >= 0) {
+            Map<String, Config.Symbol> symbols = new LinkedHashMap<>();
+            for (int i = 0; i < symbolCount; i++) {
+                String name = in.readUTF();
+                Config.Symbol symbol = new Config.Symbol();
+                symbol.setRewardMultiplier(in.readDouble());
+                symbol.setType(readString(in));
+                symbol.setImpact(readString(in));
+                symbol.setExtra(readInteger(in));
+                symbols.put(name, symbol);
+            }
+            config.setSymbols(symbols);
+        }
+
+        if (in.readBoolean()) {
+            Config.Probabilities probabilities = new Config.Probabilities();
+            int standardCount = in.readInt();
+            if (standardCount >= 0) {
+                List<Config.StandardSymbolProbability> standard = new ArrayList<>(standardCount);
+                for (int i = 0; i < standardCount; i++) {
+                    Config.StandardSymbolProbability probability = new Config.StandardSymbolProbability();
+                    probability.setColumn(in.readInt());
+                    probability.setRow(in.readInt());
+                    probability.setSymbols(readWeights(in));
+                    standard.add(probability);
+                }
+                probabilities.setStandardSymbols(standard);
+            }
+            if (in.readBoolean()) {
+                Config.BonusSymbolProbability bonus = new Config.BonusSymbolProbability();
+                bonus.setSymbols(readWeights(in));
+                probabilities.setBonusSymbols(bonus);
+            }
+            config.setProbabilities(probabilities);
+        }
+
+        int combinationCount = in.readInt();
+        if (combinationCount >= 0) {
+            Map<String, Config.WinCombination> combinations = new LinkedHashMap<>();
+            for (int i = 0; i < combinationCount; i++) {
+                String name = in.readUTF();
+                Config.WinCombination combination = new Config.WinCombination();
+                combination.setRewardMultiplier(in.readDouble());
+                combination.setWhen(readString(in));
+                combination.setCount(in.readInt());
+                combination.setGroup(readString(in));
+                int areaCount = in.readInt();
+                if (areaCount >= 0) {
+                    List<List<String>> areas = new ArrayList<>(areaCount);
+                    for (int a = 0; a < areaCount; a++) {
+                        int cells = in.readInt();
+                        List<String> area = new ArrayList<>(cells);
+                        for (int c = 0; c < cells; c++) {
+                            area.add(in.readUTF());
+                        }
+                        areas.add(area);
+                    }
+                    combination.setCoveredAreas(areas);
+                }
+                combinations.put(name, combination);
+            }
+            config.setWinCombinations(combinations);
+        }
+        return config;
+    }
+
+    private static void writeSize(DataOutputStream out, Integer size) throws IOException {
+        out.writeInt(size == null ? -1 : size);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeWeights(DataOutputStream out, Map<String, Integer> weights) throws IOException {
+        writeSize(out, weights == null ? null : weights.size());
+        if (weights != null) {
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeInteger(out, entry.getValue());
+            }
+        }
+    }
+
+    private static Map<String, Integer> readWeights(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            weights.put(in.readUTF(), readInteger(in));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,558 @@
+package com.halilsahin.scratch;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable, pre-resolved form of a {@link Config}.
+ * <p>
+ * Symbols and win combinations are interned to dense ordinals once, so that the generator and the
+ * reward calculator can work on flat arrays instead of looking up maps and comparing strings on every spin.
+ * Ordinals follow the declaration order of the configuration file.
+ *
+ * @author Halil Şahin
+ */
+public final class CompiledGame {
+
+    /**
+     * Effect of a bonus symbol on the total reward.
+     */
+    public enum Impact {
+        NONE,
+        MULTIPLY_REWARD,
+        EXTRA_BONUS,
+        MISS
+    }
+
+    /**
+     * Condition under which a win combination applies.
+     */
+    public enum WinKind {
+        SAME_SYMBOLS,
+        LINEAR_SYMBOLS
+    }
+
+    final int rows;
+    final int columns;
+    final int cells;
+
+    // Symbols, indexed by ordinal
+    final String[] symbolNames;
+    final boolean[] standard;
+    final double[] rewardMultipliers;
+    final Impact[] impacts;
+    final int[] extras;
+    final int[] standardSymbols;
+    final int[] bonusSymbols;
+
+    // Win combinations, indexed by combination id
+    final String[] combinationNames;
+    final WinKind[] combinationKinds;
+    final double[] combinationMultipliers;
+    final int[] combinationCounts;
+    final int[][][] coveredAreas;
+    final int[] linearCombinations;
+    // Best same_symbols combination for a given symbol count, -1 if none applies
+    final int[] bestCountCombination;
+
+    // The covered areas of all linear combinations as a prefix tree over cells. Each area is reduced to its distinct
+    // cells in declaration order, so areas starting with the same cells, like paylines leaving the same cell, share
+    // nodes and a mismatching cell rules out every area below it at once. Nodes are numbered breadth-first: the roots
+    // are nodes [0, lineRoots), the children of node n are nodes [lineChildren[n], lineChildren[n + 1]), and the
+    // combinations of the areas ending at node n are lineEndCombinations[lineEnds[n] .. lineEnds[n + 1]).
+    final int lineRoots;
+    final int[] lineNodeCells;
+    final int[] lineChildren;
+    final int[] lineEnds;
+    final int[] lineEndCombinations;
+    // Linear combinations having an empty area, which every present standard symbol covers
+    final int[] emptyLineCombinations;
+    // The same non-empty areas as a flat list for batch evaluation: area a covers the distinct cells
+    // areaCells[areaOffsets[a] .. areaOffsets[a + 1]) and belongs to combination areaCombinations[a]
+    final int[] areaOffsets;
+    final int[] areaCells;
+    final int[] areaCombinations;
+    // The inverse for incremental evaluation: cell c lies in the areas cellAreas[cellAreaOffsets[c] .. cellAreaOffsets[c + 1])
+    final int[] cellAreaOffsets;
+    final int[] cellAreas;
+
+    // Per-cell standard symbol samplers; cells without a configured distribution draw uniformly.
+    // Null entries only occur when the game has no standard symbols at all.
+    final AliasSampler[] cellSamplers;
+    // Null if no bonus symbol can be placed
+    final AliasSampler bonusSampler;
+
+    final long fingerprint;
+
+    private final Map<String, Integer> ordinals;
+    private final Map<String, Integer> combinationIds;
+
+    private CompiledGame(Config config) {
+        this.rows = config.getRows();
+        this.columns = config.getColumns();
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive: " + rows + "x" + columns);
+        }
+        this.cells = rows * columns;
+
+        // Symbols
+        Map<String, Config.Symbol> symbols = config.getSymbols() != null ? config.getSymbols() : Collections.emptyMap();
+        int symbolCount = symbols.size();
+        if (symbolCount > Byte.MAX_VALUE + 1) {
+            throw new IllegalArgumentException("At most " + (Byte.MAX_VALUE + 1) + " symbols are supported");
+        }
+        this.symbolNames = new String[symbolCount];
+        this.standard = new boolean[symbolCount];
+        this.rewardMultipliers = new double[symbolCount];
+        this.impacts = new Impact[symbolCount];
+        this.extras = new int[symbolCount];
+        this.ordinals = new HashMap<>();
+
+        int standardCount = 0;
+        int ordinal = 0;
+        for (Map.Entry<String, Config.Symbol> entry : symbols.entrySet()) {
+            Config.Symbol symbol = entry.getValue();
+            symbolNames[ordinal] = entry.getKey();
+            rewardMultipliers[ordinal] = symbol.getRewardMultiplier();
+            ordinals.put(entry.getKey(), ordinal);
+
+            if ("standard".equals(symbol.getType())) {
+                standard[ordinal] = true;
+                impacts[ordinal] = Impact.NONE;
+                standardCount++;
+            } else if ("bonus".equals(symbol.getType())) {
+                impacts[ordinal] = parseImpact(entry.getKey(), symbol.getImpact());
+                if (impacts[ordinal] == Impact.EXTRA_BONUS) {
+                    if (symbol.getExtra() == null) {
+                        throw new IllegalArgumentException("Bonus symbol " + entry.getKey() + " has no extra amount");
+                    }
+                    extras[ordinal] = symbol.getExtra();
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown type for symbol " + entry.getKey() + ": " + symbol.getType());
+            }
+            ordinal++;
+        }
+
+        this.standardSymbols = new int[standardCount];
+        this.bonusSymbols = new int[symbolCount - standardCount];
+        int s = 0;
+        int b = 0;
+        for (int i = 0; i < symbolCount; i++) {
+            if (standard[i]) {
+                standardSymbols[s++] = i;
+            } else {
+                bonusSymbols[b++] = i;
+            }
+        }
+
+        // Win combinations
+        Map<String, Config.WinCombination> combinations = config.getWinCombinations() != null
+                ? config.getWinCombinations() : Collections.emptyMap();
+        int combinationCount = combinations.size();
+        this.combinationNames = new String[combinationCount];
+        this.combinationKinds = new WinKind[combinationCount];
+        this.combinationMultipliers = new double[combinationCount];
+        this.combinationCounts = new int[combinationCount];
+        this.coveredAreas = new int[combinationCount][][];
+        this.combinationIds = new HashMap<>();
+
+        int id = 0;
+        int linearCount = 0;
+        for (Map.Entry<String, Config.WinCombination> entry : combinations.entrySet()) {
+            Config.WinCombination combination = entry.getValue();
+            combinationNames[id] = entry.getKey();
+            combinationMultipliers[id] = combination.getRewardMultiplier();
+            combinationCounts[id] = combination.getCount();
+            combinationIds.put(entry.getKey(), id);
+
+            if ("same_symbols".equals(combination.getWhen())) {
+                combinationKinds[id] = WinKind.SAME_SYMBOLS;
+                coveredAreas[id] = new int[0][];
+            } else if ("linear_symbols".equals(combination.getWhen())) {
+                combinationKinds[id] = WinKind.LINEAR_SYMBOLS;
+                coveredAreas[id] = parseCoveredAreas(entry.getKey(), combination.getCoveredAreas());
+                linearCount++;
+            } else {
+                throw new IllegalArgumentException("Unknown condition for win combination " + entry.getKey()
+                        + ": " + combination.getWhen());
+            }
+            id++;
+        }
+
+        this.linearCombinations = new int[linearCount];
+        int l = 0;
+        for (int i = 0; i < combinationCount; i++) {
+            if (combinationKinds[i] == WinKind.LINEAR_SYMBOLS) {
+                linearCombinations[l++] = i;
+            }
+        }
+
+        // Same as scanning the combinations in order and keeping the first strictly greater multiplier
+        this.bestCountCombination = new int[cells + 1];
+        for (int count = 0; count <= cells; count++) {
+            int best = -1;
+            double bestMultiplier = 0;
+            for (int i = 0; i < combinationCount; i++) {
+                if (combinationKinds[i] == WinKind.SAME_SYMBOLS && combinationCounts[i] <= count
+                        && combinationMultipliers[i] > bestMultiplier) {
+                    bestMultiplier = combinationMultipliers[i];
+                    best = i;
+                }
+            }
+            bestCountCombination[count] = best;
+        }
+
+        // Lines
+        LineNode root = new LineNode(-1);
+        List<Integer> emptyLines = new ArrayList<>();
+        List<int[]> areas = new ArrayList<>();
+        List<Integer> areaOwners = new ArrayList<>();
+        for (int combination : linearCombinations) {
+            for (int[] area : coveredAreas[combination]) {
+                int[] distinct = Arrays.stream(area).distinct().toArray();
+                if (distinct.length == 0) {
+                    emptyLines.add(combination);
+                    continue;
+                }
+                LineNode node = root;
+                for (int cell : distinct) {
+                    node = node.children.computeIfAbsent(cell, LineNode::new);
+                }
+                if (node.combinations.contains(combination)) {
+                    // The same cells again add nothing to the combination
+                    continue;
+                }
+                node.combinations.add(combination);
+                areas.add(distinct);
+                areaOwners.add(combination);
+            }
+        }
+        this.emptyLineCombinations = emptyLines.stream().mapToInt(Integer::intValue).toArray();
+        this.areaOffsets = new int[areas.size() + 1];
+        for (int a = 0; a < areas.size(); a++) {
+            areaOffsets[a + 1] = areaOffsets[a] + areas.get(a).length;
+        }
+        this.areaCells = areas.stream().flatMapToInt(Arrays::stream).toArray();
+        this.areaCombinations = areaOwners.stream().mapToInt(Integer::intValue).toArray();
+        this.cellAreaOffsets = new int[cells + 1];
+        for (int cell : areaCells) {
+            cellAreaOffsets[cell + 1]++;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellAreaOffsets[cell + 1] += cellAreaOffsets[cell];
+        }
+        this.cellAreas = new int[areaCells.length];
+        int[] filled = Arrays.copyOf(cellAreaOffsets, cells);
+        for (int a = 0; a < areas.size(); a++) {
+            for (int i = areaOffsets[a]; i < areaOffsets[a + 1]; i++) {
+                cellAreas[filled[areaCells[i]]++] = a;
+            }
+        }
+
+        List<LineNode> nodes = new ArrayList<>();
+        nodes.addAll(root.children.values());
+        this.lineRoots = nodes.size();
+        for (int n = 0; n < nodes.size(); n++) {
+            nodes.addAll(nodes.get(n).children.values());
+        }
+        this.lineNodeCells = new int[nodes.size()];
+        this.lineChildren = new int[nodes.size() + 1];
+        this.lineEnds = new int[nodes.size() + 1];
+        int ends = 0;
+        for (LineNode node : nodes) {
+            ends += node.combinations.size();
+        }
+        this.lineEndCombinations = new int[ends];
+        int child = lineRoots;
+        int end = 0;
+        for (int n = 0; n < nodes.size(); n++) {
+            LineNode node = nodes.get(n);
+            lineNodeCells[n] = node.cell;
+            lineChildren[n] = child;
+            child += node.children.size();
+            lineEnds[n] = end;
+            for (int combination : node.combinations) {
+                lineEndCombinations[end++] = combination;
+            }
+        }
+        lineChildren[nodes.size()] = child;
+        lineEnds[nodes.size()] = end;
+
+        // Probabilities
+        this.cellSamplers = new AliasSampler[cells];
+        Config.Probabilities probabilities = config.getProbabilities();
+        List<Config.StandardSymbolProbability> standardProbabilities = probabilities != null
+                && probabilities.getStandardSymbols() != null ? probabilities.getStandardSymbols() : Collections.emptyList();
+        for (Config.StandardSymbolProbability prob : standardProbabilities) {
+            if (prob.getRow() < 0 || prob.getRow() >= rows || prob.getColumn() < 0 || prob.getColumn() >= columns) {
+                throw new IllegalArgumentException("Probability cell out of bounds: " + prob.getRow() + ":" + prob.getColumn());
+            }
+            int cell = prob.getRow() * columns + prob.getColumn();
+            // The first distribution declared for a cell wins
+            if (cellSamplers[cell] == null) {
+                cellSamplers[cell] = compileSampler(prob.getSymbols());
+            }
+        }
+        if (standardSymbols.length > 0) {
+            int[] uniformWeights = new int[standardSymbols.length];
+            Arrays.fill(uniformWeights, 1);
+            AliasSampler uniform = new AliasSampler(standardSymbols, uniformWeights);
+            for (int cell = 0; cell < cells; cell++) {
+                if (cellSamplers[cell] == null) {
+                    cellSamplers[cell] = uniform;
+                }
+            }
+        }
+
+        this.bonusSampler = compileSampler(probabilities != null && probabilities.getBonusSymbols() != null
+                ? probabilities.getBonusSymbols().getSymbols() : null);
+
+        this.fingerprint = computeFingerprint();
+    }
+
+    /**
+     * Compiles the given configuration.
+     *
+     * @param config the loaded configuration
+     * @return the compiled game
+     * @throws IllegalArgumentException if the configuration is inconsistent
+     */
+    public static CompiledGame compile(Config config) {
+        return new CompiledGame(config);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getSymbolCount() {
+        return symbolNames.length;
+    }
+
+    public int getCombinationCount() {
+        return combinationNames.length;
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of everything that determines the outcome of a spin: the grid size, symbols,
+     * win combinations and sampling tables. Two games with the same fingerprint generate and pay the same grids for
+     * the same random bits, so the fingerprint identifies the configuration version a spin was played with.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the ordinal of the given symbol.
+     *
+     * @param symbol the symbol name
+     * @return the ordinal of the symbol
+     * @throws IllegalArgumentException if the symbol is not defined
+     */
+    public int ordinalOf(String symbol) {
+        Integer ordinal = ordinals.get(symbol);
+        if (ordinal == null) {
+            throw new IllegalArgumentException("Unknown symbol: " + symbol);
+        }
+        return ordinal;
+    }
+
+    public String symbolName(int ordinal) {
+        return symbolNames[ordinal];
+    }
+
+    public boolean isStandard(int ordinal) {
+        return standard[ordinal];
+    }
+
+    public Impact impact(int ordinal) {
+        return impacts[ordinal];
+    }
+
+    /**
+     * Returns the id of the given win combination.
+     *
+     * @param combination the combination name
+     * @return the id of the combination
+     * @throws IllegalArgumentException if the combination is not defined
+     */
+    public int combinationId(String combination) {
+        Integer id = combinationIds.get(combination);
+        if (id == null) {
+            throw new IllegalArgumentException("Unknown win combination: " + combination);
+        }
+        return id;
+    }
+
+    public String combinationName(int id) {
+        return combinationNames[id];
+    }
+
+    public WinKind combinationKind(int id) {
+        return combinationKinds[id];
+    }
+
+    /**
+     * Hashes the compiled game with SHA-256 and keeps the first 8 bytes.
+     */
+    private long computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        putInts(digest, buffer, rows, columns, symbolNames.length, combinationNames.length);
+        for (int i = 0; i < symbolNames.length; i++) {
+            putString(digest, buffer, symbolNames[i]);
+            putInts(digest, buffer, standard[i] ? 1 : 0, impacts[i].ordinal(), extras[i]);
+            putLong(digest, buffer, Double.doubleToLongBits(rewardMultipliers[i]));
+        }
+        for (int i = 0; i < combinationNames.length; i++) {
+            putString(digest, buffer, combinationNames[i]);
+            putInts(digest, buffer, combinationKinds[i].ordinal(), combinationCounts[i], coveredAreas[i].length);
+            putLong(digest, buffer, Double.doubleToLongBits(combinationMultipliers[i]));
+            for (int[] area : coveredAreas[i]) {
+                putInts(digest, buffer, area.length);
+                putInts(digest, buffer, area);
+            }
+        }
+        for (AliasSampler sampler : cellSamplers) {
+            putSampler(digest, buffer, sampler);
+        }
+        putSampler(digest, buffer, bonusSampler);
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    private static void putSampler(MessageDigest digest, ByteBuffer buffer, AliasSampler sampler) {
+        if (sampler == null) {
+            putInts(digest, buffer, 0);
+            return;
+        }
+        putInts(digest, buffer, sampler.size());
+        for (int i = 0; i < sampler.size(); i++) {
+            putInts(digest, buffer, sampler.outcome(i), sampler.weight(i));
+        }
+    }
+
+    private static void putString(MessageDigest digest, ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInts(digest, buffer, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void putLong(MessageDigest digest, ByteBuffer buffer, long value) {
+        buffer.clear();
+        buffer.putLong(value);
+        digest.update(buffer.array(), 0, buffer.position());
+    }
+
+    private static void putInts(MessageDigest digest, ByteBuffer buffer, int... values) {
+        for (int value : values) {
+            buffer.clear();
+            buffer.putInt(value);
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+    }
+
+    /**
+     * Node of the prefix tree built while compiling covered areas, see {@link #lineNodeCells}.
+     */
+    private static final class LineNode {
+        private final int cell;
+        private final Map<Integer, LineNode> children = new TreeMap<>();
+        private final List<Integer> combinations = new ArrayList<>();
+
+        private LineNode(int cell) {
+            this.cell = cell;
+        }
+    }
+
+    private static Impact parseImpact(String symbol, String impact) {
+        if (impact == null) {
+            throw new IllegalArgumentException("Bonus symbol " + symbol + " has no impact");
+        }
+        switch (impact) {
+            case "multiply_reward":
+                return Impact.MULTIPLY_REWARD;
+            case "extra_bonus":
+                return Impact.EXTRA_BONUS;
+            case "miss":
+                return Impact.MISS;
+            default:
+                throw new IllegalArgumentException("Unknown impact for bonus symbol " + symbol + ": " + impact);
+        }
+    }
+
+    private int[][] parseCoveredAreas(String combination, List<List<String>> areas) {
+        if (areas == null) {
+            return new int[0][];
+        }
+        int[][] compiled = new int[areas.size()][];
+        for (int a = 0; a < areas.size(); a++) {
+            List<String> area = areas.get(a);
+            compiled[a] = new int[area.size()];
+            for (int i = 0; i < area.size(); i++) {
+                String pos = area.get(i);
+                String[] parts = pos.split(":");
+                int row;
+                int col;
+                try {
+                    row = Integer.parseInt(parts[0]);
+                    col = Integer.parseInt(parts[1]);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid cell " + pos + " in win combination " + combination, e);
+                }
+                if (row < 0 || row >= rows || col < 0 || col >= columns) {
+                    throw new IllegalArgumentException("Cell " + pos + " of win combination " + combination + " is out of bounds");
+                }
+                compiled[a][i] = row * columns + col;
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Builds an alias sampler over symbol ordinals from a symbol-to-weight map, dropping zero weights.
+     *
+     * @return the sampler, or null if the total weight is zero
+     */
+    private AliasSampler compileSampler(Map<String, Integer> weights) {
+        if (weights == null) {
+            return null;
+        }
+        int[] symbols = new int[weights.size()];
+        int[] values = new int[weights.size()];
+        int n = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            int weight = entry.getValue() != null ? entry.getValue() : 0;
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for symbol " + entry.getKey());
+            }
+            if (weight > 0) {
+                symbols[n] = ordinalOf(entry.getKey());
+                values[n] = weight;
+                n++;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        return new AliasSampler(Arrays.copyOf(symbols, n), Arrays.copyOf(values, n));
+    }
+}
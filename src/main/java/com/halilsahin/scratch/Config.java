@@ -2,17 +2,20 @@ package com.halilsahin.scratch;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.Data;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 
 @Data
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Config {
+
     @JsonProperty("rows")
     private int rows;
 
@@ -28,9 +31,26 @@ public class Config {
     @JsonProperty("win_combinations")
     private Map<String, WinCombination> winCombinations;
 
+    /**
+     * Loads a configuration from a JSON file, or from its binary form written by {@link BinaryConfig}.
+     *
+     * @param path the configuration file
+     * @return the configuration
+     * @throws IOException if the file cannot be read or parsed
+     */
     public static Config load(String path) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.readValue(new File(path), Config.class);
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        if (BinaryConfig.isBinary(bytes)) {
+            return BinaryConfig.read(new ByteArrayInputStream(bytes));
+        }
+        return JsonReader.READER.readValue(bytes);
+    }
+
+    /**
+     * Holds the JSON reader, so that Jackson is only initialized once a JSON configuration is loaded.
+     */
+    private static final class JsonReader {
+        static final ObjectReader READER = Json.MAPPER.readerFor(Config.class);
     }
 
     @Data
@@ -0,0 +1,291 @@
+package com.halilsahin.scratch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Registry of game variants stored as {@code <game id>.json} files in one directory.
+ * <p>
+ * Each variant is parsed and compiled once on first use and then served from memory, so configuration parsing never
+ * sits on the spin path. Once {@link #start()} has been called, the directory is watched: when a loaded variant's file
+ * changes, the new version is compiled and swapped in atomically. A version that fails to load is logged and the
+ * previous one stays in service. Compiled games are immutable, so spins holding an older {@link Version} finish
+ * against it undisturbed.
+ * <p>
+ * At most {@code maxLoaded} variants are kept in memory; beyond that the least recently used one is evicted and
+ * simply reloaded from disk when it is requested again. All methods are thread-safe; variants are parsed and compiled
+ * outside the registry's lock, which lookups only hold to find an entry and mark it as used. Version numbers are taken
+ * before a file is read, and a version is only stored if no newer one is and the file has not been reported changed
+ * since it was read, so a change racing with a load is never lost.
+ *
+ * @author Halil Şahin
+ */
+public class ConfigRegistry implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConfigRegistry.class.getName());
+    private static final String EXTENSION = ".json";
+
+    private final Path directory;
+    private final int maxLoaded;
+    private final Function<CompiledGame, SpinEngine> engines;
+    // Access-ordered, so the least recently used variant is the eldest entry; guarded by itself
+    private final Map<String, Version> versions;
+    // Stamps of the last change reported for each game id, and for all of them, from the same counter as version
+    // numbers; guarded by versions
+    private final Map<String, Long> changes = new HashMap<>();
+    private long allChanged;
+    private final AtomicLong versionCounter = new AtomicLong();
+    private WatchService watchService;
+    private Thread watcher;
+
+    /**
+     * A compiled variant together with its engine and a registry-wide, increasing version number.
+     */
+    public static final class Version {
+        private final String gameId;
+        private final long number;
+        private final CompiledGame game;
+        private final SpinEngine engine;
+
+        private Version(String gameId, long number, CompiledGame game, SpinEngine engine) {
+            this.gameId = gameId;
+            this.number = number;
+            this.game = game;
+            this.engine = engine;
+        }
+
+        public String getGameId() {
+            return gameId;
+        }
+
+        public long getNumber() {
+            return number;
+        }
+
+        public CompiledGame getGame() {
+            return game;
+        }
+
+        public SpinEngine getEngine() {
+            return engine;
+        }
+    }
+
+    /**
+     * Creates a registry over the given directory, serving every variant with an interpreting engine.
+     *
+     * @param directory the directory holding {@code <game id>.json} files
+     * @param maxLoaded the maximum number of variants kept in memory
+     */
+    public ConfigRegistry(Path directory, int maxLoaded) {
+        this(directory, maxLoaded, SpinEngine::new);
+    }
+
+    /**
+     * Creates a registry over the given directory.
+     *
+     * @param directory the directory holding {@code <game id>.json} files
+     * @param maxLoaded the maximum number of variants kept in memory
+     * @param engines   creates the engine of each loaded version, outside the registry's lock
+     */
+    public ConfigRegistry(Path directory, int maxLoaded, Function<CompiledGame, SpinEngine> engines) {
+        if (maxLoaded <= 0) {
+            throw new IllegalArgumentException("maxLoaded must be positive");
+        }
+        this.directory = directory;
+        this.maxLoaded = maxLoaded;
+        this.engines = engines;
+        this.versions = new LinkedHashMap<String, Version>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Version> eldest) {
+                return size() > ConfigRegistry.this.maxLoaded;
+            }
+        };
+    }
+
+    /**
+     * Returns the current version of a variant, loading it if necessary.
+     *
+     * @param gameId the game id, i.e. the file name without {@code .json}
+     * @return the current version
+     * @throws IOException if the variant is unknown or cannot be loaded
+     */
+    public Version get(String gameId) throws IOException {
+        while (true) {
+            synchronized (versions) {
+                Version version = versions.get(gameId);
+                if (version != null) {
+                    return version;
+                }
+            }
+            // Concurrent misses of the same variant may both load it; the newest one is kept
+            Version loaded = load(gameId);
+            synchronized (versions) {
+                Version installed = install(loaded);
+                if (installed != null) {
+                    return installed;
+                }
+            }
+            // The file changed while it was read
+        }
+    }
+
+    /**
+     * Returns the ids of the variants currently held in memory.
+     */
+    public Set<String> loadedGameIds() {
+        synchronized (versions) {
+            return Collections.unmodifiableSet(new LinkedHashSet<>(versions.keySet()));
+        }
+    }
+
+    /**
+     * Reloads a variant from disk if it is loaded, replacing the current version on success.
+     *
+     * @param gameId the game id
+     * @return true if a new version was swapped in
+     */
+    public boolean reload(String gameId) {
+        synchronized (versions) {
+            // A load of this variant still in progress may have read the file before the change
+            changes.put(gameId, versionCounter.incrementAndGet());
+            if (!versions.containsKey(gameId)) {
+                return false;
+            }
+        }
+        Version reloaded;
+        try {
+            reloaded = load(gameId);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("Keeping the previous version of " + gameId + ", reload failed: " + e.getMessage());
+            return false;
+        }
+        // Only replace a version that is still loaded; an evicted variant is reloaded on demand
+        boolean swapped;
+        synchronized (versions) {
+            swapped = versions.containsKey(gameId) && install(reloaded) == reloaded;
+        }
+        if (swapped) {
+            LOGGER.info("Loaded version " + reloaded.getNumber() + " of " + gameId);
+        }
+        return swapped;
+    }
+
+    /**
+     * Starts watching the directory for changes in a background thread.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(this::watch, "config-registry-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+            watcher = null;
+        }
+    }
+
+    /**
+     * Stores a version unless a newer one is stored or its file has been reported changed since it was read. Called
+     * holding the lock on {@code versions}.
+     *
+     * @return the version in service, or null if the given one is outdated and none is stored
+     */
+    private Version install(Version version) {
+        Version current = versions.get(version.gameId);
+        if (current != null && current.number > version.number) {
+            return current;
+        }
+        if (Math.max(allChanged, changes.getOrDefault(version.gameId, 0L)) > version.number) {
+            return current;
+        }
+        changes.remove(version.gameId);
+        versions.put(version.gameId, version);
+        return version;
+    }
+
+    /**
+     * Reads and compiles a variant; its version number is taken before the file is read.
+     */
+    Version load(String gameId) throws IOException {
+        if (gameId.isEmpty() || gameId.contains("/") || gameId.contains("\\") || gameId.startsWith(".")) {
+            throw new IOException("Invalid game id: " + gameId);
+        }
+        Path file = directory.resolve(gameId + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("Unknown game: " + gameId);
+        }
+        long number = versionCounter.incrementAndGet();
+        try {
+            CompiledGame game = CompiledGame.compile(Config.load(file.toString()));
+            return new Version(gameId, number, game, engines.apply(game));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid configuration " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    synchronized (versions) {
+                        allChanged = versionCounter.incrementAndGet();
+                    }
+                    loadedGameIds().forEach(this::reload);
+                    continue;
+                }
+                String fileName = event.context().toString();
+                if (!fileName.endsWith(EXTENSION)) {
+                    continue;
+                }
+                String gameId = fileName.substring(0, fileName.length() - EXTENSION.length());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    synchronized (versions) {
+                        changes.put(gameId, versionCounter.incrementAndGet());
+                        versions.remove(gameId);
+                    }
+                } else {
+                    reload(gameId);
+                }
+            }
+            if (!key.reset()) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,622 @@
+package com.halilsahin.scratch;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the bytecode of a {@link SpecializedEvaluator} for one game, see there for what is specialized.
+ * <p>
+ * The generated {@code evaluate} checks the grid size, resets the evaluation and calls, in order, the static
+ * {@code count} methods unrolled over the cells, the static {@code lines} methods walking the prefix tree of covered
+ * areas from its roots, {@link SpecializedEvaluator#offerEmptyLines} if the game has empty areas, and {@code settle}.
+ * Subtrees that do not fit the method they are reached from get static {@code node} methods of their own. Every
+ * method keeps its estimated size below {@link #METHOD_BUDGET}; HotSpot does not compile methods over 8000 bytes.
+ *
+ * @author Halil Şahin
+ */
+final class EvaluatorGenerator implements Opcodes {
+
+    static final int METHOD_BUDGET = 6000;
+
+    // Upper bounds of the bytecode emitted per cell counted, per root tested, per node compared, per combination
+    // offered and per call
+    private static final int CELL_SIZE = 64;
+    private static final int ROOT_SIZE = 20;
+    private static final int NODE_SIZE = 10;
+    private static final int OFFER_SIZE = 48;
+    private static final int CALL_SIZE = 12;
+
+    private static final String SUPER = "com/halilsahin/scratch/SpecializedEvaluator";
+    private static final String EVALUATION = "com/halilsahin/scratch/RewardCalculator$Evaluation";
+    private static final String GAME_DESCRIPTOR = "Lcom/halilsahin/scratch/CompiledGame;";
+    private static final String EVALUATION_DESCRIPTOR = "L" + EVALUATION + ";";
+    private static final String COUNT_DESCRIPTOR = "([B" + EVALUATION_DESCRIPTOR + ")V";
+    private static final String LINES_DESCRIPTOR = "([B[I[D)V";
+    private static final String NODE_DESCRIPTOR = "([B[I[DI)V";
+    private static final String EVALUATE_DESCRIPTOR = "([BI" + EVALUATION_DESCRIPTOR + ")I";
+
+    // Classes defined without hidden class support need unique names
+    private static final AtomicInteger GENERATED = new AtomicInteger();
+
+    // Locals of the count, lines and node methods
+    private static final int CELLS = 0;
+    private static final int LINE_COMBINATIONS = 1;
+    private static final int LINE_MULTIPLIERS = 2;
+    private static final int SYMBOL = 3;
+
+    private final CompiledGame game;
+    private final String name;
+    private final long standardMask;
+    private final long bonusMask;
+    // Per node of the prefix tree: whether any combination below it can win, and the size of its code if inlined
+    private final boolean[] useful;
+    private final int[] sizes;
+    private final Deque<Integer> pendingNodes = new ArrayDeque<>();
+    private ClassWriter writer;
+
+    EvaluatorGenerator(CompiledGame game) {
+        this.game = game;
+        this.name = SUPER + "$Game" + GENERATED.incrementAndGet();
+        long standard = 0;
+        long bonus = 0;
+        for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+            if (game.standard[symbol]) {
+                standard |= 1L << symbol;
+            } else {
+                bonus |= 1L << symbol;
+            }
+        }
+        this.standardMask = standard;
+        this.bonusMask = bonus;
+
+        // Children are numbered after their parents
+        int nodes = game.lineNodeCells.length;
+        this.useful = new boolean[nodes];
+        this.sizes = new int[nodes];
+        for (int node = nodes - 1; node >= 0; node--) {
+            int size = NODE_SIZE;
+            for (int end = game.lineEnds[node]; end < game.lineEnds[node + 1]; end++) {
+                if (canWin(game.lineEndCombinations[end])) {
+                    useful[node] = true;
+                    size += OFFER_SIZE;
+                }
+            }
+            for (int child = game.lineChildren[node]; child < game.lineChildren[node + 1]; child++) {
+                if (useful[child]) {
+                    useful[node] = true;
+                    size += Math.min(sizes[child], NODE_SIZE + CALL_SIZE);
+                }
+            }
+            sizes[node] = size;
+        }
+    }
+
+    /**
+     * Returns whether a linear combination can ever be picked: one with a multiplier that is not above 0 never beats
+     * the initial multiplier of 0.
+     */
+    private boolean canWin(int combination) {
+        return game.combinationMultipliers[combination] > 0;
+    }
+
+    /**
+     * Generates the class file.
+     */
+    byte[] generate() {
+        writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Frames only ever merge locals of one type; avoids loading classes while generating
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(V11, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, name, null, SUPER, null);
+        generateConstructor();
+        int countMethods = generateCount();
+        int linesMethods = generateLines();
+        while (!pendingNodes.isEmpty()) {
+            generateNode(pendingNodes.poll());
+        }
+        generateBonus();
+        generateSettle();
+        generateEvaluate(countMethods, linesMethods);
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private void generateConstructor() {
+        MethodVisitor mv = writer.visitMethod(ACC_PUBLIC, "<init>", "(" + GAME_DESCRIPTOR + ")V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, SUPER, "<init>", "(" + GAME_DESCRIPTOR + ")V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates {@code count0, count1, ..}: counts symbols and remembers present symbols and bonus cells, unrolled
+     * over the cells.
+     *
+     * @return the number of methods generated
+     */
+    private int generateCount() {
+        int perMethod = METHOD_BUDGET / CELL_SIZE;
+        int methods = 0;
+        for (int first = 0; first < game.cells; first += perMethod) {
+            // cells, evaluation, counts, present, presentCount, bonusCells, bonusCount, symbol, count
+            MethodVisitor mv = writer.visitMethod(ACC_PRIVATE | ACC_STATIC, "count" + methods++, COUNT_DESCRIPTOR,
+                    null, null);
+            mv.visitCode();
+            loadField(mv, 1, "counts", "[I", 2);
+            loadField(mv, 1, "present", "[I", 3);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitFieldInsn(GETFIELD, EVALUATION, "presentCount", "I");
+            mv.visitVarInsn(ISTORE, 4);
+            loadField(mv, 1, "bonusCells", "[I", 5);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitFieldInsn(GETFIELD, EVALUATION, "bonusCount", "I");
+            mv.visitVarInsn(ISTORE, 6);
+            for (int cell = first; cell < Math.min(game.cells, first + perMethod); cell++) {
+                // symbol = cells[cell]; count = counts[symbol]; counts[symbol] = count + 1
+                mv.visitVarInsn(ALOAD, CELLS);
+                pushInt(mv, cell);
+                mv.visitInsn(BALOAD);
+                mv.visitVarInsn(ISTORE, 7);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitVarInsn(ILOAD, 7);
+                mv.visitInsn(IALOAD);
+                mv.visitVarInsn(ISTORE, 8);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitVarInsn(ILOAD, 7);
+                mv.visitVarInsn(ILOAD, 8);
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(IADD);
+                mv.visitInsn(IASTORE);
+                // if (count == 0) present[presentCount++] = symbol
+                Label seen = new Label();
+                mv.visitVarInsn(ILOAD, 8);
+                mv.visitJumpInsn(IFNE, seen);
+                mv.visitVarInsn(ALOAD, 3);
+                mv.visitVarInsn(ILOAD, 4);
+                mv.visitVarInsn(ILOAD, 7);
+                mv.visitInsn(IASTORE);
+                mv.visitIincInsn(4, 1);
+                mv.visitLabel(seen);
+                if (bonusMask != 0) {
+                    // if bonus symbol, bonusCells[bonusCount++] = cell
+                    Label standard = new Label();
+                    testMask(mv, bonusMask, 7, standard);
+                    mv.visitVarInsn(ALOAD, 5);
+                    mv.visitVarInsn(ILOAD, 6);
+                    pushInt(mv, cell);
+                    mv.visitInsn(IASTORE);
+                    mv.visitIincInsn(6, 1);
+                    mv.visitLabel(standard);
+                }
+            }
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, 4);
+            mv.visitFieldInsn(PUTFIELD, EVALUATION, "presentCount", "I");
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, 6);
+            mv.visitFieldInsn(PUTFIELD, EVALUATION, "bonusCount", "I");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        return methods;
+    }
+
+    /**
+     * Generates {@code lines0, lines1, ..}: walks the subtrees of the roots whose cell holds a standard symbol,
+     * grouping as many roots per method as fit.
+     *
+     * @return the number of methods generated
+     */
+    private int generateLines() {
+        List<Integer> roots = new ArrayList<>();
+        for (int root = 0; root < game.lineRoots; root++) {
+            if (useful[root]) {
+                roots.add(root);
+            }
+        }
+        int methods = 0;
+        int next = 0;
+        while (next < roots.size()) {
+            MethodVisitor mv = writer.visitMethod(ACC_PRIVATE | ACC_STATIC, "lines" + methods++, LINES_DESCRIPTOR,
+                    null, null);
+            mv.visitCode();
+            int used = 0;
+            do {
+                int root = roots.get(next++);
+                // symbol = cells[root cell]; if standard symbol, walk the subtree
+                Label skip = new Label();
+                mv.visitVarInsn(ALOAD, CELLS);
+                pushInt(mv, game.lineNodeCells[root]);
+                mv.visitInsn(BALOAD);
+                mv.visitVarInsn(ISTORE, SYMBOL);
+                testMask(mv, standardMask, SYMBOL, skip);
+                used += ROOT_SIZE + emitNode(mv, root, METHOD_BUDGET - used - ROOT_SIZE);
+                mv.visitLabel(skip);
+            } while (next < roots.size() && used + ROOT_SIZE + sizes[roots.get(next)] <= METHOD_BUDGET);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        return methods;
+    }
+
+    /**
+     * Generates {@code node<n>}: walks the subtree of a node whose cell has already been found to match the symbol.
+     */
+    private void generateNode(int node) {
+        MethodVisitor mv = writer.visitMethod(ACC_PRIVATE | ACC_STATIC, "node" + node, NODE_DESCRIPTOR, null, null);
+        mv.visitCode();
+        emitNode(mv, node, METHOD_BUDGET);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Emits the code of a node whose cell matches the symbol: offers the combinations of the areas ending at the node
+     * and descends into the children whose cells match as well, inlining them while they fit the budget and calling
+     * {@code node} methods generated later otherwise.
+     *
+     * @return the estimated size of the code emitted
+     */
+    private int emitNode(MethodVisitor mv, int node, int budget) {
+        int used = 0;
+        for (int end = game.lineEnds[node]; end < game.lineEnds[node + 1]; end++) {
+            int combination = game.lineEndCombinations[end];
+            if (canWin(combination)) {
+                emitOffer(mv, combination);
+                used += OFFER_SIZE;
+            }
+        }
+        for (int child = game.lineChildren[node]; child < game.lineChildren[node + 1]; child++) {
+            if (!useful[child]) {
+                continue;
+            }
+            // if (cells[child cell] == symbol)
+            Label mismatch = new Label();
+            mv.visitVarInsn(ALOAD, CELLS);
+            pushInt(mv, game.lineNodeCells[child]);
+            mv.visitInsn(BALOAD);
+            mv.visitVarInsn(ILOAD, SYMBOL);
+            mv.visitJumpInsn(IF_ICMPNE, mismatch);
+            if (used + sizes[child] <= budget) {
+                used += NODE_SIZE + emitNode(mv, child, budget - used - NODE_SIZE);
+            } else {
+                mv.visitVarInsn(ALOAD, CELLS);
+                mv.visitVarInsn(ALOAD, LINE_COMBINATIONS);
+                mv.visitVarInsn(ALOAD, LINE_MULTIPLIERS);
+                mv.visitVarInsn(ILOAD, SYMBOL);
+                mv.visitMethodInsn(INVOKESTATIC, name, "node" + child, NODE_DESCRIPTOR, false);
+                pendingNodes.add(child);
+                used += NODE_SIZE + CALL_SIZE;
+            }
+            mv.visitLabel(mismatch);
+        }
+        return used;
+    }
+
+    /**
+     * Emits {@link RewardCalculator#offerLine} with the combination's multiplier and id as constants.
+     */
+    private void emitOffer(MethodVisitor mv, int combination) {
+        double multiplier = game.combinationMultipliers[combination];
+        Label take = new Label();
+        Label keep = new Label();
+        // if (multiplier > linearMultipliers[symbol] || multiplier == linearMultipliers[symbol]
+        //         && combination < linearCombinations[symbol])
+        mv.visitLdcInsn(multiplier);
+        mv.visitVarInsn(ALOAD, LINE_MULTIPLIERS);
+        mv.visitVarInsn(ILOAD, SYMBOL);
+        mv.visitInsn(DALOAD);
+        mv.visitInsn(DCMPL);
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFGT, take);
+        mv.visitJumpInsn(IFNE, keep);
+        pushInt(mv, combination);
+        mv.visitVarInsn(ALOAD, LINE_COMBINATIONS);
+        mv.visitVarInsn(ILOAD, SYMBOL);
+        mv.visitInsn(IALOAD);
+        mv.visitJumpInsn(IF_ICMPGE, keep);
+        Label store = new Label();
+        mv.visitJumpInsn(GOTO, store);
+        mv.visitLabel(take);
+        mv.visitInsn(POP);
+        mv.visitLabel(store);
+        mv.visitVarInsn(ALOAD, LINE_MULTIPLIERS);
+        mv.visitVarInsn(ILOAD, SYMBOL);
+        mv.visitLdcInsn(multiplier);
+        mv.visitInsn(DASTORE);
+        mv.visitVarInsn(ALOAD, LINE_COMBINATIONS);
+        mv.visitVarInsn(ILOAD, SYMBOL);
+        pushInt(mv, combination);
+        mv.visitInsn(IASTORE);
+        mv.visitLabel(keep);
+    }
+
+    /**
+     * Generates {@code bonus(reward, symbol)}, {@link RewardCalculator#applyBonus} with the impacts as constants.
+     */
+    private void generateBonus() {
+        MethodVisitor mv = writer.visitMethod(ACC_PRIVATE | ACC_STATIC, "bonus", "(II)I", null, null);
+        mv.visitCode();
+        List<Integer> symbols = new ArrayList<>();
+        for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+            CompiledGame.Impact impact = game.impacts[symbol];
+            if (!game.standard[symbol]
+                    && (impact == CompiledGame.Impact.MULTIPLY_REWARD || impact == CompiledGame.Impact.EXTRA_BONUS)) {
+                symbols.add(symbol);
+            }
+        }
+        if (!symbols.isEmpty()) {
+            Label none = new Label();
+            int[] keys = symbols.stream().mapToInt(Integer::intValue).toArray();
+            Label[] labels = new Label[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                labels[i] = new Label();
+            }
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitLookupSwitchInsn(none, keys, labels);
+            for (int i = 0; i < keys.length; i++) {
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(ILOAD, 0);
+                if (game.impacts[keys[i]] == CompiledGame.Impact.MULTIPLY_REWARD) {
+                    // reward *= multiplier
+                    mv.visitInsn(I2D);
+                    mv.visitLdcInsn(game.rewardMultipliers[keys[i]]);
+                    mv.visitInsn(DMUL);
+                    mv.visitInsn(D2I);
+                } else {
+                    pushInt(mv, game.extras[keys[i]]);
+                    mv.visitInsn(IADD);
+                }
+                mv.visitInsn(IRETURN);
+            }
+            mv.visitLabel(none);
+        }
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates {@code settle(cells, betAmount, evaluation)}, {@link RewardCalculator#settle} unrolled over the
+     * standard symbols with their reward multipliers as constants.
+     */
+    private void generateSettle() {
+        // this, cells, betAmount, evaluation, counts, countCombinations, linearCombinations, linearMultipliers,
+        // bestCountCombination, combinationMultipliers, total, won, count, combination, bonusSymbol, i, bonusCount,
+        // bonusCells
+        MethodVisitor mv = writer.visitMethod(ACC_FINAL, "settle", EVALUATE_DESCRIPTOR, null, null);
+        mv.visitCode();
+        loadField(mv, 3, "counts", "[I", 4);
+        loadField(mv, 3, "countCombinations", "[I", 5);
+        loadField(mv, 3, "linearCombinations", "[I", 6);
+        loadField(mv, 3, "linearMultipliers", "[D", 7);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, SUPER, "bestCountCombination", "[I");
+        mv.visitVarInsn(ASTORE, 8);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, SUPER, "combinationMultipliers", "[D");
+        mv.visitVarInsn(ASTORE, 9);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 10);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 11);
+        for (int symbol : game.standardSymbols) {
+            Label next = new Label();
+            Label noCount = new Label();
+            // count = counts[symbol]; if (count != 0)
+            mv.visitVarInsn(ALOAD, 4);
+            pushInt(mv, symbol);
+            mv.visitInsn(IALOAD);
+            mv.visitVarInsn(ISTORE, 12);
+            mv.visitVarInsn(ILOAD, 12);
+            mv.visitJumpInsn(IFEQ, next);
+            // combination = bestCountCombination[count]; countCombinations[symbol] = combination
+            mv.visitVarInsn(ALOAD, 8);
+            mv.visitVarInsn(ILOAD, 12);
+            mv.visitInsn(IALOAD);
+            mv.visitVarInsn(ISTORE, 13);
+            mv.visitVarInsn(ALOAD, 5);
+            pushInt(mv, symbol);
+            mv.visitVarInsn(ILOAD, 13);
+            mv.visitInsn(IASTORE);
+            mv.visitVarInsn(ILOAD, 13);
+            mv.visitJumpInsn(IFLT, noCount);
+            // total += (int) Math.round(betAmount * rewardMultiplier * combinationMultipliers[combination]
+            //         * Math.max(1, linearMultipliers[symbol])); won = true
+            mv.visitVarInsn(ILOAD, 10);
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitInsn(I2D);
+            mv.visitLdcInsn(game.rewardMultipliers[symbol]);
+            mv.visitInsn(DMUL);
+            mv.visitVarInsn(ALOAD, 9);
+            mv.visitVarInsn(ILOAD, 13);
+            mv.visitInsn(DALOAD);
+            mv.visitInsn(DMUL);
+            mv.visitInsn(DCONST_1);
+            mv.visitVarInsn(ALOAD, 7);
+            pushInt(mv, symbol);
+            mv.visitInsn(DALOAD);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "max", "(DD)D", false);
+            mv.visitInsn(DMUL);
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "round", "(D)J", false);
+            mv.visitInsn(L2I);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, 10);
+            mv.visitInsn(ICONST_1);
+            mv.visitVarInsn(ISTORE, 11);
+            mv.visitJumpInsn(GOTO, next);
+            // A linear combination alone wins nothing, but still makes the spin a win
+            mv.visitLabel(noCount);
+            mv.visitVarInsn(ALOAD, 6);
+            pushInt(mv, symbol);
+            mv.visitInsn(IALOAD);
+            mv.visitJumpInsn(IFLT, next);
+            mv.visitInsn(ICONST_1);
+            mv.visitVarInsn(ISTORE, 11);
+            mv.visitLabel(next);
+        }
+        // evaluation.baseReward = total
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ILOAD, 10);
+        mv.visitFieldInsn(PUTFIELD, EVALUATION, "baseReward", "I");
+
+        // for (i = 0; i < bonusCount; i++) { bonusSymbol = cells[bonusCells[i]]; total = bonus(total, bonusSymbol) }
+        mv.visitInsn(ICONST_M1);
+        mv.visitVarInsn(ISTORE, 14);
+        if (bonusMask != 0) {
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitFieldInsn(GETFIELD, EVALUATION, "bonusCount", "I");
+            mv.visitVarInsn(ISTORE, 16);
+            loadField(mv, 3, "bonusCells", "[I", 17);
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, 15);
+            Label loop = new Label();
+            Label done = new Label();
+            mv.visitLabel(loop);
+            mv.visitVarInsn(ILOAD, 15);
+            mv.visitVarInsn(ILOAD, 16);
+            mv.visitJumpInsn(IF_ICMPGE, done);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 17);
+            mv.visitVarInsn(ILOAD, 15);
+            mv.visitInsn(IALOAD);
+            mv.visitInsn(BALOAD);
+            mv.visitVarInsn(ISTORE, 14);
+            mv.visitVarInsn(ILOAD, 10);
+            mv.visitVarInsn(ILOAD, 14);
+            mv.visitMethodInsn(INVOKESTATIC, name, "bonus", "(II)I", false);
+            mv.visitVarInsn(ISTORE, 10);
+            mv.visitIincInsn(15, 1);
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(done);
+        }
+
+        // if (!won) total = 0
+        Label won = new Label();
+        mv.visitVarInsn(ILOAD, 11);
+        mv.visitJumpInsn(IFNE, won);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 10);
+        mv.visitLabel(won);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ILOAD, 11);
+        mv.visitFieldInsn(PUTFIELD, EVALUATION, "won", "Z");
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ILOAD, 14);
+        mv.visitFieldInsn(PUTFIELD, EVALUATION, "bonusSymbol", "I");
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ILOAD, 10);
+        mv.visitFieldInsn(PUTFIELD, EVALUATION, "reward", "I");
+        mv.visitVarInsn(ILOAD, 10);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Generates {@code evaluate(cells, betAmount, evaluation)}, calling the other methods in order.
+     */
+    private void generateEvaluate(int countMethods, int linesMethods) {
+        MethodVisitor mv = writer.visitMethod(0, "evaluate", EVALUATE_DESCRIPTOR, null, null);
+        mv.visitCode();
+        // if (cells.length != game.cells) throw new IllegalArgumentException(..)
+        Label sized = new Label();
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitInsn(ARRAYLENGTH);
+        pushInt(mv, game.cells);
+        mv.visitJumpInsn(IF_ICMPEQ, sized);
+        mv.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("Grid size does not match the game");
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V",
+                false);
+        mv.visitInsn(ATHROW);
+        mv.visitLabel(sized);
+
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKEVIRTUAL, EVALUATION, "reset", "()V", false);
+        for (int i = 0; i < countMethods; i++) {
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKESTATIC, name, "count" + i, COUNT_DESCRIPTOR, false);
+        }
+        for (int i = 0; i < linesMethods; i++) {
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitFieldInsn(GETFIELD, EVALUATION, "linearCombinations", "[I");
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitFieldInsn(GETFIELD, EVALUATION, "linearMultipliers", "[D");
+            mv.visitMethodInsn(INVOKESTATIC, name, "lines" + i, LINES_DESCRIPTOR, false);
+        }
+        boolean emptyLines = false;
+        for (int combination : game.emptyLineCombinations) {
+            emptyLines |= canWin(combination);
+        }
+        if (emptyLines) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SUPER, "offerEmptyLines", "(" + EVALUATION_DESCRIPTOR + ")V", false);
+        }
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKEVIRTUAL, name, "settle", EVALUATE_DESCRIPTOR, false);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Emits {@code local = evaluation.field} for the evaluation in the given local.
+     */
+    private static void loadField(MethodVisitor mv, int evaluation, String field, String descriptor, int local) {
+        mv.visitVarInsn(ALOAD, evaluation);
+        mv.visitFieldInsn(GETFIELD, EVALUATION, field, descriptor);
+        mv.visitVarInsn(ASTORE, local);
+    }
+
+    /**
+     * Emits a jump to the given label unless the symbol in the given local is in the mask.
+     */
+    private static void testMask(MethodVisitor mv, long mask, int symbol, Label outside) {
+        mv.visitLdcInsn(mask);
+        mv.visitVarInsn(ILOAD, symbol);
+        mv.visitInsn(LUSHR);
+        mv.visitInsn(L2I);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IAND);
+        mv.visitJumpInsn(IFEQ, outside);
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -0,0 +1,632 @@
+package com.halilsahin.scratch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Computes the exact reward distribution of a game by dynamic programming over the cells of the grid.
+ * <p>
+ * The reward of a grid depends only on how often each standard symbol occurs and on the best linear combination
+ * filled by each symbol. The calculator walks the cells in row-major order and keeps, for every distinct partial
+ * grid state, the probability of reaching it. A state holds the count per standard symbol, the best linear
+ * combination completed per symbol so far, and for every covered area that has both filled and open cells the symbol
+ * it is still matching, or that it can no longer be filled. Partial grids with the same state are merged, so the
+ * work follows the number of distinct states rather than the number of grids. States are further merged when:
+ * <ul>
+ * <li>a count has reached the point after which the same_symbols combination it picks no longer changes;</li>
+ * <li>they differ only by a relabelling of interchangeable standard symbols, which have the same reward multiplier
+ * and the same weight in every cell;</li>
+ * <li>areas whose combinations can never be picked are left out of the state altogether.</li>
+ * </ul>
+ * <p>
+ * The generator draws every cell from its own distribution and then overwrites one uniformly chosen cell with
+ * a bonus symbol. The walk mirrors that with a flag recording whether the bonus cell has been placed: at every cell
+ * a state either draws a standard symbol or places the bonus, which blocks the cell for every area through it. Every
+ * final state is then settled once by the {@link RewardCalculator} to get its pre-bonus reward, and the bonus draw is
+ * applied analytically to the resulting distribution instead of evaluating every bonus symbol.
+ * <p>
+ * The number of states grows with the number of symbols and with the number of areas open at once, far slower than
+ * the number of grids: the shipped 3x3 game ends in about 22 thousand states for its 15 million grids, and a 4x4
+ * game of six symbols in about 600 thousand for its 7.5 trillion.
+ *
+ * @author Halil Şahin
+ */
+public class ExactCalculator {
+
+    /**
+     * Default upper bound on the number of distinct states per cell.
+     */
+    public static final int DEFAULT_MAX_STATES = 5_000_000;
+
+    private final CompiledGame game;
+    private final RewardCalculator calculator;
+    private final int maxStates;
+
+    // Standard symbol per index, and index per ordinal
+    private final int[] standard;
+    private final int[] standardIndex;
+    // Counts saturate here, see the class comment
+    private final int countCap;
+    // Classes of interchangeable standard symbol indexes with at least two members
+    private final int[][] symmetries;
+    // Areas open after each cell, with their slot before the cell or -1 if they start at it, whether they cover the
+    // cell, and the areas completed at each cell with their slot before the cell or -1 for single-cell areas
+    private final int[][] openAreas;
+    private final int[][] previousSlots;
+    private final boolean[][] covers;
+    private final int[][] completedSlots;
+    private final int[][] completedCombinations;
+
+    public ExactCalculator(CompiledGame game) {
+        this(game, DEFAULT_MAX_STATES);
+    }
+
+    /**
+     * Creates a calculator.
+     *
+     * @param game      the compiled game
+     * @param maxStates the upper bound on the number of distinct states per cell
+     * @throws IllegalArgumentException if the game defines no standard symbols, draws bonus symbols in standard
+     *                                  cells or standard symbols as bonus, or has too many cells or combinations
+     */
+    public ExactCalculator(CompiledGame game, int maxStates) {
+        for (AliasSampler sampler : game.cellSamplers) {
+            if (sampler == null) {
+                throw new IllegalArgumentException("The game defines no standard symbols");
+            }
+            for (int i = 0; i < sampler.size(); i++) {
+                if (!game.isStandard(sampler.outcome(i))) {
+                    throw new IllegalArgumentException("Standard probabilities must only contain standard symbols");
+                }
+            }
+        }
+        if (game.bonusSampler != null) {
+            for (int i = 0; i < game.bonusSampler.size(); i++) {
+                if (game.isStandard(game.bonusSampler.outcome(i))) {
+                    throw new IllegalArgumentException("Bonus probabilities must only contain bonus symbols");
+                }
+            }
+        }
+        if (game.getCombinationCount() >= 0xFFFF) {
+            throw new IllegalArgumentException("Games with more than " + (0xFFFF - 1) + " combinations are not supported");
+        }
+        this.game = game;
+        this.calculator = new RewardCalculator(game);
+        this.maxStates = maxStates;
+
+        this.standard = game.standardSymbols;
+        this.standardIndex = new int[game.getSymbolCount()];
+        Arrays.fill(standardIndex, -1);
+        for (int k = 0; k < standard.length; k++) {
+            standardIndex[standard[k]] = k;
+        }
+
+        int cap = game.cells;
+        while (cap > 1 && game.bestCountCombination[cap - 1] == game.bestCountCombination[cap]) {
+            cap--;
+        }
+        if (cap > 0xFF) {
+            throw new IllegalArgumentException("Games with more than 255 cells are not supported");
+        }
+        this.countCap = cap;
+        this.symmetries = symmetries();
+
+        // Areas whose combination can never be picked, see RewardCalculator.offerLine
+        List<int[]> areas = new ArrayList<>();
+        List<Integer> combinations = new ArrayList<>();
+        for (int a = 0; a < game.areaCombinations.length; a++) {
+            if (game.combinationMultipliers[game.areaCombinations[a]] > 0) {
+                areas.add(Arrays.copyOfRange(game.areaCells, game.areaOffsets[a], game.areaOffsets[a + 1]));
+                combinations.add(game.areaCombinations[a]);
+            }
+        }
+        int[] first = new int[areas.size()];
+        int[] last = new int[areas.size()];
+        for (int a = 0; a < areas.size(); a++) {
+            first[a] = Arrays.stream(areas.get(a)).min().getAsInt();
+            last[a] = Arrays.stream(areas.get(a)).max().getAsInt();
+        }
+        this.openAreas = new int[game.cells][];
+        this.previousSlots = new int[game.cells][];
+        this.covers = new boolean[game.cells][];
+        this.completedSlots = new int[game.cells][];
+        this.completedCombinations = new int[game.cells][];
+        int[] slots = new int[areas.size()];
+        Arrays.fill(slots, -1);
+        for (int cell = 0; cell < game.cells; cell++) {
+            List<Integer> open = new ArrayList<>();
+            List<Integer> completed = new ArrayList<>();
+            for (int a = 0; a < areas.size(); a++) {
+                if (first[a] <= cell && cell < last[a]) {
+                    open.add(a);
+                } else if (last[a] == cell) {
+                    completed.add(a);
+                }
+            }
+            openAreas[cell] = open.stream().mapToInt(Integer::intValue).toArray();
+            previousSlots[cell] = new int[open.size()];
+            covers[cell] = new boolean[open.size()];
+            for (int i = 0; i < open.size(); i++) {
+                int a = open.get(i);
+                previousSlots[cell][i] = slots[a];
+                for (int areaCell : areas.get(a)) {
+                    covers[cell][i] |= areaCell == cell;
+                }
+            }
+            completedSlots[cell] = new int[completed.size()];
+            completedCombinations[cell] = new int[completed.size()];
+            for (int i = 0; i < completed.size(); i++) {
+                completedSlots[cell][i] = slots[completed.get(i)];
+                completedCombinations[cell][i] = combinations.get(completed.get(i));
+            }
+            Arrays.fill(slots, -1);
+            for (int i = 0; i < open.size(); i++) {
+                slots[open.get(i)] = i;
+            }
+        }
+    }
+
+    /**
+     * Groups standard symbols that are interchangeable: equal reward multipliers and equal weights in every cell.
+     */
+    private int[][] symmetries() {
+        List<int[]> classes = new ArrayList<>();
+        boolean[] grouped = new boolean[standard.length];
+        for (int k = 0; k < standard.length; k++) {
+            if (grouped[k]) {
+                continue;
+            }
+            List<Integer> members = new ArrayList<>();
+            members.add(k);
+            for (int j = k + 1; j < standard.length; j++) {
+                if (!grouped[j] && interchangeable(standard[k], standard[j])) {
+                    grouped[j] = true;
+                    members.add(j);
+                }
+            }
+            if (members.size() > 1) {
+                classes.add(members.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return classes.toArray(new int[0][]);
+    }
+
+    private boolean interchangeable(int symbol, int other) {
+        if (Double.compare(game.rewardMultipliers[symbol], game.rewardMultipliers[other]) != 0) {
+            return false;
+        }
+        for (AliasSampler sampler : game.cellSamplers) {
+            int weight = 0;
+            int otherWeight = 0;
+            for (int i = 0; i < sampler.size(); i++) {
+                if (sampler.outcome(i) == symbol) {
+                    weight = sampler.weight(i);
+                } else if (sampler.outcome(i) == other) {
+                    otherWeight = sampler.weight(i);
+                }
+            }
+            if (weight != otherWeight) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of grids that {@link #calculate(int)} covers, or {@link Long#MAX_VALUE} if it does not fit.
+     */
+    public long gridCount() {
+        try {
+            long total = 0;
+            int positions = game.bonusSampler != null ? game.cells : 1;
+            for (int position = 0; position < positions; position++) {
+                long grids = 1;
+                for (int cell = 0; cell < game.cells; cell++) {
+                    if (game.bonusSampler == null || cell != position) {
+                        grids = Math.multiplyExact(grids, game.cellSamplers[cell].size());
+                    }
+                }
+                total = Math.addExact(total, grids);
+            }
+            return total;
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Calculates the exact reward distribution for the given betting amount.
+     *
+     * @param betAmount the betting amount
+     * @return the exact report
+     * @throws IllegalArgumentException if a cell has more distinct states than the configured bound
+     */
+    public ExactReport calculate(int betAmount) {
+        StateTable finalStates = walk();
+        int header = finalStates.keyLength;
+        boolean bonus = game.bonusSampler != null;
+
+        // Settle every final state once to get its pre-bonus reward
+        ProbabilityMap wins = new ProbabilityMap();
+        double lossProbability = 0;
+        byte[] key = new byte[header];
+        byte[] noBonusCells = new byte[game.cells];
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        for (int state = 0; state < finalStates.size; state++) {
+            finalStates.key(state, key);
+            if (bonus && key[0] == 0) {
+                continue;
+            }
+            settle(key, betAmount, evaluation, noBonusCells);
+            if (evaluation.won) {
+                wins.add(evaluation.baseReward, finalStates.values[state]);
+            } else {
+                lossProbability += finalStates.values[state];
+            }
+        }
+
+        Map<Integer, Double> payouts = new TreeMap<>();
+        if (bonus) {
+            AliasSampler sampler = game.bonusSampler;
+            for (int i = 0; i < sampler.size(); i++) {
+                addAll(payouts, wins, sampler.probability(i), sampler.outcome(i));
+            }
+        } else {
+            addAll(payouts, wins, 1.0, -1);
+        }
+
+        ExactReport report = new ExactReport();
+        report.setBetAmount(betAmount);
+        report.setGrids(gridCount());
+        report.setStates(finalStates.size);
+        report.setHitRate(1 - lossProbability);
+        payouts.merge(0, lossProbability, Double::sum);
+
+        double mean = 0;
+        double meanOfSquares = 0;
+        for (Map.Entry<Integer, Double> entry : payouts.entrySet()) {
+            double reward = entry.getKey();
+            mean += reward * entry.getValue();
+            meanOfSquares += reward * reward * entry.getValue();
+        }
+        report.setRtp(mean / betAmount);
+        report.setVolatility(Math.sqrt(Math.max(0, meanOfSquares - mean * mean)) / betAmount);
+        report.setPayouts(payouts);
+        return report;
+    }
+
+    /**
+     * Walks the cells, merging partial grids with equal states, and returns the states after the last cell.
+     */
+    private StateTable walk() {
+        boolean bonus = game.bonusSampler != null;
+        int header = headerLength();
+        StateTable states = new StateTable(header);
+        byte[] key = new byte[header];
+        states.add(key, 1.0);
+        double positionProbability = 1.0 / game.cells;
+
+        byte[] previous = new byte[header];
+        for (int cell = 0; cell < game.cells; cell++) {
+            StateTable next = new StateTable(header + openAreas[cell].length);
+            byte[] nextKey = new byte[next.keyLength];
+            previous = Arrays.copyOf(previous, states.keyLength);
+            AliasSampler sampler = game.cellSamplers[cell];
+            for (int state = 0; state < states.size; state++) {
+                states.key(state, previous);
+                double probability = states.values[state];
+                for (int i = 0; i < sampler.size(); i++) {
+                    step(cell, previous, standardIndex[sampler.outcome(i)], nextKey);
+                    add(next, nextKey, probability * sampler.probability(i));
+                }
+                if (bonus && previous[0] == 0) {
+                    // The bonus overwrites this cell, whatever standard symbol was drawn under it
+                    step(cell, previous, -1, nextKey);
+                    nextKey[0] = 1;
+                    add(next, nextKey, probability * positionProbability);
+                }
+            }
+            states = next;
+        }
+        return states;
+    }
+
+    private void add(StateTable table, byte[] key, double probability) {
+        if (symmetries.length > 0) {
+            canonicalize(key);
+        }
+        table.add(key, probability);
+        if (table.size > maxStates) {
+            throw new IllegalArgumentException("Game has more than " + maxStates + " states per cell to enumerate");
+        }
+    }
+
+    /**
+     * Number of bytes of a state before its open areas: the bonus flag if the game has bonus symbols, one count and
+     * two bytes of linear combination plus one per standard symbol.
+     */
+    private int headerLength() {
+        return countOffset() + 3 * standard.length;
+    }
+
+    private int countOffset() {
+        return game.bonusSampler != null ? 1 : 0;
+    }
+
+    private int lineOffset(int k) {
+        return countOffset() + standard.length + 2 * k;
+    }
+
+    /**
+     * Computes the state after a cell from the state before it.
+     *
+     * @param cell     the cell
+     * @param previous the state before the cell
+     * @param symbol   the standard symbol index drawn in the cell, or -1 if the cell holds the bonus
+     * @param next     receives the state after the cell
+     */
+    private void step(int cell, byte[] previous, int symbol, byte[] next) {
+        int header = headerLength();
+        System.arraycopy(previous, 0, next, 0, header);
+        if (symbol >= 0) {
+            int count = previous[countOffset() + symbol] & 0xFF;
+            next[countOffset() + symbol] = (byte) Math.min(countCap, count + 1);
+        }
+        // Open areas hold 0 once they cannot be filled, or the index plus one of the symbol they match
+        byte drawn = (byte) (symbol + 1);
+        int[] slots = previousSlots[cell];
+        boolean[] covered = covers[cell];
+        for (int i = 0; i < slots.length; i++) {
+            byte area;
+            if (slots[i] < 0) {
+                area = drawn;
+            } else {
+                area = previous[header + slots[i]];
+                if (covered[i] && area != drawn) {
+                    area = 0;
+                }
+            }
+            next[header + i] = area;
+        }
+        if (symbol >= 0) {
+            int[] completed = completedSlots[cell];
+            for (int i = 0; i < completed.length; i++) {
+                if (completed[i] < 0 || previous[header + completed[i]] == drawn) {
+                    offerLine(next, symbol, completedCombinations[cell][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Keeps the better of the symbol's linear combination and the given one, as {@link RewardCalculator#offerLine}.
+     */
+    private void offerLine(byte[] state, int symbol, int combination) {
+        int offset = lineOffset(symbol);
+        int best = ((state[offset] & 0xFF) << 8 | (state[offset + 1] & 0xFF)) - 1;
+        double multiplier = game.combinationMultipliers[combination];
+        double bestMultiplier = best >= 0 ? game.combinationMultipliers[best] : 0;
+        if (multiplier > bestMultiplier || (multiplier == bestMultiplier && combination < best)) {
+            state[offset] = (byte) ((combination + 1) >>> 8);
+            state[offset + 1] = (byte) (combination + 1);
+        }
+    }
+
+    /**
+     * Renumbers interchangeable symbols so that equivalent states get the same key: within each class, symbols are
+     * ordered by count, linear combination and first open area they match.
+     */
+    private void canonicalize(byte[] state) {
+        int header = headerLength();
+        int[] renumbered = null;
+        for (int[] members : symmetries) {
+            long[] order = new long[members.length];
+            for (int m = 0; m < members.length; m++) {
+                int k = members[m];
+                int firstArea = 0xFFFF;
+                for (int i = header; i < Math.min(state.length, header + 0xFFFF); i++) {
+                    if ((state[i] & 0xFF) == k + 1) {
+                        firstArea = i - header;
+                        break;
+                    }
+                }
+                int offset = lineOffset(k);
+                long line = (state[offset] & 0xFF) << 8 | (state[offset + 1] & 0xFF);
+                order[m] = (long) (state[countOffset() + k] & 0xFF) << 48 | line << 32 | (long) firstArea << 8 | m;
+            }
+            Arrays.sort(order);
+            boolean sorted = true;
+            for (int m = 0; m < members.length; m++) {
+                sorted &= (order[m] & 0xFF) == m;
+            }
+            if (sorted) {
+                continue;
+            }
+            if (renumbered == null) {
+                renumbered = new int[standard.length + 1];
+                for (int k = 0; k <= standard.length; k++) {
+                    renumbered[k] = k;
+                }
+            }
+            byte[] counts = new byte[members.length];
+            byte[] lines = new byte[2 * members.length];
+            for (int m = 0; m < members.length; m++) {
+                int from = members[(int) (order[m] & 0xFF)];
+                counts[m] = state[countOffset() + from];
+                lines[2 * m] = state[lineOffset(from)];
+                lines[2 * m + 1] = state[lineOffset(from) + 1];
+                renumbered[from + 1] = members[m] + 1;
+            }
+            for (int m = 0; m < members.length; m++) {
+                state[countOffset() + members[m]] = counts[m];
+                state[lineOffset(members[m])] = lines[2 * m];
+                state[lineOffset(members[m]) + 1] = lines[2 * m + 1];
+            }
+        }
+        if (renumbered != null) {
+            for (int i = header; i < state.length; i++) {
+                state[i] = (byte) renumbered[state[i] & 0xFF];
+            }
+        }
+    }
+
+    /**
+     * Fills the evaluation with the counts and linear combinations of a final state and settles it.
+     */
+    private void settle(byte[] state, int betAmount, RewardCalculator.Evaluation evaluation, byte[] noBonusCells) {
+        evaluation.reset();
+        for (int k = 0; k < standard.length; k++) {
+            int count = state[countOffset() + k] & 0xFF;
+            if (count == 0) {
+                continue;
+            }
+            int symbol = standard[k];
+            evaluation.counts[symbol] = count;
+            evaluation.present[evaluation.presentCount++] = symbol;
+            int offset = lineOffset(k);
+            int line = ((state[offset] & 0xFF) << 8 | (state[offset + 1] & 0xFF)) - 1;
+            if (line >= 0) {
+                evaluation.linearCombinations[symbol] = line;
+                evaluation.linearMultipliers[symbol] = game.combinationMultipliers[line];
+            }
+        }
+        // An empty area is covered by every standard symbol present
+        for (int combination : game.emptyLineCombinations) {
+            for (int i = 0; i < evaluation.presentCount; i++) {
+                calculator.offerLine(evaluation, evaluation.present[i], combination);
+            }
+        }
+        calculator.settle(noBonusCells, betAmount, evaluation);
+    }
+
+    private void addAll(Map<Integer, Double> payouts, ProbabilityMap wins, double weight, int bonusSymbol) {
+        for (int i = 0; i < wins.keys.length; i++) {
+            if (wins.used[i]) {
+                int reward = bonusSymbol >= 0 ? calculator.applyBonus(wins.keys[i], bonusSymbol) : wins.keys[i];
+                payouts.merge(reward, weight * wins.values[i], Double::sum);
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map from fixed-length state keys to accumulated probability, with the keys packed in one array.
+     */
+    private static final class StateTable {
+        private final int keyLength;
+        private byte[] keys;
+        private double[] values;
+        // State index plus one per slot, 0 marking an empty slot
+        private int[] slots;
+        private int size;
+
+        StateTable(int keyLength) {
+            this.keyLength = keyLength;
+            this.keys = new byte[16 * Math.max(1, keyLength)];
+            this.values = new double[16];
+            this.slots = new int[32];
+        }
+
+        void add(byte[] key, double value) {
+            int mask = slots.length - 1;
+            int slot = hash(key, 0) & mask;
+            while (slots[slot] != 0) {
+                int state = slots[slot] - 1;
+                if (equals(state, key)) {
+                    values[state] += value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == values.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            System.arraycopy(key, 0, keys, size * keyLength, keyLength);
+            values[size] = value;
+            slots[slot] = ++size;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        void key(int state, byte[] into) {
+            System.arraycopy(keys, state * keyLength, into, 0, keyLength);
+        }
+
+        private boolean equals(int state, byte[] key) {
+            int offset = state * keyLength;
+            for (int i = 0; i < keyLength; i++) {
+                if (keys[offset + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int hash(byte[] array, int offset) {
+            int h = 1;
+            for (int i = 0; i < keyLength; i++) {
+                h = 31 * h + array[offset + i];
+            }
+            return h * 0x9E3779B9 >>> 7;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int state = 0; state < size; state++) {
+                int slot = hash(keys, state * keyLength) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = state + 1;
+            }
+        }
+    }
+
+    /**
+     * Open-addressing map from reward to accumulated probability, avoiding boxing per final state.
+     */
+    private static final class ProbabilityMap {
+        private int[] keys = new int[64];
+        private double[] values = new double[64];
+        private boolean[] used = new boolean[64];
+        private int size;
+
+        void add(int key, double value) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 7 & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    values[slot] = value;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] += value;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            double[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new int[oldKeys.length * 2];
+            values = new double[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    add(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exact reward distribution of a game: return-to-player, hit frequency, volatility and the probability of
+ * every possible reward.
+ *
+ * @author Halil Şahin
+ */
+@Data
+public class ExactReport {
+    private static final Logger LOGGER = Logger.getLogger(ExactReport.class.getName());
+    private static final ObjectWriter WRITER = Json.INDENTED;
+
+    private int betAmount;
+    private long grids;
+    // Distinct states after the last cell, each settled once
+    private long states;
+    private double rtp;
+    private double hitRate;
+    private double volatility;
+    private Map<Integer, Double> payouts;
+
+    @Override
+    public String toString() {
+        try {
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Failed to convert report to JSON: " + e.getMessage(), e);
+            return super.toString();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.halilsahin.scratch;
+
+import java.util.Arrays;
+
+/**
+ * Compact game matrix holding symbol ordinals of a {@link CompiledGame} in a flat, row-major byte array.
+ * <p>
+ * A grid is mutable so that generators can fill the same instance spin after spin; the {@code String[][]}
+ * form is only built on demand as a view for the JSON result.
+ *
+ * @author Halil Şahin
+ */
+public final class Grid {
+
+    private final int rows;
+    private final int columns;
+    final byte[] cells;
+
+    public Grid(int rows, int columns) {
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("Grid size must be positive: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.cells = new byte[rows * columns];
+    }
+
+    /**
+     * Creates an empty grid sized for the given game.
+     *
+     * @param game the compiled game
+     * @return a new grid
+     */
+    public static Grid of(CompiledGame game) {
+        return new Grid(game.getRows(), game.getColumns());
+    }
+
+    /**
+     * Creates a grid from a matrix of symbol names.
+     *
+     * @param game   the compiled game defining the symbols
+     * @param matrix the matrix of symbol names
+     * @return a new grid
+     * @throws IllegalArgumentException if the matrix does not fit the game or contains unknown symbols
+     */
+    public static Grid fromMatrix(CompiledGame game, String[][] matrix) {
+        Grid grid = of(game);
+        if (matrix.length != grid.rows) {
+            throw new IllegalArgumentException("Expected " + grid.rows + " rows but got " + matrix.length);
+        }
+        for (int r = 0; r < grid.rows; r++) {
+            if (matrix[r].length != grid.columns) {
+                throw new IllegalArgumentException("Expected " + grid.columns + " columns but got " + matrix[r].length);
+            }
+            for (int c = 0; c < grid.columns; c++) {
+                grid.cells[r * grid.columns + c] = (byte) game.ordinalOf(matrix[r][c]);
+            }
+        }
+        return grid;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the symbol ordinal at the given row-major cell index.
+     */
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    public int get(int row, int column) {
+        return cells[row * columns + column];
+    }
+
+    public void set(int cell, int ordinal) {
+        cells[cell] = (byte) ordinal;
+    }
+
+    public void set(int row, int column, int ordinal) {
+        cells[row * columns + column] = (byte) ordinal;
+    }
+
+    /**
+     * Copies the contents of another grid of the same size into this grid.
+     *
+     * @param other the grid to copy from
+     */
+    public void copyFrom(Grid other) {
+        if (other.rows != rows || other.columns != columns) {
+            throw new IllegalArgumentException("Grid sizes differ");
+        }
+        System.arraycopy(other.cells, 0, cells, 0, cells.length);
+    }
+
+    /**
+     * Builds the matrix of symbol names for this grid.
+     *
+     * @param game the compiled game defining the symbols
+     * @return a new matrix of symbol names
+     */
+    public String[][] toMatrix(CompiledGame game) {
+        String[][] matrix = new String[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix[r][c] = game.symbolNames[cells[r * columns + c]];
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Grid)) {
+            return false;
+        }
+        Grid grid = (Grid) o;
+        return rows == grid.rows && columns == grid.columns && Arrays.equals(cells, grid.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + columns) + Arrays.hashCode(cells);
+    }
+
+    @Override
+    public String toString() {
+        return "Grid" + Arrays.toString(cells);
+    }
+}
@@ -0,0 +1,138 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Summary of an {@link ImportanceSimulator} run: unbiased estimates of return-to-player and of tail probabilities
+ * with their standard errors and 95% confidence bounds, and diagnostics of the likelihood-ratio weights.
+ * <p>
+ * The mean weight estimates 1 and should be within a few standard errors of it; the effective sample size
+ * {@code (sum w)^2 / sum w^2} falls far below the number of spins when a few spins carry most of the weight, which
+ * means the tilts are too strong for the estimates to be trusted. The equivalent spins of an estimate are the number
+ * of plain Monte Carlo spins that would reach the same standard error.
+ *
+ * @author Halil Şahin
+ */
+@Data
+public class ImportanceReport {
+    private static final Logger LOGGER = Logger.getLogger(ImportanceReport.class.getName());
+    private static final ObjectWriter WRITER = Json.INDENTED;
+
+    private long spins;
+    private int betAmount;
+    private List<Map<String, Double>> tilts;
+    private double defensiveShare;
+    private double rtp;
+    private double rtpStandardError;
+    private double rtpLow;
+    private double rtpHigh;
+    private double rtpEquivalentSpins;
+    private double meanWeight;
+    private double meanWeightStandardError;
+    private double effectiveSampleSize;
+    private double maxWeight;
+    private List<Tail> tails;
+
+    /**
+     * Estimated probability of a reward of at least a multiple of the bet.
+     */
+    @Data
+    public static class Tail {
+        private double multiple;
+        private double probability;
+        private double standardError;
+        // Upper 95% confidence bound
+        private double upperBound;
+        // 1 in this many spins, null for a zero estimate
+        private Double odds;
+        // Spins that reached the tail under the tilted distributions
+        private long samples;
+        private double equivalentSpins;
+    }
+
+    /**
+     * Builds the report of the given sums.
+     */
+    static ImportanceReport of(ImportanceSimulator.Sums sums, long spins, int betAmount,
+                               List<Map<String, Double>> tilts, double defensiveShare, double[] tailMultiples) {
+        ImportanceReport report = new ImportanceReport();
+        report.spins = spins;
+        report.betAmount = betAmount;
+        report.tilts = tilts;
+        report.defensiveShare = defensiveShare;
+        report.tails = new ArrayList<>(tailMultiples.length);
+        if (spins == 0) {
+            return report;
+        }
+
+        // Returns are measured in multiples of the bet
+        double mean = sums.weightedRewards / spins;
+        double error = standardError(sums.squaredWeightedRewards, mean, spins);
+        report.rtp = mean / betAmount;
+        report.rtpStandardError = error / betAmount;
+        report.rtpLow = report.rtp - SimulationReport.Z_95 * report.rtpStandardError;
+        report.rtpHigh = report.rtp + SimulationReport.Z_95 * report.rtpStandardError;
+        double plainVariance = Math.max(0, sums.weightedSquaredRewards / spins - mean * mean);
+        report.rtpEquivalentSpins = equivalentSpins(plainVariance, error, spins);
+
+        report.meanWeight = sums.weights / spins;
+        report.meanWeightStandardError = standardError(sums.squaredWeights, report.meanWeight, spins);
+        report.effectiveSampleSize = sums.squaredWeights == 0 ? 0 : sums.weights * sums.weights / sums.squaredWeights;
+        report.maxWeight = sums.maxWeight;
+
+        for (int t = 0; t < tailMultiples.length; t++) {
+            Tail tail = new Tail();
+            tail.multiple = tailMultiples[t];
+            tail.samples = sums.tailHits[t];
+            tail.probability = sums.tailWeights[t] / spins;
+            tail.standardError = standardError(sums.tailSquaredWeights[t], tail.probability, spins);
+            if (tail.samples > 0) {
+                tail.upperBound = tail.probability + SimulationReport.Z_95 * tail.standardError;
+            } else {
+                // Weights are at most 1 / share, so the tail is reached with at least the share of its probability
+                // per spin; seeing no hit at that rate has less than 5% chance above this bound
+                tail.upperBound = Math.min(1, -Math.log(0.05) / (spins * defensiveShare));
+            }
+            if (tail.probability > 0) {
+                tail.odds = 1 / tail.probability;
+            }
+            tail.equivalentSpins = equivalentSpins(tail.probability * (1 - tail.probability), tail.standardError,
+                    spins);
+            report.tails.add(tail);
+        }
+        return report;
+    }
+
+    /**
+     * Returns the standard error of a mean from the sum of squares of the averaged values.
+     */
+    private static double standardError(double sumOfSquares, double mean, long spins) {
+        return Math.sqrt(Math.max(0, sumOfSquares / spins - mean * mean) / spins);
+    }
+
+    /**
+     * Returns the number of plain spins with the given variance per spin needed to reach a standard error, or the
+     * actual spins when the error is zero.
+     */
+    private static double equivalentSpins(double plainVariance, double standardError, long spins) {
+        return standardError > 0 ? plainVariance / (standardError * standardError) : spins;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Failed to convert report to JSON: " + e.getMessage(), e);
+            return super.toString();
+        }
+    }
+}
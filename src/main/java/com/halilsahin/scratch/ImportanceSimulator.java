@@ -0,0 +1,331 @@
+package com.halilsahin.scratch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Monte Carlo simulator for rare outcomes that draws grids from tilted symbol distributions and reweights every spin
+ * by its likelihood ratio.
+ * <p>
+ * A tilt gives symbols a factor that multiplies their weight in every cell distribution and in the bonus distribution,
+ * so factors above 1 make those symbols more frequent. Spins are drawn from a mixture: a defensive share from the
+ * game's own distributions {@code p}, the rest split evenly between tilted distributions {@code q_k}. A spin is
+ * weighted by {@code w = p / (share_0 * p + sum of share_k * q_k)}, computed from the probability of every drawn
+ * symbol under each component. The standard symbol under the bonus symbol does not affect the reward and is left out.
+ * The averages of {@code w * reward}, and of {@code w} over the spins reaching a reward, are unbiased estimates of the
+ * game's return-to-player and tail probabilities whatever the tilts; tilts towards the rare outcomes make them common
+ * and their estimates precise with few spins. The defensive share bounds every weight by {@code 1 / share_0}, so
+ * outcomes the tilts neglect are still sampled at least as often as by plain simulation. {@link #jackpotTilts} gives
+ * one component per standard symbol, which on the shipped game estimates the odds of a 1000x win to about 1% with
+ * 200000 spins, where plain simulation would need around 10^10. With a single untilted component the spins are
+ * exactly those of {@link Simulator} with the same seed.
+ * <p>
+ * Spin {@code i} is drawn from the spin seed {@link SplitMix64#valueAt(long, long) SplitMix64.valueAt(s, i)}. The
+ * spins are summed in fixed blocks that workers take in contiguous ranges, and the block sums are added in order, so
+ * the floating-point result depends only on the seed, the spins and the tilts, not on the thread count.
+ *
+ * @author Halil Şahin
+ */
+public class ImportanceSimulator {
+
+    private static final int BLOCK_SIZE = 4096;
+    // Tilted weights are rescaled so that the largest weight of a distribution has this value
+    private static final int TILT_RESOLUTION = 1 << 20;
+
+    private final CompiledGame game;
+    private final List<Map<String, Double>> tilts;
+    private final double defensiveShare;
+    // Upper bounds of the components' shares, the untilted component first
+    private final double[] cumulativeShares;
+    private final double[] shares;
+    // Samplers of every component, and the natural logarithm of q / p per component, cell and symbol ordinal
+    private final AliasSampler[][] cellSamplers;
+    private final AliasSampler[] bonusSamplers;
+    private final double[][][] cellLogRatios;
+    private final double[][] bonusLogRatios;
+
+    /**
+     * Creates a simulator drawing from a mixture of tilted distributions.
+     *
+     * @param game           the game to simulate
+     * @param tilts          the tilts of every component: the factor of every symbol to tilt, by name, symbols not
+     *                       listed keeping their weights
+     * @param defensiveShare the share of spins drawn from the game's own distributions, the rest being split evenly
+     *                       between the tilted components; without tilts every spin is drawn from the game's own
+     *                       distributions
+     * @throws IllegalArgumentException if a symbol is unknown, a factor is not positive, the share is not in [0, 1),
+     *                                  or the game has no standard symbols
+     */
+    public ImportanceSimulator(CompiledGame game, List<Map<String, Double>> tilts, double defensiveShare) {
+        if (!tilts.isEmpty() && !(defensiveShare >= 0 && defensiveShare < 1)) {
+            throw new IllegalArgumentException("Defensive share must be at least 0 and below 1: " + defensiveShare);
+        }
+        for (AliasSampler sampler : game.cellSamplers) {
+            if (sampler == null) {
+                throw new IllegalArgumentException("The game defines no standard symbols");
+            }
+        }
+        this.game = game;
+        this.tilts = new ArrayList<>();
+        this.defensiveShare = tilts.isEmpty() ? 1 : defensiveShare;
+        int components = tilts.size() + 1;
+        this.shares = new double[components];
+        this.cumulativeShares = new double[components];
+        this.cellSamplers = new AliasSampler[components][game.cells];
+        this.bonusSamplers = new AliasSampler[components];
+        this.cellLogRatios = new double[components][game.cells][game.getSymbolCount()];
+        this.bonusLogRatios = new double[components][game.getSymbolCount()];
+
+        shares[0] = tilts.isEmpty() ? 1 : defensiveShare;
+        for (int component = 0; component < components; component++) {
+            double[] factors = new double[game.getSymbolCount()];
+            Arrays.fill(factors, 1);
+            if (component > 0) {
+                Map<String, Double> tilt = tilts.get(component - 1);
+                for (Map.Entry<String, Double> entry : tilt.entrySet()) {
+                    double factor = entry.getValue();
+                    if (!(factor > 0) || Double.isInfinite(factor)) {
+                        throw new IllegalArgumentException("Tilt of " + entry.getKey() + " must be positive: " + factor);
+                    }
+                    factors[game.ordinalOf(entry.getKey())] = factor;
+                }
+                this.tilts.add(new LinkedHashMap<>(tilt));
+                shares[component] = (1 - defensiveShare) / tilts.size();
+            }
+            cumulativeShares[component] = (component > 0 ? cumulativeShares[component - 1] : 0) + shares[component];
+            for (int cell = 0; cell < game.cells; cell++) {
+                cellSamplers[component][cell] = tilt(game.cellSamplers[cell], factors, cellLogRatios[component][cell]);
+            }
+            bonusSamplers[component] = game.bonusSampler == null ? null
+                    : tilt(game.bonusSampler, factors, bonusLogRatios[component]);
+        }
+        cumulativeShares[components - 1] = 1;
+    }
+
+    /**
+     * Returns one tilt per standard symbol for a mixture aimed at jackpots, which usually need one symbol to fill
+     * much of the grid: each tilts its symbol by the given factor and every bonus symbol multiplying the reward by its
+     * reward multiplier.
+     *
+     * @param game   the game
+     * @param factor the tilt of the favoured standard symbol
+     * @return the tilts, in ordinal order of their standard symbols
+     */
+    public static List<Map<String, Double>> jackpotTilts(CompiledGame game, double factor) {
+        List<Map<String, Double>> tilts = new ArrayList<>();
+        for (int symbol : game.standardSymbols) {
+            Map<String, Double> tilt = new LinkedHashMap<>();
+            tilt.put(game.symbolName(symbol), factor);
+            for (int bonus : game.bonusSymbols) {
+                if (game.impact(bonus) == CompiledGame.Impact.MULTIPLY_REWARD && game.rewardMultipliers[bonus] > 0) {
+                    tilt.put(game.symbolName(bonus), game.rewardMultipliers[bonus]);
+                }
+            }
+            tilts.add(tilt);
+        }
+        return tilts;
+    }
+
+    /**
+     * Runs the simulation of spins 0 to {@code spins - 1} and summarizes it.
+     *
+     * @param spins         the total number of spins
+     * @param betAmount     the betting amount of every spin
+     * @param seed          the root seed
+     * @param threads       the number of workers
+     * @param tailMultiples the multiples of the bet to estimate the probability of reaching
+     * @return the report of the simulation
+     */
+    public ImportanceReport run(long spins, int betAmount, long seed, int threads, double... tailMultiples) {
+        if (spins < 0 || threads <= 0) {
+            throw new IllegalArgumentException("Spins must not be negative and threads must be positive");
+        }
+        long[] tailRewards = new long[tailMultiples.length];
+        for (int t = 0; t < tailMultiples.length; t++) {
+            if (!(tailMultiples[t] > 0)) {
+                throw new IllegalArgumentException("Tail multiples must be positive: " + tailMultiples[t]);
+            }
+            tailRewards[t] = (long) Math.ceil(tailMultiples[t] * betAmount);
+        }
+
+        int blocks = (int) Math.min(Integer.MAX_VALUE, (spins + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        if ((long) blocks * BLOCK_SIZE < spins) {
+            throw new IllegalArgumentException("Too many spins: " + spins);
+        }
+        Sums[] sums = new Sums[blocks];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(threads);
+            int first = 0;
+            for (int worker = 0; worker < threads; worker++) {
+                int last = first + blocks / threads + (worker < blocks % threads ? 1 : 0);
+                int from = first;
+                tasks.add(pool.submit(() -> simulateBlocks(from, last, spins, betAmount, seed, tailRewards, sums)));
+                first = last;
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Sums total = new Sums(tailRewards.length);
+        for (Sums block : sums) {
+            total.add(block);
+        }
+        return ImportanceReport.of(total, spins, betAmount, tilts, defensiveShare, tailMultiples);
+    }
+
+    private void simulateBlocks(int from, int to, long spins, int betAmount, long seed, long[] tailRewards,
+                                Sums[] sums) {
+        RewardCalculator calculator = new RewardCalculator(game);
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        SplitMix64 random = new SplitMix64(0);
+        byte[] cells = new byte[game.cells];
+        int components = shares.length;
+        double[] logRatios = new double[components];
+        for (int block = from; block < to; block++) {
+            Sums blockSums = new Sums(tailRewards.length);
+            long end = Math.min(spins, (long) (block + 1) * BLOCK_SIZE);
+            for (long spin = (long) block * BLOCK_SIZE; spin < end; spin++) {
+                random.reset(SplitMix64.valueAt(seed, spin));
+                // A lone component draws no value for the choice, so untilted spins are those of Simulator
+                int component = 0;
+                if (components > 1) {
+                    double u = (random.getAsLong() >>> 11) * 0x1.0p-53;
+                    while (u >= cumulativeShares[component]) {
+                        component++;
+                    }
+                }
+
+                // The same draws as MatrixGenerator, from the chosen component
+                AliasSampler[] samplers = cellSamplers[component];
+                for (int cell = 0; cell < cells.length; cell++) {
+                    cells[cell] = (byte) samplers[cell].sample(random.getAsLong());
+                }
+                int bonusCell = -1;
+                AliasSampler bonusSampler = bonusSamplers[component];
+                if (bonusSampler != null) {
+                    bonusCell = (int) (((random.getAsLong() >>> 32) * cells.length) >>> 32);
+                    cells[bonusCell] = (byte) bonusSampler.sample(random.getAsLong());
+                }
+
+                // The spin's weight is p / sum of share * q over all components. The standard symbol under the bonus
+                // symbol is overwritten before it counts, so the cell contributes the bonus draw instead.
+                for (int k = 0; k < components; k++) {
+                    double[][] cellRatios = cellLogRatios[k];
+                    double logRatio = 0;
+                    for (int cell = 0; cell < cells.length; cell++) {
+                        logRatio += cell == bonusCell ? bonusLogRatios[k][cells[cell]] : cellRatios[cell][cells[cell]];
+                    }
+                    logRatios[k] = logRatio;
+                }
+                double mixture = 0;
+                for (int k = 0; k < components; k++) {
+                    mixture += shares[k] * Math.exp(logRatios[k]);
+                }
+                int reward = calculator.evaluate(cells, betAmount, evaluation);
+                blockSums.record(1 / mixture, reward, tailRewards);
+            }
+            sums[block] = blockSums;
+        }
+    }
+
+    /**
+     * Returns the tilted sampler of a distribution and stores the log likelihood ratio q / p of each of its outcomes.
+     * A distribution whose symbols are all untilted keeps its sampler, so that it draws exactly as the game does.
+     */
+    private static AliasSampler tilt(AliasSampler sampler, double[] factors, double[] logRatios) {
+        int n = sampler.size();
+        double max = 0;
+        boolean tilted = false;
+        for (int i = 0; i < n; i++) {
+            double factor = factors[sampler.outcome(i)];
+            tilted |= factor != 1;
+            max = Math.max(max, sampler.weight(i) * factor);
+        }
+        if (!tilted) {
+            return sampler;
+        }
+        int[] outcomes = new int[n];
+        int[] weights = new int[n];
+        for (int i = 0; i < n; i++) {
+            outcomes[i] = sampler.outcome(i);
+            weights[i] = (int) Math.max(1, Math.round(sampler.weight(i) * factors[outcomes[i]] / max * TILT_RESOLUTION));
+        }
+        AliasSampler tiltedSampler = new AliasSampler(outcomes, weights);
+        // The ratios are those of the weights actually drawn from, so rounding does not bias the estimates
+        for (int i = 0; i < n; i++) {
+            logRatios[outcomes[i]] = Math.log(tiltedSampler.probability(i)) - Math.log(sampler.probability(i));
+        }
+        return tiltedSampler;
+    }
+
+    /**
+     * Weighted sums over spins.
+     */
+    static final class Sums {
+        long spins;
+        double weights;
+        double squaredWeights;
+        double maxWeight;
+        // Sums of w * reward, of (w * reward)^2, and of w * reward^2 for the variance of plain sampling
+        double weightedRewards;
+        double squaredWeightedRewards;
+        double weightedSquaredRewards;
+        final long[] tailHits;
+        final double[] tailWeights;
+        final double[] tailSquaredWeights;
+
+        Sums(int tails) {
+            this.tailHits = new long[tails];
+            this.tailWeights = new double[tails];
+            this.tailSquaredWeights = new double[tails];
+        }
+
+        void record(double weight, int reward, long[] tailRewards) {
+            spins++;
+            weights += weight;
+            squaredWeights += weight * weight;
+            maxWeight = Math.max(maxWeight, weight);
+            double weighted = weight * reward;
+            weightedRewards += weighted;
+            squaredWeightedRewards += weighted * weighted;
+            weightedSquaredRewards += weighted * reward;
+            for (int t = 0; t < tailRewards.length; t++) {
+                if (reward >= tailRewards[t]) {
+                    tailHits[t]++;
+                    tailWeights[t] += weight;
+                    tailSquaredWeights[t] += weight * weight;
+                }
+            }
+        }
+
+        void add(Sums other) {
+            spins += other.spins;
+            weights += other.weights;
+            squaredWeights += other.squaredWeights;
+            maxWeight = Math.max(maxWeight, other.maxWeight);
+            weightedRewards += other.weightedRewards;
+            squaredWeightedRewards += other.squaredWeightedRewards;
+            weightedSquaredRewards += other.weightedSquaredRewards;
+            for (int t = 0; t < tailHits.length; t++) {
+                tailHits[t] += other.tailHits[t];
+                tailWeights[t] += other.tailWeights[t];
+                tailSquaredWeights[t] += other.tailSquaredWeights[t];
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.halilsahin.scratch;
+
+import java.util.Arrays;
+
+/**
+ * Evaluation state of one grid that is kept up to date as individual cells change, for respins, cascades and other
+ * features that replace a few cells and evaluate the grid again.
+ * <p>
+ * The state holds a copy of the cells, the count of every symbol, the bonus cells and, for every covered area, how
+ * many of its cells differ from its first cell, together with how many filled areas every combination has per
+ * symbol. Replacing a cell updates these in time proportional to the number of areas through the cell; replacing the
+ * first cell of an area recounts that area. {@link #evaluate(int)} then settles the reward from the kept state
+ * without looking at the grid again, in time proportional to the number of symbols and linear combinations. Rewards,
+ * applied combinations and bonus symbols are identical to evaluating the whole grid with {@link RewardCalculator}.
+ * The state pays off on large grids; a 3x3 grid is evaluated from scratch about as fast as a few cells are updated.
+ * <p>
+ * A typical cascade loads the grid once, then repeatedly vacates the cells to drop, refills them with
+ * {@link MatrixGenerator#refill(Grid, int[], int)} and passes the same cells to
+ * {@link #update(Grid, int[], int)}. Instances are not thread-safe.
+ *
+ * @author Halil Şahin
+ */
+public final class IncrementalEvaluator {
+
+    private final CompiledGame game;
+    private final RewardCalculator calculator;
+    private final RewardCalculator.Evaluation evaluation;
+    private final int symbols;
+    private final byte[] cells;
+    private final int[] counts;
+    // Per area: the cells other than the first holding another symbol than the first
+    private final int[] mismatches;
+    // Per combination id and symbol, at combination * symbols + symbol: the areas filled by the symbol
+    private final int[] filledAreas;
+    // Per symbol: the areas it fills, of all combinations
+    private final int[] filledBySymbol;
+    // Bonus cells in row-major order, the order in which bonus symbols apply
+    private final int[] bonusCells;
+    private int bonusCount;
+
+    /**
+     * Creates the state of an empty grid, in which every cell holds the symbol with ordinal 0.
+     *
+     * @param game the compiled game
+     */
+    public IncrementalEvaluator(CompiledGame game) {
+        this.game = game;
+        this.calculator = new RewardCalculator(game);
+        this.evaluation = new RewardCalculator.Evaluation(game);
+        this.symbols = game.getSymbolCount();
+        this.cells = new byte[game.cells];
+        this.counts = new int[symbols];
+        this.mismatches = new int[game.areaOffsets.length - 1];
+        this.filledAreas = new int[game.getCombinationCount() * symbols];
+        this.filledBySymbol = new int[symbols];
+        this.bonusCells = new int[game.cells];
+        load(Grid.of(game));
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Replaces the whole state with that of the given grid, in time proportional to the size of the grid and its
+     * areas.
+     *
+     * @param grid the grid
+     */
+    public void load(Grid grid) {
+        checkGrid(grid);
+        System.arraycopy(grid.cells, 0, cells, 0, cells.length);
+        Arrays.fill(counts, 0);
+        Arrays.fill(filledAreas, 0);
+        Arrays.fill(filledBySymbol, 0);
+        bonusCount = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int symbol = cells[cell];
+            counts[symbol]++;
+            if (!game.standard[symbol]) {
+                bonusCells[bonusCount++] = cell;
+            }
+        }
+        for (int area = 0; area < mismatches.length; area++) {
+            mismatches[area] = countMismatches(area);
+            countFilled(area, cells[game.areaCells[game.areaOffsets[area]]], 1);
+        }
+    }
+
+    /**
+     * Takes over the given cells of a grid whose other cells are unchanged since the last {@link #load(Grid)} or
+     * update.
+     *
+     * @param grid    the updated grid
+     * @param changed the indices of the cells that may have changed
+     * @param count   the number of cells, taken from the start of {@code changed}
+     */
+    public void update(Grid grid, int[] changed, int count) {
+        checkGrid(grid);
+        if (count < 0 || count > changed.length) {
+            throw new IllegalArgumentException("Invalid cell count: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            int cell = changed[i];
+            if (cell < 0 || cell >= cells.length) {
+                throw new IllegalArgumentException("Cell out of range: " + cell);
+            }
+            replace(cell, grid.cells[cell]);
+        }
+    }
+
+    /**
+     * Replaces the symbol in one cell.
+     *
+     * @param cell   the index of the cell in row-major order
+     * @param symbol the ordinal of the new symbol
+     */
+    public void set(int cell, int symbol) {
+        if (cell < 0 || cell >= cells.length) {
+            throw new IllegalArgumentException("Cell out of range: " + cell);
+        }
+        if (symbol < 0 || symbol >= symbols) {
+            throw new IllegalArgumentException("Unknown symbol ordinal: " + symbol);
+        }
+        replace(cell, symbol);
+    }
+
+    /**
+     * Returns the ordinal of the symbol in the given cell.
+     */
+    public int get(int cell) {
+        return cells[cell];
+    }
+
+    /**
+     * Copies the cells of this state into a grid.
+     *
+     * @param grid the grid to overwrite
+     */
+    public void copyTo(Grid grid) {
+        checkGrid(grid);
+        System.arraycopy(cells, 0, grid.cells, 0, cells.length);
+    }
+
+    /**
+     * Evaluates the current grid.
+     *
+     * @param betAmount the betting amount
+     * @return the total reward
+     */
+    public int evaluate(int betAmount) {
+        RewardCalculator.Evaluation result = evaluation;
+        result.reset();
+        for (int symbol = 0; symbol < symbols; symbol++) {
+            if (counts[symbol] > 0) {
+                result.counts[symbol] = counts[symbol];
+                result.present[result.presentCount++] = symbol;
+            }
+        }
+        System.arraycopy(bonusCells, 0, result.bonusCells, 0, bonusCount);
+        result.bonusCount = bonusCount;
+
+        for (int i = 0; i < result.presentCount; i++) {
+            int symbol = result.present[i];
+            if (!game.standard[symbol]) {
+                continue;
+            }
+            if (filledBySymbol[symbol] > 0) {
+                for (int combination : game.linearCombinations) {
+                    if (filledAreas[combination * symbols + symbol] > 0) {
+                        calculator.offerLine(result, symbol, combination);
+                    }
+                }
+            }
+            // An empty area is covered by every standard symbol present
+            for (int combination : game.emptyLineCombinations) {
+                calculator.offerLine(result, symbol, combination);
+            }
+        }
+        return calculator.settle(cells, betAmount, result);
+    }
+
+    /**
+     * Returns the evaluation of the last {@link #evaluate(int)}, overwritten by the next one.
+     */
+    public RewardCalculator.Evaluation getEvaluation() {
+        return evaluation;
+    }
+
+    private void replace(int cell, int symbol) {
+        int old = cells[cell];
+        if (old == symbol) {
+            return;
+        }
+        cells[cell] = (byte) symbol;
+        counts[old]--;
+        counts[symbol]++;
+        if (!game.standard[old]) {
+            removeBonusCell(cell);
+        }
+        if (!game.standard[symbol]) {
+            addBonusCell(cell);
+        }
+
+        final int[] cellAreas = game.cellAreas;
+        final int[] areaCells = game.areaCells;
+        final int[] areaOffsets = game.areaOffsets;
+        for (int i = game.cellAreaOffsets[cell], end = game.cellAreaOffsets[cell + 1]; i < end; i++) {
+            int area = cellAreas[i];
+            int first = areaCells[areaOffsets[area]];
+            if (first == cell) {
+                // The symbol the area needs has changed
+                countFilled(area, old, -1);
+                mismatches[area] = countMismatches(area);
+                countFilled(area, symbol, 1);
+            } else {
+                int firstSymbol = cells[first];
+                int before = mismatches[area];
+                int after = before + (symbol != firstSymbol ? 1 : 0) - (old != firstSymbol ? 1 : 0);
+                mismatches[area] = after;
+                // The area is filled or emptied only when it gains its last or loses its only mismatch
+                if ((before == 0) != (after == 0) && game.standard[firstSymbol]) {
+                    addFilled(area, firstSymbol, after == 0 ? 1 : -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the given amount to the filled areas of the area's combination and symbol, if the area is filled by that
+     * standard symbol.
+     */
+    private void countFilled(int area, int symbol, int delta) {
+        if (mismatches[area] == 0 && game.standard[symbol]) {
+            addFilled(area, symbol, delta);
+        }
+    }
+
+    private void addFilled(int area, int symbol, int delta) {
+        filledAreas[game.areaCombinations[area] * symbols + symbol] += delta;
+        filledBySymbol[symbol] += delta;
+    }
+
+    private int countMismatches(int area) {
+        int start = game.areaOffsets[area];
+        int symbol = cells[game.areaCells[start]];
+        int count = 0;
+        for (int i = start + 1; i < game.areaOffsets[area + 1]; i++) {
+            if (cells[game.areaCells[i]] != symbol) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void addBonusCell(int cell) {
+        int i = bonusCount++;
+        while (i > 0 && bonusCells[i - 1] > cell) {
+            bonusCells[i] = bonusCells[i - 1];
+            i--;
+        }
+        bonusCells[i] = cell;
+    }
+
+    private void removeBonusCell(int cell) {
+        int i = 0;
+        while (bonusCells[i] != cell) {
+            i++;
+        }
+        System.arraycopy(bonusCells, i + 1, bonusCells, i, --bonusCount - i);
+    }
+
+    private void checkGrid(Grid grid) {
+        if (grid.size() != game.cells || grid.getColumns() != game.columns) {
+            throw new IllegalArgumentException("Grid size does not match the game");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * The Jackson mapper shared by every class reading or writing JSON, configured once at class initialization.
+ * ObjectMapper, ObjectReader and ObjectWriter are thread-safe once configured, so the readers and writers derived
+ * from it are shared as well.
+ *
+ * @author Halil Şahin
+ */
+final class Json {
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Pretty-printing writer used by the {@code toString} of results and reports.
+     */
+    static final ObjectWriter INDENTED = MAPPER.writer(SerializationFeature.INDENT_OUTPUT);
+
+    private Json() {
+    }
+}
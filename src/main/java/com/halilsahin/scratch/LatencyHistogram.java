@@ -0,0 +1,168 @@
+package com.halilsahin.scratch;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations in nanoseconds with log-linear buckets, in the manner of HdrHistogram.
+ * <p>
+ * Values below 64 ns are counted exactly; above that, every power of two is split into 32 buckets, so a reported
+ * value is within about 3% of the recorded one. Durations beyond {@link #MAX_VALUE} are counted as that value.
+ * Recording is wait-free and does not allocate: counts are kept in a small number of stripes selected by thread,
+ * so concurrent threads rarely write to the same cache line, and a snapshot sums the stripes.
+ *
+ * @author Halil Şahin
+ */
+public final class LatencyHistogram {
+
+    /**
+     * The largest duration told apart from longer ones, about 18 minutes.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray[] stripes;
+    private final int stripeMask;
+
+    public LatencyHistogram() {
+        int stripeCount = Integer.highestOneBit(Math.min(16, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds, negative durations are counted as 0
+     */
+    public void record(long nanos) {
+        long id = Thread.currentThread().getId();
+        int stripe = (int) (id ^ id >>> 16) & stripeMask;
+        stripes[stripe].incrementAndGet(index(Math.max(0, Math.min(nanos, MAX_VALUE))));
+    }
+
+    /**
+     * Sums the stripes into a point-in-time view. Recordings made concurrently may or may not be included.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return new Snapshot(counts);
+    }
+
+    /**
+     * Clears all counts. Recordings made concurrently may survive the reset.
+     */
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value counted in the given bucket.
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable view of the counts of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long bucket : counts) {
+                total += bucket;
+            }
+            this.count = total;
+        }
+
+        /**
+         * Returns the number of recorded durations.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the duration below or at which the given fraction of recordings fall.
+         *
+         * @param quantile the fraction, between 0 and 1
+         * @return the duration in nanoseconds, or 0 if nothing was recorded
+         */
+        public long valueAt(double quantile) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1");
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return highestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the longest recorded duration, up to bucket precision.
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return highestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the mean of the recorded durations, up to bucket precision.
+         */
+        public double getMean() {
+            if (count == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    // Middle of the bucket
+                    sum += counts[i] * ((highestValue(i) + (i == 0 ? 0 : highestValue(i - 1) + 1)) / 2.0);
+                }
+            }
+            return sum / count;
+        }
+    }
+}
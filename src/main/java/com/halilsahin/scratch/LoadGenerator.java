@@ -0,0 +1,187 @@
+package com.halilsahin.scratch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load generator for {@link SpinServer}. Opens a number of connections, sends pipelined batches of spin requests
+ * on each and reports throughput and the latency distribution of individual requests. Error responses, such as those
+ * to an unknown game id, are counted separately and left out of throughput and latencies.
+ *
+ * @author Halil Şahin
+ */
+public class LoadGenerator {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadGenerator.class.getName());
+    private static final String ERROR_PREFIX = "{\"error\":";
+
+    private final int port;
+    private final int connections;
+    private final int requests;
+    private final int pipeline;
+    private final int betAmount;
+    private final String gameId;
+
+    public LoadGenerator(int port, int connections, int requests, int pipeline, int betAmount) {
+        this(port, connections, requests, pipeline, betAmount, null);
+    }
+
+    /**
+     * @param gameId the game variant to request from a registry-backed server, or null
+     */
+    public LoadGenerator(int port, int connections, int requests, int pipeline, int betAmount, String gameId) {
+        this.port = port;
+        this.connections = connections;
+        this.requests = requests;
+        this.pipeline = pipeline;
+        this.betAmount = betAmount;
+        this.gameId = gameId;
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option portOption = new Option("p", "port", true, "server port");
+        portOption.setRequired(true);
+        options.addOption(portOption);
+        options.addOption(new Option("c", "connections", true, "concurrent connections, default 4"));
+        options.addOption(new Option("n", "requests", true, "requests per connection, default 100000"));
+        options.addOption(new Option("l", "pipeline", true, "requests sent per batch, default 16"));
+        options.addOption(new Option("b", "betting-amount", true, "betting amount, default 100"));
+        options.addOption(new Option("g", "game", true, "game id, when the server serves a directory of variants"));
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: " + e.getMessage(), e);
+            new HelpFormatter().printHelp("load-generator", options);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            LoadGenerator generator = new LoadGenerator(
+                    Integer.parseInt(cmd.getOptionValue("port")),
+                    Integer.parseInt(cmd.getOptionValue("connections", "4")),
+                    Integer.parseInt(cmd.getOptionValue("requests", "100000")),
+                    Integer.parseInt(cmd.getOptionValue("pipeline", "16")),
+                    Integer.parseInt(cmd.getOptionValue("betting-amount", "100")),
+                    cmd.getOptionValue("game"));
+            LOGGER.info(generator.run());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.SEVERE, "Invalid number: " + e.getMessage(), e);
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Load generation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs the load and summarizes it.
+     *
+     * @return a human readable summary of throughput, errors and latency percentiles of successful spins
+     * @throws Exception if a connection fails
+     */
+    public String run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            long start = System.nanoTime();
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                futures.add(executor.submit(this::runConnection));
+            }
+            long[] latencies = new long[connections * requests];
+            int offset = 0;
+            for (Future<long[]> future : futures) {
+                long[] connectionLatencies = future.get();
+                System.arraycopy(connectionLatencies, 0, latencies, offset, connectionLatencies.length);
+                offset += connectionLatencies.length;
+            }
+            long elapsed = System.nanoTime() - start;
+            latencies = Arrays.copyOf(latencies, offset);
+            long errors = (long) connections * requests - offset;
+
+            Arrays.sort(latencies);
+            return String.format("%d spins and %d errors in %.2f s, %.0f spins/s, "
+                            + "latency p50 %s, p90 %s, p99 %s, p99.9 %s, max %s",
+                    latencies.length, errors, elapsed / 1e9, latencies.length / (elapsed / 1e9),
+                    micros(percentile(latencies, 0.5)), micros(percentile(latencies, 0.9)),
+                    micros(percentile(latencies, 0.99)), micros(percentile(latencies, 0.999)),
+                    micros(latencies.length > 0 ? latencies[latencies.length - 1] : 0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends the requests of one connection.
+     *
+     * @return the latencies of the successful spins, one per request answered without an error
+     */
+    private long[] runConnection() throws IOException {
+        long[] latencies = new long[requests];
+        byte[] request = ("SPIN " + betAmount + (gameId != null ? " " + gameId : "") + "\n").getBytes(StandardCharsets.US_ASCII);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            byte[] batch = new byte[request.length * pipeline];
+            for (int i = 0; i < pipeline; i++) {
+                System.arraycopy(request, 0, batch, i * request.length, request.length);
+            }
+
+            int done = 0;
+            int spins = 0;
+            while (done < requests) {
+                int n = Math.min(pipeline, requests - done);
+                long sent = System.nanoTime();
+                out.write(batch, 0, n * request.length);
+                out.flush();
+                for (int i = 0; i < n; i++) {
+                    String response = in.readLine();
+                    if (response == null) {
+                        throw new IOException("Server closed the connection");
+                    }
+                    if (!response.startsWith(ERROR_PREFIX)) {
+                        latencies[spins++] = System.nanoTime() - sent;
+                    }
+                }
+                done += n;
+            }
+            out.write("QUIT\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            return Arrays.copyOf(latencies, spins);
+        }
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%.1f us", nanos / 1e3);
+    }
+}
@@ -2,7 +2,16 @@ package com.halilsahin.scratch;
 
 import org.apache.commons.cli.*;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -10,18 +19,34 @@ public class Main {
 
     // Create a Logger
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
+    private static final int MAX_LOADED_GAMES = 256;
 
     public static void main(String[] args) {
         Options options = new Options();
 
-        Option configFileOption = new Option("c", "config", true, "config file path");
+        Option configFileOption = new Option("c", "config", true, "config file path, or a directory of game variants with --serve");
         configFileOption.setRequired(true);
         options.addOption(configFileOption);
 
+        // Required unless serving, where every request carries its own betting amount
         Option betAmountOption = new Option("b", "betting-amount", true, "betting amount");
-        betAmountOption.setRequired(true);
         options.addOption(betAmountOption);
 
+        options.addOption(new Option("s", "simulate", true, "run a simulation of the given number of spins"));
+        options.addOption(new Option(null, "serve", true, "serve spins on the given local port, or on stdin/stdout with \"stdin\""));
+        options.addOption(new Option("e", "exact", false, "calculate the exact reward distribution"));
+        options.addOption(new Option(null, "seed", true, "simulation seed, or the seed of a single spin"));
+        options.addOption(new Option(null, "audit-log", true, "append every spin to the given binary audit log"));
+        options.addOption(new Option(null, "threads", true, "simulation threads, defaults to the number of processors"));
+        options.addOption(new Option(null, "shard-start", true, "number of the first spin to simulate, for a shard of a larger run"));
+        options.addOption(new Option(null, "stats-out", true, "write the simulation statistics to the given shard file"));
+        options.addOption(new Option(null, "importance", true, "simulate with jackpot importance sampling, tilting each standard symbol by the given factor"));
+        options.addOption(new Option(null, "defensive-share", true, "share of importance-sampled spins drawn without tilt, default 0.2"));
+        options.addOption(new Option(null, "tail", true, "comma-separated bet multiples whose odds importance sampling estimates, default 100,1000"));
+        options.addOption(new Option(null, "payout-table", true, "cache the payouts of served grids in at most the given number of MiB"));
+        options.addOption(new Option(null, "specialize", false, "evaluate served and single spins with an evaluator generated for the configuration"));
+        options.addOption(new Option(null, "metrics", false, "record spin metrics, exposed through JMX and logged on shutdown"));
+
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine cmd;
@@ -35,26 +60,180 @@ public class Main {
             return;
         }
 
+        if (!cmd.hasOption("betting-amount") && !cmd.hasOption("serve")) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: Missing required option: b");
+            formatter.printHelp("utility-name", options);
+            System.exit(1);
+            return;
+        }
+
         String configPath = cmd.getOptionValue("config");
-        int bettingAmount = Integer.parseInt(cmd.getOptionValue("betting-amount"));
 
         try {
-            Config config = Config.load(configPath);
+            if (cmd.hasOption("serve") && Files.isDirectory(Paths.get(configPath))) {
+                if (cmd.hasOption("audit-log")) {
+                    // Records are sized for one grid shape, while the variants of a directory may differ
+                    LOGGER.severe("An audit log requires a single configuration file");
+                    return;
+                }
+                if (cmd.hasOption("payout-table")) {
+                    // The size is the memory of one table, while every loaded variant would fill its own
+                    LOGGER.severe("A payout table requires a single configuration file");
+                    return;
+                }
+                if (cmd.hasOption("metrics")) {
+                    // Metrics are registered under the name of one file and never follow a reloaded game
+                    LOGGER.severe("Metrics require a single configuration file");
+                    return;
+                }
+                boolean specialize = cmd.hasOption("specialize");
+                try (ConfigRegistry registry = new ConfigRegistry(Paths.get(configPath), MAX_LOADED_GAMES,
+                        game -> newEngine(game, null, specialize, null))) {
+                    registry.start();
+                    serve(new SpinServer(registry), cmd.getOptionValue("serve"));
+                }
+                return;
+            }
+
+            CompiledGame game = CompiledGame.compile(Config.load(configPath));
+
+            if (cmd.hasOption("serve")) {
+                SpinEngine engine = newEngine(game, cmd.getOptionValue("payout-table"), cmd.hasOption("specialize"),
+                        cmd.hasOption("metrics") ? newMetrics(game, Paths.get(configPath)) : null);
+                if (cmd.hasOption("audit-log")) {
+                    try (AuditLog auditLog = AuditLog.open(Paths.get(cmd.getOptionValue("audit-log")), game)) {
+                        serve(new SpinServer(engine, auditLog), cmd.getOptionValue("serve"));
+                    }
+                } else {
+                    serve(new SpinServer(engine), cmd.getOptionValue("serve"));
+                }
+                return;
+            }
+
+            int bettingAmount = Integer.parseInt(cmd.getOptionValue("betting-amount"));
+
+            if (cmd.hasOption("exact")) {
+                LOGGER.info(new ExactCalculator(game).calculate(bettingAmount).toString());
+                return;
+            }
+
+            if (cmd.hasOption("simulate")) {
+                long spins = Long.parseLong(cmd.getOptionValue("simulate"));
+                long seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : System.nanoTime();
+                int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads"))
+                        : Runtime.getRuntime().availableProcessors();
 
-            MatrixGenerator generator = new MatrixGenerator(config);
-            String[][] matrix = generator.generateMatrix();
+                if (cmd.hasOption("importance")) {
+                    List<Map<String, Double>> tilts = ImportanceSimulator.jackpotTilts(game,
+                            Double.parseDouble(cmd.getOptionValue("importance")));
+                    double defensiveShare = Double.parseDouble(cmd.getOptionValue("defensive-share", "0.2"));
+                    double[] tails = Arrays.stream(cmd.getOptionValue("tail", "100,1000").split(","))
+                            .mapToDouble(Double::parseDouble).toArray();
+                    LOGGER.info(new ImportanceSimulator(game, tilts, defensiveShare)
+                            .run(spins, bettingAmount, seed, threads, tails).toString());
+                    return;
+                }
+                if (cmd.hasOption("shard-start") || cmd.hasOption("stats-out")) {
+                    long start = cmd.hasOption("shard-start") ? Long.parseLong(cmd.getOptionValue("shard-start")) : 0;
+                    SimulationShard shard = SimulationShard.run(game, start, start + spins, bettingAmount, seed, threads);
+                    if (cmd.hasOption("stats-out")) {
+                        shard.write(Paths.get(cmd.getOptionValue("stats-out")));
+                    }
+                    LOGGER.info(shard.report(game).toString());
+                    return;
+                }
+                SimulationReport report = new Simulator(game).run(spins, bettingAmount, seed, threads);
+                LOGGER.info(report.toString());
+                return;
+            }
 
-            RewardCalculator calculator = new RewardCalculator(config);
-            RewardCalculator.Result result = calculator.calculateReward(matrix, bettingAmount);
+            if (cmd.hasOption("seed") || cmd.hasOption("audit-log")) {
+                long seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed"))
+                        : ThreadLocalRandom.current().nextLong();
+                SpinEngine engine = newEngine(game, null, cmd.hasOption("specialize"), null);
+                engine.spinReward(bettingAmount, seed);
+                if (cmd.hasOption("audit-log")) {
+                    try (AuditLog auditLog = AuditLog.open(Paths.get(cmd.getOptionValue("audit-log")), game)) {
+                        auditLog.append(seed, bettingAmount, engine.lastGrid(), engine.lastEvaluation());
+                    }
+                }
+                LOGGER.info(engine.lastResult().toString());
+                return;
+            }
+
+            MatrixGenerator generator = new MatrixGenerator(game);
+            Grid grid = generator.generateGrid();
+
+            RewardCalculator calculator = new RewardCalculator(game);
+            RewardCalculator.Result result = calculator.calculateReward(grid, bettingAmount);
 
             LOGGER.info(result.toString());
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Failed to load configuration: " + e.getMessage(), e);
         } catch (NumberFormatException e) {
-            LOGGER.log(Level.SEVERE, "Invalid betting amount: " + e.getMessage(), e);
+            LOGGER.log(Level.SEVERE, "Invalid number: " + e.getMessage(), e);
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "An unexpected error occurred: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Creates the engine of a single game, evaluating through a payout table of the given size if the game is small
+     * enough to be tabulated, and otherwise with an evaluator generated for the game if asked for.
+     *
+     * @param game the compiled game
+     * @param payoutTableMiB the payout table size in MiB, or null for none
+     * @param specialize whether to generate an evaluator for the game
+     * @param metrics the metrics to record spins in, or null for none
+     */
+    private static SpinEngine newEngine(CompiledGame game, String payoutTableMiB, boolean specialize,
+                                        SpinMetrics metrics) {
+        PayoutTable payoutTable = null;
+        if (payoutTableMiB != null) {
+            if (PayoutTable.isSupported(game)) {
+                payoutTable = new PayoutTable(game, Long.parseLong(payoutTableMiB) << 20);
+            } else {
+                LOGGER.warning("The grids of this game are too large for a payout table, evaluating every spin");
+            }
+        }
+        if (payoutTable == null && specialize) {
+            if (SpecializedEvaluator.isSupported(game)) {
+                return new SpinEngine(SpecializedEvaluator.compile(game), metrics);
+            }
+            LOGGER.warning("This game has too many symbols for a generated evaluator, interpreting every spin");
+        }
+        return new SpinEngine(game, payoutTable, metrics);
+    }
+
+    /**
+     * Creates metrics for the given game, registers them with JMX under the name of the configuration file and logs
+     * them when the process shuts down.
+     */
+    private static SpinMetrics newMetrics(CompiledGame game, Path configPath) throws JMException {
+        SpinMetrics metrics = new SpinMetrics(game);
+        ObjectName name = metrics.register(configPath.getFileName().toString());
+        LOGGER.info("Spin metrics registered as " + name);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> LOGGER.info("Spin metrics:\n" + metrics.dump())));
+        return metrics;
+    }
+
+    /**
+     * Runs the spin server until the process is stopped, or until standard input ends.
+     *
+     * @param spinServer the server to run
+     * @param target a port number, or "stdin"
+     */
+    private static void serve(SpinServer spinServer, String target) throws IOException, InterruptedException {
+        try (SpinServer server = spinServer) {
+            if ("stdin".equals(target)) {
+                server.serve(System.in, System.out);
+            } else {
+                server.start(Integer.parseInt(target));
+                Thread.currentThread().join();
+            }
+        }
+    }
 }
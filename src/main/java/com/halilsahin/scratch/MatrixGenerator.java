@@ -1,21 +1,55 @@
 package com.halilsahin.scratch;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Random;
+import java.util.function.LongSupplier;
 
 /**
  * This class generates a matrix with standard and bonus symbols based on the provided configuration.
+ * <p>
+ * The generator itself holds no mutable state. Methods drawing from the generator's own random source are only as
+ * thread-safe as that source; {@link #generateGrid(Grid, LongSupplier)} takes the source per call and is safe to use
+ * from many threads at once.
  *
  * @author Halil Şahin
  */
 public class MatrixGenerator {
 
-    private final Config config;
-    private final Random rand;
+    private final CompiledGame game;
+    private final LongSupplier rand;
 
     public MatrixGenerator(Config config) {
-        this.config = config;
-        this.rand = new Random(); // Reuse the Random object
+        this(CompiledGame.compile(config));
+    }
+
+    public MatrixGenerator(CompiledGame game) {
+        this(game, new Random()::nextLong); // Reuse the Random object
+    }
+
+    /**
+     * Creates a generator drawing from the given source of random bits, e.g. {@code new SplittableRandom(seed)::nextLong}.
+     *
+     * @param game the compiled game
+     * @param random supplies uniformly distributed 64-bit values
+     */
+    public MatrixGenerator(CompiledGame game, LongSupplier random) {
+        for (AliasSampler sampler : game.cellSamplers) {
+            if (sampler == null) {
+                throw new IllegalArgumentException("The game defines no standard symbols");
+            }
+        }
+        this.game = game;
+        this.rand = random;
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the generator's own source of random bits.
+     */
+    public LongSupplier getRandom() {
+        return rand;
     }
 
     /**
@@ -24,110 +58,127 @@ public class MatrixGenerator {
      * @return a 2D array representing the generated matrix with standard and bonus symbols.
      */
     public String[][] generateMatrix() {
-        String[][] matrix = new String[config.getRows()][config.getColumns()];
-
-        placeStandardSymbols(matrix);
-        placeBonusSymbols(matrix);
-        fillNullCells(matrix);
+        return generateGrid().toMatrix(game);
+    }
 
-        return matrix;
+    /**
+     * Generates a grid of symbol ordinals based on the configuration provided.
+     *
+     * @return a new grid with standard and bonus symbols.
+     */
+    public Grid generateGrid() {
+        Grid grid = Grid.of(game);
+        generateGrid(grid);
+        return grid;
     }
 
     /**
-     * Places standard symbols in the matrix based on their probabilities.
+     * Generates symbols into an existing grid, overwriting its contents.
+     * This allows a single buffer to be reused across spins.
      *
-     * @param matrix the matrix to fill with standard symbols.
+     * @param grid the grid to fill, sized for the game.
      */
-    private void placeStandardSymbols(String[][] matrix) {
-        for (Config.StandardSymbolProbability prob : config.getProbabilities().getStandardSymbols()) {
-            int row = prob.getRow();
-            int column = prob.getColumn();
+    public void generateGrid(Grid grid) {
+        generateGrid(grid, rand);
+    }
 
-            List<String> symbols = createShuffledSymbolList(prob);
-            fillMatrixWithSymbols(matrix, row, column, symbols);
+    /**
+     * Generates symbols into an existing grid, drawing from the given source of random bits.
+     *
+     * @param grid the grid to fill, sized for the game.
+     * @param random supplies uniformly distributed 64-bit values.
+     */
+    public void generateGrid(Grid grid, LongSupplier random) {
+        if (grid.size() != game.cells || grid.getColumns() != game.columns) {
+            throw new IllegalArgumentException("Grid size does not match the game");
         }
+        placeStandardSymbols(grid.cells, 0, 1, random);
+        placeBonusSymbols(grid.cells, 0, 1, random);
     }
 
     /**
-     * Creates a shuffled list of symbols based on their probabilities.
+     * Draws new standard symbols for some cells of a grid from the generator's own random source, see
+     * {@link #refill(Grid, int[], int, LongSupplier)}.
      *
-     * @param prob the probability configuration for the symbols.
-     * @return a shuffled list of symbols.
+     * @param grid  the grid to update
+     * @param cells the indices of the cells to refill
+     * @param count the number of cells to refill, taken from the start of {@code cells}
      */
-    private List<String> createShuffledSymbolList(Config.StandardSymbolProbability prob) {
-        List<String> symbols = prob.getSymbols().entrySet().stream()
-                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
-                .collect(Collectors.toList());
-        Collections.shuffle(symbols, rand);
-        return symbols;
+    public void refill(Grid grid, int[] cells, int count) {
+        refill(grid, cells, count, rand);
     }
 
     /**
-     * Fills the matrix with symbols from the given list at specified positions.
+     * Draws new standard symbols for some cells of a grid and leaves the others as they are, e.g. to refill the cells
+     * vacated by a cascade or to respin a few reels. Each cell is drawn from its own distribution, as when a grid is
+     * generated; no bonus symbol is placed.
      *
-     * @param matrix  the matrix to fill with symbols.
-     * @param row     the row to start filling from.
-     * @param column  the column to start filling from.
-     * @param symbols the list of symbols to fill the matrix with.
+     * @param grid   the grid to update
+     * @param cells  the indices of the cells to refill
+     * @param count  the number of cells to refill, taken from the start of {@code cells}
+     * @param random supplies uniformly distributed 64-bit values.
      */
-    private void fillMatrixWithSymbols(String[][] matrix, int row, int column, List<String> symbols) {
-        for (int r = 0; r < config.getRows(); r++) {
-            for (int c = 0; c < config.getColumns(); c++) {
-                if (matrix[r][c] == null && r == row && c == column) {
-                    Iterator<String> iterator = symbols.iterator();
-                    if (iterator.hasNext()) {
-                        String symbol = iterator.next();
-                        iterator.remove();
-                        matrix[r][c] = symbol;
-                    }
-                }
+    public void refill(Grid grid, int[] cells, int count, LongSupplier random) {
+        if (grid.size() != game.cells || grid.getColumns() != game.columns) {
+            throw new IllegalArgumentException("Grid size does not match the game");
+        }
+        if (count < 0 || count > cells.length) {
+            throw new IllegalArgumentException("Invalid cell count: " + count);
+        }
+        AliasSampler[] samplers = game.cellSamplers;
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (cell < 0 || cell >= samplers.length) {
+                throw new IllegalArgumentException("Cell out of range: " + cell);
             }
+            grid.cells[cell] = (byte) samplers[cell].sample(random.getAsLong());
         }
     }
 
     /**
-     * Places a bonus symbol in the matrix based on their probabilities.
+     * Generates one grid into a strided buffer, drawing exactly the same random values as
+     * {@link #generateGrid(Grid, LongSupplier)}. Cell {@code i} of the grid is written to
+     * {@code cells[offset + i * stride]}, which lets batch evaluation store many grids cell by cell.
      *
-     * @param matrix the matrix to fill with a bonus symbol.
+     * @param cells  the buffer to write to
+     * @param offset the index of the grid's first cell
+     * @param stride the distance between consecutive cells of the grid
+     * @param random the source of random bits
      */
-    private void placeBonusSymbols(String[][] matrix) {
-        int totalWeight = config.getProbabilities().getBonusSymbols().getSymbols().values().stream().mapToInt(Integer::intValue).sum();
-        int randomCell = rand.nextInt(config.getRows() * config.getColumns());
-
-        int bonusIndex = rand.nextInt(totalWeight);
-        int cumulativeWeight = 0;
-        String selectedBonus = null;
-        for (Map.Entry<String, Integer> entry : config.getProbabilities().getBonusSymbols().getSymbols().entrySet()) {
-            cumulativeWeight += entry.getValue();
-            if (bonusIndex < cumulativeWeight) {
-                selectedBonus = entry.getKey();
-                break;
-            }
-        }
+    void generateStrided(byte[] cells, int offset, int stride, LongSupplier random) {
+        placeStandardSymbols(cells, offset, stride, random);
+        placeBonusSymbols(cells, offset, stride, random);
+    }
 
-        if (selectedBonus != null) {
-            int row = randomCell / config.getColumns();
-            int column = randomCell % config.getColumns();
-            matrix[row][column] = selectedBonus;
+    /**
+     * Places standard symbols in every cell based on their probabilities.
+     * Cells without a configured distribution get a uniformly chosen standard symbol.
+     *
+     * @param cells the buffer to fill with standard symbol ordinals.
+     * @param offset the index of the first cell.
+     * @param stride the distance between consecutive cells.
+     * @param random the source of random bits.
+     */
+    private void placeStandardSymbols(byte[] cells, int offset, int stride, LongSupplier random) {
+        AliasSampler[] samplers = game.cellSamplers;
+        for (int cell = 0; cell < samplers.length; cell++) {
+            cells[offset + cell * stride] = (byte) samplers[cell].sample(random.getAsLong());
         }
     }
 
     /**
-     * Fills any remaining null cells in the matrix with random standard symbols.
+     * Places a bonus symbol in a random cell based on their probabilities.
      *
-     * @param matrix the matrix to fill.
+     * @param cells the buffer to place a bonus symbol in.
+     * @param offset the index of the first cell.
+     * @param stride the distance between consecutive cells.
+     * @param random the source of random bits.
      */
-    private void fillNullCells(String[][] matrix) {
-        List<String> allSymbols = config.getSymbols().keySet().stream()
-                .filter(sym -> config.getSymbols().get(sym).getType().equals("standard"))
-                .collect(Collectors.toList());
-
-        for (int r = 0; r < config.getRows(); r++) {
-            for (int c = 0; c < config.getColumns(); c++) {
-                if (matrix[r][c] == null) {
-                    matrix[r][c] = allSymbols.get(rand.nextInt(allSymbols.size()));
-                }
-            }
+    private void placeBonusSymbols(byte[] cells, int offset, int stride, LongSupplier random) {
+        if (game.bonusSampler == null) {
+            return;
         }
+        int randomCell = (int) (((random.getAsLong() >>> 32) * game.cells) >>> 32);
+        cells[offset + randomCell * stride] = (byte) game.bonusSampler.sample(random.getAsLong());
     }
 }
@@ -0,0 +1,349 @@
+package com.halilsahin.scratch;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes results as compact JSON, one object per line (NDJSON), with the same field names as
+ * {@link RewardCalculator.Result#toString()}.
+ * <p>
+ * Records are encoded by hand into an internal byte buffer; symbol and combination names are encoded once per game
+ * and reused, so one writer can carry the results of several games. The buffer is handed to the stream whenever it fills up or every {@code flushEvery} records,
+ * whichever comes first. The writer is not thread-safe.
+ *
+ * @author Halil Şahin
+ */
+public class NdjsonResultWriter implements ResultSink {
+
+    private static final byte[] MATRIX = ascii("{\"matrix\":[");
+    private static final byte[] REWARD = ascii("],\"reward\":");
+    private static final byte[] COMBINATIONS = ascii(",\"appliedWinningCombinations\":{");
+    private static final byte[] BONUS = ascii("},\"appliedBonusSymbol\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] LOSS = ascii("\"LOSS\"");
+    private static final byte[] END = ascii("}\n");
+    private static final byte[] ERROR = ascii("{\"error\":");
+
+    // Bounds the per-writer name cache when games are reloaded over a long-lived writer
+    private static final int MAX_CACHED_GAMES = 64;
+
+    private final OutputStream out;
+    private final int flushEvery;
+    private final Map<CompiledGame, byte[][][]> namesByGame = new IdentityHashMap<>();
+    private final Map<String, byte[]> encodedNames = new HashMap<>();
+    private CompiledGame game;
+    private byte[][] symbolNames;
+    private byte[][] combinationNames;
+    private byte[] buffer;
+    private int position;
+    private int pending;
+
+    /**
+     * Creates a writer for the results of any game.
+     *
+     * @param out        the stream to write to
+     * @param flushEvery the number of records after which the buffer is written and the stream flushed
+     */
+    public NdjsonResultWriter(OutputStream out, int flushEvery) {
+        if (flushEvery <= 0) {
+            throw new IllegalArgumentException("flushEvery must be positive");
+        }
+        this.out = out;
+        this.flushEvery = flushEvery;
+        this.buffer = new byte[64 * 1024];
+        encodedNames.put("LOSS", LOSS);
+    }
+
+    /**
+     * Creates a writer, encoding the names of the given game up front.
+     *
+     * @param out        the stream to write to
+     * @param game       the game whose results are written
+     * @param flushEvery the number of records after which the buffer is written and the stream flushed
+     */
+    public NdjsonResultWriter(OutputStream out, CompiledGame game, int flushEvery) {
+        this(out, flushEvery);
+        use(game);
+    }
+
+    @Override
+    public void write(RewardCalculator.Result result) throws IOException {
+        put(MATRIX);
+        String[][] matrix = result.getMatrix();
+        for (int r = 0; r < matrix.length; r++) {
+            if (r > 0) {
+                put((byte) ',');
+            }
+            put((byte) '[');
+            for (int c = 0; c < matrix[r].length; c++) {
+                if (c > 0) {
+                    put((byte) ',');
+                }
+                putString(matrix[r][c]);
+            }
+            put((byte) ']');
+        }
+        put(REWARD);
+        putInt(result.getReward());
+        put(COMBINATIONS);
+        boolean first = true;
+        for (Map.Entry<String, List<String>> entry : result.getAppliedWinningCombinations().entrySet()) {
+            if (!first) {
+                put((byte) ',');
+            }
+            first = false;
+            putString(entry.getKey());
+            put((byte) ':');
+            put((byte) '[');
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                if (i > 0) {
+                    put((byte) ',');
+                }
+                putString(entry.getValue().get(i));
+            }
+            put((byte) ']');
+        }
+        put(BONUS);
+        if (result.getAppliedBonusSymbol() == null) {
+            put(NULL);
+        } else {
+            putString(result.getAppliedBonusSymbol());
+        }
+        endRecord();
+    }
+
+    @Override
+    public void write(Grid grid, RewardCalculator.Evaluation evaluation) throws IOException {
+        use(evaluation.game);
+        put(MATRIX);
+        int columns = grid.getColumns();
+        for (int r = 0; r < grid.getRows(); r++) {
+            if (r > 0) {
+                put((byte) ',');
+            }
+            put((byte) '[');
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) {
+                    put((byte) ',');
+                }
+                put(symbolNames[grid.get(r, c)]);
+            }
+            put((byte) ']');
+        }
+        put(REWARD);
+        putInt(evaluation.getReward());
+        put(COMBINATIONS);
+        if (evaluation.isWin()) {
+            boolean first = true;
+            for (int i = 0; i < evaluation.presentCount; i++) {
+                int symbol = evaluation.present[i];
+                int countCombination = evaluation.countCombination(symbol);
+                int linearCombination = evaluation.linearCombination(symbol);
+                if (countCombination < 0 && linearCombination < 0) {
+                    continue;
+                }
+                if (!first) {
+                    put((byte) ',');
+                }
+                first = false;
+                put(symbolNames[symbol]);
+                put((byte) ':');
+                put((byte) '[');
+                if (countCombination >= 0) {
+                    put(combinationNames[countCombination]);
+                }
+                if (linearCombination >= 0) {
+                    if (countCombination >= 0) {
+                        put((byte) ',');
+                    }
+                    put(combinationNames[linearCombination]);
+                }
+                put((byte) ']');
+            }
+        }
+        put(BONUS);
+        if (!evaluation.isWin()) {
+            put(LOSS);
+        } else if (evaluation.getBonusSymbol() < 0) {
+            put(NULL);
+        } else {
+            put(symbolNames[evaluation.getBonusSymbol()]);
+        }
+        endRecord();
+    }
+
+    /**
+     * Writes an error record of the form {@code {"error":"message"}}.
+     *
+     * @param message the error message
+     * @throws IOException if writing fails
+     */
+    public void writeError(String message) throws IOException {
+        put(ERROR);
+        putString(message);
+        endRecord();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Switches the symbol and combination name tables to the given game, encoding them on first use.
+     */
+    private void use(CompiledGame game) {
+        if (this.game == game) {
+            return;
+        }
+        byte[][][] names = namesByGame.get(game);
+        if (names == null) {
+            if (namesByGame.size() >= MAX_CACHED_GAMES) {
+                // Names of games no longer cached would otherwise stay encoded for the life of the writer
+                namesByGame.clear();
+                encodedNames.clear();
+                encodedNames.put("LOSS", LOSS);
+            }
+            names = new byte[2][][];
+            names[0] = new byte[game.getSymbolCount()][];
+            for (int i = 0; i < names[0].length; i++) {
+                names[0][i] = encodeString(game.symbolName(i));
+                encodedNames.putIfAbsent(game.symbolName(i), names[0][i]);
+            }
+            names[1] = new byte[game.getCombinationCount()][];
+            for (int i = 0; i < names[1].length; i++) {
+                names[1][i] = encodeString(game.combinationName(i));
+                encodedNames.putIfAbsent(game.combinationName(i), names[1][i]);
+            }
+            namesByGame.put(game, names);
+        }
+        this.game = game;
+        this.symbolNames = names[0];
+        this.combinationNames = names[1];
+    }
+
+    private void endRecord() throws IOException {
+        put(END);
+        if (++pending >= flushEvery) {
+            flush();
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        pending = 0;
+    }
+
+    private void ensure(int length) throws IOException {
+        if (position + length > buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+            if (length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length, buffer.length * 2));
+            }
+        }
+    }
+
+    private void put(byte b) throws IOException {
+        ensure(1);
+        buffer[position++] = b;
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    private void putInt(int value) throws IOException {
+        ensure(11);
+        if (value == Integer.MIN_VALUE) {
+            put(ascii(Integer.toString(value)));
+            return;
+        }
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + digits(value);
+        int index = end;
+        do {
+            buffer[--index] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        position = end;
+    }
+
+    private void putString(String value) throws IOException {
+        byte[] encoded = encodedNames.get(value);
+        put(encoded != null ? encoded : encodeString(value));
+    }
+
+    private static int digits(int value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * Encodes a string as a quoted, escaped JSON string in UTF-8.
+     */
+    static byte[] encodeString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2);
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        json.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        json.append(ch);
+                    }
+            }
+        }
+        json.append('"');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,241 @@
+package com.halilsahin.scratch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lazily filled lookup table from the contents of a small grid to the linear combinations it wins, for use by a
+ * {@link RewardCalculator}.
+ * <p>
+ * Which covered areas a grid fills depends only on which cells hold the same standard symbol, not on the symbols
+ * themselves, and the linear combination picked for an area depends only on the area. A grid is therefore encoded in
+ * canonical form: standard symbols are numbered by their first occurrence in row-major order, every bonus symbol is
+ * encoded as 0, and the labels are packed as a base-k number with one digit per cell. A 3x3 grid has at most
+ * 115975 canonical forms however many symbols the game has. The first evaluation of a canonical form walks the
+ * covered areas as usual and records the linear combination picked per label; later evaluations look it up instead.
+ * Symbol counts and rewards are still computed by the calculator, so a lookup yields exactly the result of a full
+ * evaluation for any betting amount.
+ * <p>
+ * The table is an open-addressing hash table of fixed size, bounded by the memory given at construction. Once it is
+ * half full no further grids are recorded and grids not in the table are evaluated normally. The distinct outcomes
+ * are few and shared between grids. The table is safe for concurrent use.
+ *
+ * @author Halil Şahin
+ */
+public final class PayoutTable {
+
+    private static final int BYTES_PER_SLOT = Long.BYTES + Integer.BYTES;
+    private static final int MAX_SLOTS = 1 << 30;
+    private static final int[] NO_LINES = new int[0];
+
+    private final CompiledGame game;
+    private final int base;
+    private final int mask;
+    private final int maxEntries;
+    // Encoded grid plus one per slot, 0 marking an empty slot
+    private final AtomicLongArray keys;
+    // Outcome id per slot, -1 until the outcome of a claimed slot is published
+    private final AtomicIntegerArray outcomeIds;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentHashMap<List<Integer>, Integer> outcomeIndex = new ConcurrentHashMap<>();
+    // Linear combinations per outcome, packed as label << 16 | combination
+    private volatile int[][] outcomes = {NO_LINES};
+
+    /**
+     * Creates an empty table.
+     *
+     * @param game     the game to tabulate
+     * @param maxBytes the memory the table may use
+     * @throws IllegalArgumentException if the grids of the game cannot be encoded in 63 bits, or the memory is too
+     *                                  small for a single entry
+     */
+    public PayoutTable(CompiledGame game, long maxBytes) {
+        if (!isSupported(game)) {
+            throw new IllegalArgumentException("Grids of " + game.cells + " cells cannot be tabulated");
+        }
+        if (maxBytes < 2 * BYTES_PER_SLOT) {
+            throw new IllegalArgumentException("Payout table memory must be at least " + 2 * BYTES_PER_SLOT + " bytes");
+        }
+        this.game = game;
+        this.base = base(game);
+
+        int slots = Integer.highestOneBit((int) Math.min(MAX_SLOTS, maxBytes / BYTES_PER_SLOT));
+        this.mask = slots - 1;
+        this.maxEntries = slots / 2;
+        this.keys = new AtomicLongArray(slots);
+        this.outcomeIds = new AtomicIntegerArray(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            outcomeIds.set(slot, -1);
+        }
+        outcomeIndex.put(List.of(), 0);
+    }
+
+    /**
+     * Returns whether every grid of the given game fits into one table key.
+     *
+     * @param game the game to check
+     * @return true if the game can be tabulated
+     */
+    public static boolean isSupported(CompiledGame game) {
+        if (game.getCombinationCount() > 0xFFFF) {
+            return false;
+        }
+        int base = base(game);
+        long limit = 1;
+        for (int cell = 0; cell < game.cells; cell++) {
+            if (limit > (Long.MAX_VALUE - 1) / base) {
+                return false;
+            }
+            limit *= base;
+        }
+        return true;
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the number of grids recorded so far.
+     */
+    public int getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns the number of grids that can be recorded before the table stops growing.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    private static int base(CompiledGame game) {
+        int standardSymbols = 0;
+        for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+            if (game.standard[symbol]) {
+                standardSymbols++;
+            }
+        }
+        return Math.min(standardSymbols, game.cells) + 1;
+    }
+
+    /**
+     * Encodes the given cells into a table key, numbering the standard symbols of the evaluation in the order in
+     * which they were first counted.
+     *
+     * @param cells the cells of the grid
+     * @param evaluation an evaluation that has counted the cells
+     * @return the key of the canonical form of the grid
+     */
+    long key(byte[] cells, RewardCalculator.Evaluation evaluation) {
+        final int[] labels = evaluation.labels;
+        int label = 0;
+        for (int i = 0; i < evaluation.presentCount; i++) {
+            int symbol = evaluation.present[i];
+            if (game.standard[symbol]) {
+                evaluation.labelled[label] = symbol;
+                labels[symbol] = ++label;
+            } else {
+                labels[symbol] = 0;
+            }
+        }
+        long key = 0;
+        for (byte symbol : cells) {
+            key = key * base + labels[symbol];
+        }
+        return key + 1;
+    }
+
+    /**
+     * Looks up the outcome of a grid.
+     *
+     * @param key the key of the grid
+     * @return the outcome id, or -1 if the grid has not been recorded
+     */
+    int find(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys.get(slot);
+            if (current == key) {
+                return outcomeIds.get(slot);
+            }
+            if (current == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Copies the linear combinations of an outcome into an evaluation of a grid with the same key.
+     */
+    void apply(int outcome, RewardCalculator.Evaluation evaluation) {
+        for (int line : outcomes[outcome]) {
+            int symbol = evaluation.labelled[(line >>> 16) - 1];
+            int combination = line & 0xFFFF;
+            evaluation.linearCombinations[symbol] = combination;
+            evaluation.linearMultipliers[symbol] = game.combinationMultipliers[combination];
+        }
+    }
+
+    /**
+     * Records the linear combinations of a completed evaluation under the key of its grid, unless the table is full.
+     */
+    void record(long key, RewardCalculator.Evaluation evaluation) {
+        if (size.get() >= maxEntries) {
+            return;
+        }
+        int slot = slot(key);
+        while (true) {
+            long current = keys.get(slot);
+            if (current == key) {
+                return;
+            }
+            if (current == 0) {
+                // Claim the slot first so that two threads never publish outcomes into the same slot
+                if (keys.compareAndSet(slot, 0, key)) {
+                    break;
+                }
+                continue;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size.incrementAndGet();
+        outcomeIds.set(slot, outcomeOf(evaluation));
+    }
+
+    private int outcomeOf(RewardCalculator.Evaluation evaluation) {
+        List<Integer> lines = new ArrayList<>(2);
+        for (int i = 0; i < evaluation.presentCount; i++) {
+            int symbol = evaluation.present[i];
+            if (evaluation.linearCombinations[symbol] >= 0) {
+                lines.add(evaluation.labels[symbol] << 16 | evaluation.linearCombinations[symbol]);
+            }
+        }
+        lines.sort(null);
+        Integer id = outcomeIndex.get(lines);
+        return id != null ? id : outcomeIndex.computeIfAbsent(lines, this::addOutcome);
+    }
+
+    private synchronized int addOutcome(List<Integer> lines) {
+        int[][] current = outcomes;
+        int[][] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = lines.stream().mapToInt(Integer::intValue).toArray();
+        outcomes = grown;
+        return current.length;
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3, spreading neighbouring grids over the table
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
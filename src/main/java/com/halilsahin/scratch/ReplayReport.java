@@ -0,0 +1,45 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Outcome of replaying an audit log: how many recorded spins were reproduced exactly and which ones were not.
+ *
+ * @author Halil Şahin
+ */
+@Data
+public class ReplayReport {
+    private static final Logger LOGGER = Logger.getLogger(ReplayReport.class.getName());
+    private static final ObjectWriter WRITER = Json.INDENTED;
+
+    private long records;
+    private long verified;
+    private long mismatches;
+    // Records played with a game version none of the supplied configurations matches
+    private long unknownVersions;
+    // Record numbers of the first mismatches, counted from 0
+    private List<Long> mismatchedRecords;
+
+    /**
+     * Returns whether every record was replayed and matched.
+     */
+    public boolean isClean() {
+        return mismatches == 0 && unknownVersions == 0;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Failed to convert report to JSON: " + e.getMessage(), e);
+            return super.toString();
+        }
+    }
+}
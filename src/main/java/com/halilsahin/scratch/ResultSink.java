@@ -0,0 +1,30 @@
+package com.halilsahin.scratch;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Destination for spin outcomes, e.g. an audit trail or a results file.
+ *
+ * @author Halil Şahin
+ */
+public interface ResultSink extends Closeable, Flushable {
+
+    /**
+     * Writes a result.
+     *
+     * @param result the result to write
+     * @throws IOException if writing fails
+     */
+    void write(RewardCalculator.Result result) throws IOException;
+
+    /**
+     * Writes the outcome of a spin straight from its grid and evaluation, without building a result.
+     *
+     * @param grid       the grid of the spin
+     * @param evaluation the evaluation of the grid
+     * @throws IOException if writing fails
+     */
+    void write(Grid grid, RewardCalculator.Evaluation evaluation) throws IOException;
+}
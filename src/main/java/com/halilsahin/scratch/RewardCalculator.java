@@ -1,12 +1,12 @@
 package com.halilsahin.scratch;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,11 +19,57 @@ import java.util.logging.Logger;
  * author Halil Şahin
  */
 public class RewardCalculator {
-    private final Config config;
+    private final CompiledGame game;
+    private final PayoutTable payoutTable;
+    private final SpecializedEvaluator specialized;
     private static final Logger LOGGER = Logger.getLogger(RewardCalculator.class.getName());
 
     public RewardCalculator(Config config) {
-        this.config = config;
+        this(CompiledGame.compile(config));
+    }
+
+    public RewardCalculator(CompiledGame game) {
+        this.game = game;
+        this.payoutTable = null;
+        this.specialized = null;
+    }
+
+    /**
+     * Creates a calculator that looks up the linear combinations of grids it has seen before in the given table.
+     *
+     * @param game the compiled game
+     * @param payoutTable the table to read and fill, shared freely between calculators of the same game
+     * @throws IllegalArgumentException if the table was created for another game
+     */
+    public RewardCalculator(CompiledGame game, PayoutTable payoutTable) {
+        if (payoutTable.getGame() != game) {
+            throw new IllegalArgumentException("Payout table does not match the game");
+        }
+        this.game = game;
+        this.payoutTable = payoutTable;
+        this.specialized = null;
+    }
+
+    /**
+     * Creates a calculator that evaluates grids with the given evaluator generated for its game.
+     *
+     * @param specialized the evaluator, see {@link SpecializedEvaluator}
+     */
+    public RewardCalculator(SpecializedEvaluator specialized) {
+        this.game = specialized.getGame();
+        this.payoutTable = null;
+        this.specialized = specialized;
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Returns whether grids are evaluated by walking the game's tables, without a payout table or generated evaluator.
+     */
+    boolean isInterpreted() {
+        return payoutTable == null && specialized == null;
     }
 
     /**
@@ -34,123 +80,377 @@ public class RewardCalculator {
      * @return the result containing the matrix, total reward, applied winning combinations, and applied bonus symbol
      */
     public Result calculateReward(String[][] matrix, int betAmount) {
-        int totalReward = 0;
-        Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
-        String appliedBonusSymbol = null;
+        return calculateReward(Grid.fromMatrix(game, matrix).cells, matrix, betAmount);
+    }
 
-        // Calculate rewards for standard symbols
-        for (String symbol : config.getSymbols().keySet()) {
-            if (config.getSymbols().get(symbol).getType().equals("standard")) {
-                int symbolReward = 0;
-                int symbolCount = 0;
-
-                // Find the count of the symbol in the matrix
-                for (int r = 0; r < config.getRows(); r++) {
-                    for (int c = 0; c < config.getColumns(); c++) {
-                        if (matrix[r][c].equals(symbol)) {
-                            symbolCount++;
-                        }
-                    }
-                }
+    /**
+     * Calculates the reward based on the given grid and betting amount.
+     *
+     * @param grid the generated grid
+     * @param betAmount the betting amount
+     * @return the result containing the matrix view of the grid, total reward, applied winning combinations,
+     * and applied bonus symbol
+     */
+    public Result calculateReward(Grid grid, int betAmount) {
+        if (grid.size() != game.cells || grid.getColumns() != game.columns) {
+            throw new IllegalArgumentException("Grid size does not match the game");
+        }
+        return calculateReward(grid.cells, grid.toMatrix(game), betAmount);
+    }
 
-                if (symbolCount > 0) {
-                    // Find the winning combination for the symbol
-                    List<String> winningCombinations = new ArrayList<>();
-                    double maxCountMultiplier = 0;
-                    double maxLinearMultiplier = 0;
-
-                    String maxCountCombination = null;
-                    String maxLinearCombination = null;
-
-                    for (String combinationKey : config.getWinCombinations().keySet()) {
-                        Config.WinCombination combination = config.getWinCombinations().get(combinationKey);
-
-                        // Check for same symbols combination
-                        if (combination.getWhen().equals("same_symbols") && combination.getCount() <= symbolCount) {
-                            if (combination.getRewardMultiplier() > maxCountMultiplier) {
-                                maxCountMultiplier = combination.getRewardMultiplier();
-                                maxCountCombination = combinationKey;
-                            }
-                        }
-
-                        // Check for linear symbols combination
-                        if (combination.getWhen().equals("linear_symbols")) {
-                            for (List<String> area : combination.getCoveredAreas()) {
-                                if (checkCoveredArea(matrix, symbol, area)) {
-                                    if (combination.getRewardMultiplier() > maxLinearMultiplier) {
-                                        maxLinearMultiplier = combination.getRewardMultiplier();
-                                        maxLinearCombination = combinationKey;
-                                    }
-                                }
-                            }
-                        }
-                    }
+    private Result calculateReward(byte[] cells, String[][] matrix, int betAmount) {
+        Evaluation evaluation = new Evaluation(game);
+        evaluate(cells, betAmount, evaluation);
+        return toResult(matrix, evaluation);
+    }
 
-                    if (maxCountCombination != null) {
-                        winningCombinations.add(maxCountCombination);
-                    }
-                    if (maxLinearCombination != null) {
-                        winningCombinations.add(maxLinearCombination);
-                    }
+    /**
+     * Builds the result of a grid that has already been evaluated.
+     *
+     * @param grid the evaluated grid
+     * @param evaluation the evaluation of the grid
+     * @return the result of the grid
+     */
+    Result toResult(Grid grid, Evaluation evaluation) {
+        return toResult(grid.toMatrix(game), evaluation);
+    }
 
-                    if (!winningCombinations.isEmpty()) {
-                        symbolReward = (int) Math.round(betAmount * config.getSymbols().get(symbol).getRewardMultiplier()
-                                * maxCountMultiplier * Math.max(1, maxLinearMultiplier));
-                        appliedWinningCombinations.put(symbol, winningCombinations);
-                    }
-                    totalReward += symbolReward;
+    private Result toResult(String[][] matrix, Evaluation evaluation) {
+        int totalReward = evaluation.reward;
+
+        // If no winning combinations, the reward is 0 and the spin is marked as LOSS
+        if (!evaluation.won) {
+            return new Result(matrix, totalReward, new HashMap<>(), "LOSS");
+        }
+
+        Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
+        for (int i = 0; i < evaluation.presentCount; i++) {
+            int symbol = evaluation.present[i];
+            int countCombination = evaluation.countCombination(symbol);
+            int linearCombination = evaluation.linearCombination(symbol);
+            if (countCombination >= 0 || linearCombination >= 0) {
+                List<String> winningCombinations = new ArrayList<>(2);
+                if (countCombination >= 0) {
+                    winningCombinations.add(game.combinationNames[countCombination]);
+                }
+                if (linearCombination >= 0) {
+                    winningCombinations.add(game.combinationNames[linearCombination]);
                 }
+                appliedWinningCombinations.put(game.symbolNames[symbol], winningCombinations);
+            }
+        }
+        String appliedBonusSymbol = evaluation.bonusSymbol >= 0 ? game.symbolNames[evaluation.bonusSymbol] : null;
+        return new Result(matrix, totalReward, appliedWinningCombinations, appliedBonusSymbol);
+    }
+
+    /**
+     * Evaluates a grid without building a {@link Result}, reusing the given scratch state.
+     *
+     * @param grid the generated grid
+     * @param betAmount the betting amount
+     * @param evaluation the scratch state to fill, created for the same game
+     * @return the total reward
+     */
+    public int evaluate(Grid grid, int betAmount, Evaluation evaluation) {
+        if (grid.size() != game.cells || evaluation.game != game) {
+            throw new IllegalArgumentException("Grid or evaluation does not match the game");
+        }
+        return evaluate(grid.cells, betAmount, evaluation);
+    }
+
+    /**
+     * Evaluates the cells in a single pass over the grid to count symbols, followed by a walk over the prefix tree of
+     * covered areas that only descends while the cells keep matching the symbol at the root, so the work done for
+     * linear combinations follows the number of matching cells rather than the number of areas. With a
+     * {@link PayoutTable} the walk is replaced by a lookup for grids that have been evaluated before; with a
+     * {@link SpecializedEvaluator} the whole evaluation is delegated to it.
+     */
+    int evaluate(byte[] cells, int betAmount, Evaluation evaluation) {
+        if (specialized != null) {
+            return specialized.evaluate(cells, betAmount, evaluation);
+        }
+        evaluation.reset();
+        final int[] counts = evaluation.counts;
+
+        // Count symbols and remember bonus cells in row-major order
+        for (int cell = 0; cell < cells.length; cell++) {
+            int symbol = cells[cell];
+            if (counts[symbol]++ == 0) {
+                evaluation.present[evaluation.presentCount++] = symbol;
+            }
+            if (!game.standard[symbol]) {
+                evaluation.bonusCells[evaluation.bonusCount++] = cell;
             }
         }
 
+        final PayoutTable table = payoutTable;
+        if (table == null) {
+            findLinearCombinations(cells, evaluation);
+        } else {
+            // Grids seen before skip the walk over covered areas
+            long key = table.key(cells, evaluation);
+            int outcome = table.find(key);
+            if (outcome >= 0) {
+                table.apply(outcome, evaluation);
+            } else {
+                findLinearCombinations(cells, evaluation);
+                table.record(key, evaluation);
+            }
+        }
+        return settle(cells, betAmount, evaluation);
+    }
+
+    /**
+     * Completes an evaluation whose symbol counts, bonus cells and linear combinations are filled in: picks the
+     * same_symbols combinations and calculates the reward.
+     *
+     * @param cells the cells of the grid
+     * @param betAmount the betting amount
+     * @param evaluation the partially filled evaluation
+     * @return the total reward
+     */
+    int settle(byte[] cells, int betAmount, Evaluation evaluation) {
+        final int[] counts = evaluation.counts;
+
+        // Calculate rewards for standard symbols
+        int totalReward = 0;
+        boolean won = false;
+        for (int i = 0; i < evaluation.presentCount; i++) {
+            int symbol = evaluation.present[i];
+            if (!game.standard[symbol]) {
+                continue;
+            }
+            int countCombination = game.bestCountCombination[counts[symbol]];
+            evaluation.countCombinations[symbol] = countCombination;
+            if (countCombination >= 0 || evaluation.linearCombinations[symbol] >= 0) {
+                totalReward += symbolReward(betAmount, symbol, countCombination, evaluation.linearMultipliers[symbol]);
+                won = true;
+            }
+        }
+
+        evaluation.baseReward = totalReward;
+
         // Apply bonus symbols
-        for (int r = 0; r < config.getRows(); r++) {
-            for (int c = 0; c < config.getColumns(); c++) {
-                String cell = matrix[r][c];
-                if (config.getSymbols().get(cell).getType().equals("bonus")) {
-                    appliedBonusSymbol = cell;
-                    Config.Symbol bonusSymbol = config.getSymbols().get(cell);
-                    switch (bonusSymbol.getImpact()) {
-                        case "multiply_reward":
-                            totalReward *= bonusSymbol.getRewardMultiplier();
-                            break;
-                        case "extra_bonus":
-                            totalReward += bonusSymbol.getExtra();
-                            break;
-                        default:
-                            break;
+        int bonusSymbol = -1;
+        for (int i = 0; i < evaluation.bonusCount; i++) {
+            bonusSymbol = cells[evaluation.bonusCells[i]];
+            totalReward = applyBonus(totalReward, bonusSymbol);
+        }
+
+        if (!won) {
+            totalReward = 0;
+        }
+        evaluation.won = won;
+        evaluation.bonusSymbol = bonusSymbol;
+        evaluation.reward = totalReward;
+        return totalReward;
+    }
+
+    /**
+     * Picks the best linear combination per standard symbol by walking the prefix tree of covered areas.
+     */
+    private void findLinearCombinations(byte[] cells, Evaluation evaluation) {
+        // Find the best linear combination per symbol; an area can only be filled by the symbol at its first cell
+        final int[] nodeCells = game.lineNodeCells;
+        final int[] children = game.lineChildren;
+        final int[] ends = game.lineEnds;
+        final int[] stack = evaluation.lineStack;
+        for (int root = 0; root < game.lineRoots; root++) {
+            int symbol = cells[nodeCells[root]];
+            if (!game.standard[symbol]) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int node = stack[--top];
+                for (int end = ends[node]; end < ends[node + 1]; end++) {
+                    offerLine(evaluation, symbol, game.lineEndCombinations[end]);
+                }
+                for (int child = children[node]; child < children[node + 1]; child++) {
+                    if (cells[nodeCells[child]] == symbol) {
+                        stack[top++] = child;
                     }
                 }
             }
         }
-
-        // If no winning combinations, set reward to 0 and mark as LOSS
-        if (appliedWinningCombinations.isEmpty()) {
-            totalReward = 0;
-            appliedBonusSymbol = "LOSS";
+        // An empty area is covered by every standard symbol present
+        for (int combination : game.emptyLineCombinations) {
+            for (int i = 0; i < evaluation.presentCount; i++) {
+                if (game.standard[evaluation.present[i]]) {
+                    offerLine(evaluation, evaluation.present[i], combination);
+                }
+            }
         }
+    }
 
-        return new Result(matrix, totalReward, appliedWinningCombinations, appliedBonusSymbol);
+    /**
+     * Calculates the reward of one winning standard symbol.
+     *
+     * @param betAmount the betting amount
+     * @param symbol the ordinal of the symbol
+     * @param countCombination the same_symbols combination applied to the symbol, or -1 if none
+     * @param linearMultiplier the multiplier of the linear_symbols combination applied to the symbol, 0 if none
+     * @return the reward of the symbol
+     */
+    int symbolReward(int betAmount, int symbol, int countCombination, double linearMultiplier) {
+        double maxCountMultiplier = countCombination >= 0 ? game.combinationMultipliers[countCombination] : 0;
+        return (int) Math.round(betAmount * game.rewardMultipliers[symbol] * maxCountMultiplier
+                * Math.max(1, linearMultiplier));
     }
 
     /**
-     * Checks if the specified area in the matrix contains the given symbol.
+     * Applies the impact of a bonus symbol to a reward.
      *
-     * @param matrix the matrix to check
-     * @param symbol the symbol to look for
-     * @param area the area to check
-     * @return true if the area contains the symbol, false otherwise
+     * @param reward the reward before the bonus
+     * @param bonusSymbol the ordinal of the bonus symbol
+     * @return the reward after the bonus
+     */
+    int applyBonus(int reward, int bonusSymbol) {
+        switch (game.impacts[bonusSymbol]) {
+            case MULTIPLY_REWARD:
+                reward *= game.rewardMultipliers[bonusSymbol];
+                break;
+            case EXTRA_BONUS:
+                reward += game.extras[bonusSymbol];
+                break;
+            default:
+                break;
+        }
+        return reward;
+    }
+
+    /**
+     * Keeps the linear combination with the highest multiplier per symbol; among equal multipliers the one declared
+     * first wins, independently of the order in which covered areas are found.
+     */
+    void offerLine(Evaluation evaluation, int symbol, int combination) {
+        double multiplier = game.combinationMultipliers[combination];
+        double best = evaluation.linearMultipliers[symbol];
+        if (multiplier > best || (multiplier == best && combination < evaluation.linearCombinations[symbol])) {
+            evaluation.linearMultipliers[symbol] = multiplier;
+            evaluation.linearCombinations[symbol] = combination;
+        }
+    }
+
+    /**
+     * Reusable scratch state of a single evaluation, holding symbol counts, a stack for walking covered areas and
+     * the combinations picked per symbol. Only the symbols present in the last grid are reset between uses,
+     * so the cost of reuse does not depend on the number of symbols in the game.
+     * <p>
+     * An evaluation must not be shared between threads.
      */
-    private boolean checkCoveredArea(String[][] matrix, String symbol, List<String> area) {
-        for (String pos : area) {
-            String[] parts = pos.split(":");
-            int row = Integer.parseInt(parts[0]);
-            int col = Integer.parseInt(parts[1]);
-            if (!matrix[row][col].equals(symbol)) {
-                return false;
+    public static final class Evaluation {
+        final CompiledGame game;
+        final int[] counts;
+        final int[] lineStack;
+        final int[] countCombinations;
+        final int[] linearCombinations;
+        final double[] linearMultipliers;
+        final int[] present;
+        int presentCount;
+        final int[] bonusCells;
+        int bonusCount;
+        // Canonical label per symbol and symbol per label, used by a payout table
+        final int[] labels;
+        final int[] labelled;
+        int baseReward;
+        int reward;
+        boolean won;
+        int bonusSymbol;
+
+        public Evaluation(CompiledGame game) {
+            int symbols = game.getSymbolCount();
+            this.game = game;
+            this.counts = new int[symbols];
+            this.lineStack = new int[game.lineNodeCells.length];
+            this.countCombinations = new int[symbols];
+            this.linearCombinations = new int[symbols];
+            this.linearMultipliers = new double[symbols];
+            this.present = new int[symbols];
+            this.bonusCells = new int[game.cells];
+            this.labels = new int[symbols];
+            this.labelled = new int[symbols];
+            Arrays.fill(countCombinations, -1);
+            Arrays.fill(linearCombinations, -1);
+            this.bonusSymbol = -1;
+        }
+
+        void reset() {
+            for (int i = 0; i < presentCount; i++) {
+                int symbol = present[i];
+                counts[symbol] = 0;
+                countCombinations[symbol] = -1;
+                linearCombinations[symbol] = -1;
+                linearMultipliers[symbol] = 0;
+            }
+            presentCount = 0;
+            bonusCount = 0;
+            baseReward = 0;
+            reward = 0;
+            won = false;
+            bonusSymbol = -1;
+        }
+
+        /**
+         * Returns the total reward of the last evaluation.
+         */
+        public int getReward() {
+            return reward;
+        }
+
+        /**
+         * Returns whether any winning combination applied in the last evaluation.
+         */
+        public boolean isWin() {
+            return won;
+        }
+
+        /**
+         * Returns the ordinal of the last bonus symbol in the grid, or -1 if the grid had none.
+         */
+        public int getBonusSymbol() {
+            return bonusSymbol;
+        }
+
+        /**
+         * Returns how often the given symbol occurred in the last grid.
+         */
+        public int count(int symbol) {
+            return counts[symbol];
+        }
+
+        /**
+         * Returns the same_symbols combination applied to the given symbol, or -1 if none.
+         */
+        public int countCombination(int symbol) {
+            return countCombinations[symbol];
+        }
+
+        /**
+         * Returns the linear_symbols combination applied to the given symbol, or -1 if none.
+         */
+        public int linearCombination(int symbol) {
+            return linearCombinations[symbol];
+        }
+
+        /**
+         * Returns the ids of all combinations applied in the last evaluation as a bitmask,
+         * bit {@code i} standing for combination id {@code i}. Only meaningful for games with at most 64 combinations.
+         */
+        public long winningCombinationMask() {
+            long mask = 0;
+            for (int i = 0; i < presentCount; i++) {
+                int symbol = present[i];
+                if (countCombinations[symbol] >= 0) {
+                    mask |= 1L << countCombinations[symbol];
+                }
+                if (linearCombinations[symbol] >= 0) {
+                    mask |= 1L << linearCombinations[symbol];
+                }
             }
+            return mask;
         }
-        return true;
     }
 
     @Data
@@ -161,12 +461,12 @@ public class RewardCalculator {
         private Map<String, List<String>> appliedWinningCombinations;
         private String appliedBonusSymbol;
 
+        private static final ObjectWriter WRITER = Json.INDENTED;
+
         @Override
         public String toString() {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.enable(SerializationFeature.INDENT_OUTPUT);
             try {
-                return mapper.writeValueAsString(this);
+                return WRITER.writeValueAsString(this);
             } catch (JsonProcessingException e) {
                 LOGGER.log(Level.SEVERE, "Failed to convert result to JSON: " + e.getMessage(), e);
                 return super.toString();
@@ -0,0 +1,129 @@
+package com.halilsahin.scratch;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Exact count of spins by total reward.
+ * <p>
+ * Rewards are products of a few configured multipliers and the bet, so a game has few distinct rewards however many
+ * spins are played, and they are counted exactly rather than in buckets. Losses are counted apart from the table, as
+ * most spins are losses. Counts are kept in an open-addressing table that grows as new rewards appear, so recording
+ * a reward seen before does not allocate. Instances are not thread-safe.
+ *
+ * @author Halil Şahin
+ */
+public final class RewardHistogram {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Slots holding 0 are free; rewards of 0 are counted in zeros
+    private int[] rewards = new int[INITIAL_CAPACITY];
+    private long[] counts = new long[INITIAL_CAPACITY];
+    private int size;
+    private long zeros;
+
+    /**
+     * Counts one spin with the given reward.
+     *
+     * @param reward the total reward
+     */
+    public void record(int reward) {
+        add(reward, 1);
+    }
+
+    /**
+     * Counts the given number of spins with the given reward.
+     *
+     * @param reward the total reward
+     * @param count  the number of spins
+     */
+    public void add(int reward, long count) {
+        if (reward == 0) {
+            zeros += count;
+            return;
+        }
+        int mask = rewards.length - 1;
+        int slot = hash(reward) & mask;
+        while (rewards[slot] != reward) {
+            if (rewards[slot] == 0) {
+                rewards[slot] = reward;
+                if (++size * 2 > rewards.length) {
+                    counts[slot] += count;
+                    grow();
+                    return;
+                }
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        counts[slot] += count;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one.
+     *
+     * @param other the histogram to merge
+     */
+    public void merge(RewardHistogram other) {
+        zeros += other.zeros;
+        for (int slot = 0; slot < other.rewards.length; slot++) {
+            if (other.rewards[slot] != 0) {
+                add(other.rewards[slot], other.counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of spins counted with the given reward.
+     *
+     * @param reward the total reward
+     * @return the count
+     */
+    public long getCount(int reward) {
+        if (reward == 0) {
+            return zeros;
+        }
+        int mask = rewards.length - 1;
+        for (int slot = hash(reward) & mask; rewards[slot] != 0; slot = (slot + 1) & mask) {
+            if (rewards[slot] == reward) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the counts by reward in increasing order of reward, leaving out rewards never counted.
+     */
+    public SortedMap<Integer, Long> toMap() {
+        SortedMap<Integer, Long> map = new TreeMap<>();
+        if (zeros != 0) {
+            map.put(0, zeros);
+        }
+        for (int slot = 0; slot < rewards.length; slot++) {
+            if (rewards[slot] != 0) {
+                map.put(rewards[slot], counts[slot]);
+            }
+        }
+        return map;
+    }
+
+    private void grow() {
+        int[] oldRewards = rewards;
+        long[] oldCounts = counts;
+        rewards = new int[oldRewards.length * 2];
+        counts = new long[oldCounts.length * 2];
+        size = 0;
+        for (int slot = 0; slot < oldRewards.length; slot++) {
+            if (oldRewards[slot] != 0) {
+                add(oldRewards[slot], oldCounts[slot]);
+            }
+        }
+    }
+
+    private static int hash(int reward) {
+        int h = reward * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,49 @@
+package com.halilsahin.scratch;
+
+import java.util.Arrays;
+
+/**
+ * Plain Java implementation of {@link BatchKernel}.
+ *
+ * @author Halil Şahin
+ */
+final class ScalarBatchKernel implements BatchKernel {
+
+    @Override
+    public void count(byte[] cells, int capacity, int n, int symbols, byte[] counts) {
+        Arrays.fill(counts, 0, symbols * capacity, (byte) 0);
+        int cellCount = cells.length / capacity;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int base = cell * capacity;
+            for (int g = 0; g < n; g++) {
+                counts[cells[base + g] * capacity + g]++;
+            }
+        }
+    }
+
+    @Override
+    public void matchAreas(byte[] cells, int capacity, int n, int[] areaOffsets, int[] areaCells, long[] hits) {
+        int words = capacity >>> 6;
+        for (int area = 0; area + 1 < areaOffsets.length; area++) {
+            int first = areaCells[areaOffsets[area]] * capacity;
+            for (int word = 0; word < words && word << 6 < n; word++) {
+                long bits = 0;
+                int end = Math.min(n, (word + 1) << 6);
+                for (int g = word << 6; g < end; g++) {
+                    byte symbol = cells[first + g];
+                    boolean covered = true;
+                    for (int i = areaOffsets[area] + 1; i < areaOffsets[area + 1]; i++) {
+                        if (cells[areaCells[i] * capacity + g] != symbol) {
+                            covered = false;
+                            break;
+                        }
+                    }
+                    if (covered) {
+                        bits |= 1L << g;
+                    }
+                }
+                hits[area * words + word] = bits;
+            }
+        }
+    }
+}
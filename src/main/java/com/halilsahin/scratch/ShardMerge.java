@@ -0,0 +1,75 @@
+package com.halilsahin.scratch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Merges the {@link SimulationShard} files of a distributed simulation into its final report.
+ * <p>
+ * Any number of shard files may be given, including the output of earlier merges. The shards must have been played
+ * with the given configuration, bet and seed, and must not overlap; a warning is logged when spins between the first
+ * and the last shard are missing. The merged shard can be written to a file to be merged again.
+ *
+ * @author Halil Şahin
+ */
+public class ShardMerge {
+
+    private static final Logger LOGGER = Logger.getLogger(ShardMerge.class.getName());
+
+    private ShardMerge() {
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option configOption = new Option("c", "config", true, "config file path the shards were played with");
+        configOption.setRequired(true);
+        options.addOption(configOption);
+        options.addOption(new Option("o", "out", true, "write the merged shard to the given file"));
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+            if (cmd.getArgList().isEmpty()) {
+                throw new ParseException("Missing shard files");
+            }
+        } catch (ParseException e) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: " + e.getMessage(), e);
+            new HelpFormatter().printHelp("shard-merge [options] <shard file>...", options);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            CompiledGame game = CompiledGame.compile(Config.load(cmd.getOptionValue("config")));
+            List<SimulationShard> shards = new ArrayList<>();
+            for (String shardPath : cmd.getArgList()) {
+                shards.add(SimulationShard.read(Paths.get(shardPath)));
+            }
+            SimulationShard merged = SimulationShard.merge(shards);
+            if (!merged.isContiguous()) {
+                LOGGER.warning("Shards do not cover every spin from " + merged.getStart() + " to " + merged.getEnd());
+            }
+            if (cmd.hasOption("out")) {
+                merged.write(Paths.get(cmd.getOptionValue("out")));
+            }
+            LOGGER.info(merged.report(game).toString());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read: " + e.getMessage(), e);
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Cannot merge shards: " + e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Summary of a simulation: return-to-player, hit frequency, volatility, per-combination trigger rates and the
+ * observed distribution of rewards, with normal-approximation confidence intervals.
+ *
+ * @author Halil Şahin
+ */
+@Data
+public class SimulationReport {
+    private static final Logger LOGGER = Logger.getLogger(SimulationReport.class.getName());
+    private static final ObjectWriter WRITER = Json.INDENTED;
+
+    // Two-sided 95% confidence
+    static final double Z_95 = 1.959963984540054;
+
+    private long spins;
+    private int betAmount;
+    private double rtp;
+    private double rtpLow;
+    private double rtpHigh;
+    private double hitRate;
+    private double hitRateLow;
+    private double hitRateHigh;
+    private double volatility;
+    private int maxReward;
+    private Map<String, Double> combinationRates;
+    private Map<String, Double> bonusRates;
+    private Map<Integer, Double> payouts;
+
+    /**
+     * Builds the report of the given statistics.
+     *
+     * @param game       the simulated game
+     * @param statistics the accumulated outcomes
+     * @param betAmount  the betting amount of every spin
+     * @return the report
+     */
+    public static SimulationReport of(CompiledGame game, SpinStatistics statistics, int betAmount) {
+        SimulationReport report = new SimulationReport();
+        long n = statistics.getSpins();
+        report.spins = n;
+        report.betAmount = betAmount;
+        report.maxReward = statistics.getMaxReward();
+        if (n == 0) {
+            report.combinationRates = new LinkedHashMap<>();
+            report.bonusRates = new LinkedHashMap<>();
+            report.payouts = new LinkedHashMap<>();
+            return report;
+        }
+
+        // Returns are measured in multiples of the bet
+        double mean = (double) statistics.getTotalReward() / n;
+        double variance = Math.max(0, statistics.getSumOfSquares() / n - mean * mean);
+        double stdDev = Math.sqrt(variance) / betAmount;
+        double rtpError = Z_95 * stdDev / Math.sqrt(n);
+        report.rtp = mean / betAmount;
+        report.rtpLow = report.rtp - rtpError;
+        report.rtpHigh = report.rtp + rtpError;
+        report.volatility = stdDev;
+
+        report.hitRate = (double) statistics.getHits() / n;
+        double hitError = Z_95 * Math.sqrt(report.hitRate * (1 - report.hitRate) / n);
+        report.hitRateLow = Math.max(0, report.hitRate - hitError);
+        report.hitRateHigh = Math.min(1, report.hitRate + hitError);
+
+        report.combinationRates = new LinkedHashMap<>();
+        for (int i = 0; i < game.getCombinationCount(); i++) {
+            report.combinationRates.put(game.combinationName(i), (double) statistics.getCombinationTriggers(i) / n);
+        }
+        report.bonusRates = new LinkedHashMap<>();
+        for (int symbol : game.bonusSymbols) {
+            report.bonusRates.put(game.symbolName(symbol), (double) statistics.getBonusTriggers(symbol) / n);
+        }
+        report.payouts = new LinkedHashMap<>();
+        statistics.getRewardHistogram().toMap().forEach((reward, count) -> report.payouts.put(reward, (double) count / n));
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Failed to convert report to JSON: " + e.getMessage(), e);
+            return super.toString();
+        }
+    }
+}
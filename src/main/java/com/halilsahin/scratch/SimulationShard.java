@@ -0,0 +1,255 @@
+package com.halilsahin.scratch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Statistics of one part of a simulation that is too large for one machine, stored in a file and merged with the
+ * other parts into the final report.
+ * <p>
+ * A shard plays a range of spin numbers of a seeded simulation; as every spin is played from its own seed (see
+ * {@link Simulator}), shards can run anywhere, in any order and with any thread count. Its file holds the game
+ * fingerprint, the bet, the seed, the ranges played and the exact {@link SpinStatistics}, so merging the shards of a
+ * run in any grouping gives the same statistics as playing the whole run at once. Merging refuses shards of another
+ * game, bet or seed, and shards whose ranges overlap; merged shards can be written and merged again.
+ * <p>
+ * The file starts with an 8-byte magic and a format version, followed by the header and the statistics.
+ *
+ * @author Halil Şahin
+ */
+public final class SimulationShard {
+
+    private static final byte[] MAGIC = "SCRSHARD".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+
+    private final long fingerprint;
+    private final int betAmount;
+    private final long seed;
+    // Sorted, disjoint and non-adjacent [start, end) pairs of spin numbers
+    private final long[] ranges;
+    private final SpinStatistics statistics;
+
+    private SimulationShard(long fingerprint, int betAmount, long seed, long[] ranges, SpinStatistics statistics) {
+        this.fingerprint = fingerprint;
+        this.betAmount = betAmount;
+        this.seed = seed;
+        this.ranges = ranges;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Plays a range of spins of a simulation.
+     *
+     * @param game      the compiled game
+     * @param start     the number of the first spin
+     * @param end       the number after the last spin
+     * @param betAmount the betting amount of every spin
+     * @param seed      the seed of the whole simulation
+     * @param threads   the number of workers
+     * @return the shard
+     */
+    public static SimulationShard run(CompiledGame game, long start, long end, int betAmount, long seed, int threads) {
+        SpinStatistics statistics = new Simulator(game).simulate(start, end, betAmount, seed, threads);
+        long[] ranges = start == end ? new long[0] : new long[]{start, end};
+        return new SimulationShard(game.getFingerprint(), betAmount, seed, ranges, statistics);
+    }
+
+    /**
+     * Merges shards of the same simulation.
+     *
+     * @param shards the shards, at least one
+     * @return a shard covering the spins of all of them
+     * @throws IllegalArgumentException if the shards belong to different games or simulations, or overlap
+     */
+    public static SimulationShard merge(List<SimulationShard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to merge");
+        }
+        SimulationShard first = shards.get(0);
+        List<long[]> ranges = new ArrayList<>();
+        SpinStatistics statistics = null;
+        for (SimulationShard shard : shards) {
+            if (shard.fingerprint != first.fingerprint) {
+                throw new IllegalArgumentException("Shards belong to different configurations");
+            }
+            if (shard.betAmount != first.betAmount || shard.seed != first.seed) {
+                throw new IllegalArgumentException("Shards belong to different simulations: bet " + shard.betAmount
+                        + " and seed " + shard.seed + " differ from bet " + first.betAmount + " and seed " + first.seed);
+            }
+            for (int i = 0; i < shard.ranges.length; i += 2) {
+                ranges.add(new long[]{shard.ranges[i], shard.ranges[i + 1]});
+            }
+            if (statistics == null) {
+                statistics = copy(shard.statistics);
+            } else {
+                statistics.merge(shard.statistics);
+            }
+        }
+
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        long[] merged = new long[ranges.size() * 2];
+        int length = 0;
+        for (long[] range : ranges) {
+            if (length > 0 && range[0] < merged[length - 1]) {
+                throw new IllegalArgumentException("Shards overlap: spins " + range[0] + " to "
+                        + (Math.min(range[1], merged[length - 1]) - 1) + " were played twice");
+            }
+            if (length > 0 && range[0] == merged[length - 1]) {
+                merged[length - 1] = range[1];
+            } else {
+                merged[length++] = range[0];
+                merged[length++] = range[1];
+            }
+        }
+        return new SimulationShard(first.fingerprint, first.betAmount, first.seed, Arrays.copyOf(merged, length),
+                statistics);
+    }
+
+    /**
+     * Summarizes the spins of this shard.
+     *
+     * @param game the game the shard was played with
+     * @return the report
+     * @throws IllegalArgumentException if the shard was played with another configuration
+     */
+    public SimulationReport report(CompiledGame game) {
+        if (game.getFingerprint() != fingerprint) {
+            throw new IllegalArgumentException("Shard was played with another configuration");
+        }
+        return SimulationReport.of(game, statistics, betAmount);
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getBetAmount() {
+        return betAmount;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public SpinStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the number of the first spin played, or 0 if none was.
+     */
+    public long getStart() {
+        return ranges.length == 0 ? 0 : ranges[0];
+    }
+
+    /**
+     * Returns the number after the last spin played, or 0 if none was.
+     */
+    public long getEnd() {
+        return ranges.length == 0 ? 0 : ranges[ranges.length - 1];
+    }
+
+    /**
+     * Returns whether the shard played every spin from {@link #getStart()} to {@link #getEnd()}, i.e. no shard in
+     * between is missing.
+     */
+    public boolean isContiguous() {
+        return ranges.length <= 2;
+    }
+
+    /**
+     * Writes the shard to a file.
+     *
+     * @param path the file to write
+     * @throws IOException if writing fails
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the shard to a stream.
+     *
+     * @param stream the stream to write to, left open
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(fingerprint);
+        out.writeInt(betAmount);
+        out.writeLong(seed);
+        out.writeInt(ranges.length / 2);
+        for (long bound : ranges) {
+            out.writeLong(bound);
+        }
+        statistics.write(out);
+        out.flush();
+    }
+
+    /**
+     * Reads a shard file.
+     *
+     * @param path the file to read
+     * @return the shard
+     * @throws IOException if the file cannot be read or is not a shard of a supported version
+     */
+    public static SimulationShard read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a shard from a stream.
+     *
+     * @param stream the stream to read from, left open
+     * @return the shard
+     * @throws IOException if the stream cannot be read or does not hold a shard of a supported version
+     */
+    public static SimulationShard read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a simulation shard");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported simulation shard version " + version);
+        }
+        long fingerprint = in.readLong();
+        int betAmount = in.readInt();
+        long seed = in.readLong();
+        int rangeCount = in.readInt();
+        if (rangeCount < 0) {
+            throw new IOException("Invalid range count " + rangeCount);
+        }
+        long[] ranges = new long[rangeCount * 2];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = in.readLong();
+        }
+        return new SimulationShard(fingerprint, betAmount, seed, ranges, SpinStatistics.read(in));
+    }
+
+    private static SpinStatistics copy(SpinStatistics statistics) {
+        SpinStatistics copy = SpinStatistics.empty(statistics);
+        copy.merge(statistics);
+        return copy;
+    }
+}
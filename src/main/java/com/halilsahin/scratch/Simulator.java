@@ -0,0 +1,123 @@
+package com.halilsahin.scratch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Monte Carlo simulator measuring return-to-player, hit frequency and volatility of a game.
+ * <p>
+ * Spins are numbered from 0, and spin {@code i} of a simulation with seed {@code s} is played from the spin seed
+ * {@link SplitMix64#valueAt(long, long) SplitMix64.valueAt(s, i)}, the {@code i}-th value of
+ * {@code new SplittableRandom(s)}. Any spin can therefore be replayed on its own with
+ * {@link SpinEngine#spinReward(int, long)}, and any range of spins can be simulated without the ones before it.
+ * A range is split into contiguous parts across workers on a {@link ForkJoinPool}, every worker accumulates into its
+ * own {@link SpinStatistics}, and the accumulators are merged exactly at the end. The outcome depends only on the
+ * seed and the spins played: not on the thread count, nor on how a run is split into {@link SimulationShard shards}.
+ *
+ * @author Halil Şahin
+ */
+public class Simulator {
+
+    private static final int BATCH_SIZE = 4096;
+
+    private final CompiledGame game;
+
+    public Simulator(CompiledGame game) {
+        this.game = game;
+    }
+
+    /**
+     * Runs the simulation and summarizes it.
+     *
+     * @param spins     the total number of spins
+     * @param betAmount the betting amount of every spin
+     * @param seed      the root seed
+     * @param threads   the number of workers
+     * @return the report of the simulation
+     */
+    public SimulationReport run(long spins, int betAmount, long seed, int threads) {
+        return SimulationReport.of(game, simulate(spins, betAmount, seed, threads), betAmount);
+    }
+
+    /**
+     * Runs the simulation of spins 0 to {@code spins - 1}.
+     *
+     * @param spins     the total number of spins
+     * @param betAmount the betting amount of every spin
+     * @param seed      the root seed
+     * @param threads   the number of workers
+     * @return the merged statistics of all workers
+     */
+    public SpinStatistics simulate(long spins, int betAmount, long seed, int threads) {
+        if (spins < 0) {
+            throw new IllegalArgumentException("Spins must not be negative");
+        }
+        return simulate(0, spins, betAmount, seed, threads);
+    }
+
+    /**
+     * Runs the simulation of a range of spins.
+     *
+     * @param start     the number of the first spin
+     * @param end       the number after the last spin
+     * @param betAmount the betting amount of every spin
+     * @param seed      the root seed
+     * @param threads   the number of workers
+     * @return the merged statistics of all workers
+     */
+    public SpinStatistics simulate(long start, long end, int betAmount, long seed, int threads) {
+        if (start < 0 || end < start || threads <= 0) {
+            throw new IllegalArgumentException("Spin range must be ordered and not negative, and threads must be positive");
+        }
+
+        long spins = end - start;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<SpinStatistics>> tasks = new ArrayList<>(threads);
+            long workerStart = start;
+            for (int worker = 0; worker < threads; worker++) {
+                long workerEnd = workerStart + spins / threads + (worker < spins % threads ? 1 : 0);
+                long from = workerStart;
+                tasks.add(pool.submit(() -> simulateWorker(from, workerEnd, betAmount, seed)));
+                workerStart = workerEnd;
+            }
+
+            SpinStatistics statistics = new SpinStatistics(game);
+            for (ForkJoinTask<SpinStatistics> task : tasks) {
+                statistics.merge(task.get());
+            }
+            return statistics;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private SpinStatistics simulateWorker(long start, long end, int betAmount, long seed) {
+        BatchSpinner spinner = new BatchSpinner(game);
+        SpinStatistics statistics = new SpinStatistics(game);
+        long[] seeds = new long[BATCH_SIZE];
+        int[] rewards = new int[BATCH_SIZE];
+        long[] combinations = new long[BATCH_SIZE];
+        int[] bonusSymbols = new int[BATCH_SIZE];
+
+        for (long spin = start; spin < end; spin += BATCH_SIZE) {
+            int n = (int) Math.min(BATCH_SIZE, end - spin);
+            for (int i = 0; i < n; i++) {
+                seeds[i] = SplitMix64.valueAt(seed, spin + i);
+            }
+            spinner.spinBatch(n, betAmount, seeds, rewards, combinations, bonusSymbols);
+            for (int i = 0; i < n; i++) {
+                statistics.record(rewards[i], combinations[i], bonusSymbols[i]);
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,136 @@
+package com.halilsahin.scratch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+
+/**
+ * Evaluator generated at runtime for one compiled game, producing exactly the evaluations of a
+ * {@link RewardCalculator} without interpreting the game's tables.
+ * <p>
+ * The generated class bakes the game into its bytecode: counting is unrolled over the fixed number of cells, the
+ * prefix tree of covered areas becomes nested comparisons of constant cell indices with the multiplier and id of
+ * every combination inlined, standard and bonus symbols are tested against constant bitmasks, and settling the
+ * reward is unrolled over the standard symbols with their reward multipliers and the bonus impacts as constants.
+ * Areas whose combinations can never win are left out. The JIT then sees short, branch-only code without loads of
+ * game tables or an explicit stack. Code is split into methods well below the size HotSpot refuses to compile, so
+ * large paytables do not fall back to the interpreter.
+ * <p>
+ * Classes are defined as hidden classes where the runtime supports them, so they are unloaded together with their
+ * evaluator when a game is replaced; on older runtimes they are defined in the package of this class. Evaluators are
+ * immutable and safe for concurrent use with one {@link RewardCalculator.Evaluation} per thread.
+ *
+ * @author Halil Şahin
+ */
+public abstract class SpecializedEvaluator {
+
+    // Standard and bonus symbols are tested against 64-bit masks
+    static final int MAX_SYMBOLS = Long.SIZE;
+
+    private final CompiledGame game;
+    // Read by the generated settle method, whose count combinations are looked up per count
+    final int[] bestCountCombination;
+    final double[] combinationMultipliers;
+
+    SpecializedEvaluator(CompiledGame game) {
+        this.game = game;
+        this.bestCountCombination = game.bestCountCombination;
+        this.combinationMultipliers = game.combinationMultipliers;
+    }
+
+    /**
+     * Returns whether evaluators can be generated for the given game.
+     */
+    public static boolean isSupported(CompiledGame game) {
+        return game.getSymbolCount() <= MAX_SYMBOLS;
+    }
+
+    /**
+     * Generates and loads the evaluator of a game.
+     *
+     * @param game the compiled game
+     * @return a new evaluator
+     * @throws IllegalArgumentException if the game has more symbols than an evaluator supports
+     * @throws IllegalStateException if the generated class cannot be defined
+     */
+    public static SpecializedEvaluator compile(CompiledGame game) {
+        if (!isSupported(game)) {
+            throw new IllegalArgumentException("Evaluators support at most " + MAX_SYMBOLS + " symbols, the game has "
+                    + game.getSymbolCount());
+        }
+        byte[] bytes = new EvaluatorGenerator(game).generate();
+        try {
+            Class<?> type = define(bytes);
+            return (SpecializedEvaluator) type.getConstructor(CompiledGame.class).newInstance(game);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to define the evaluator: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Defines a class in the package of this class, as a hidden class on runtimes that have them.
+     */
+    private static Class<?> define(byte[] bytes) throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Method defineHiddenClass;
+        Object noOptions;
+        try {
+            Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            noOptions = Array.newInstance(option, 0);
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class,
+                    boolean.class, noOptions.getClass());
+        } catch (ReflectiveOperationException e) {
+            return lookup.defineClass(bytes);
+        }
+        MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, bytes, true, noOptions);
+        return hidden.lookupClass();
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Evaluates a grid, filling the given scratch state exactly as {@link RewardCalculator#evaluate} does.
+     *
+     * @param grid the generated grid
+     * @param betAmount the betting amount
+     * @param evaluation the scratch state to fill, created for the same game
+     * @return the total reward
+     */
+    public int evaluate(Grid grid, int betAmount, RewardCalculator.Evaluation evaluation) {
+        if (grid.size() != game.cells || evaluation.game != game) {
+            throw new IllegalArgumentException("Grid or evaluation does not match the game");
+        }
+        return evaluate(grid.cells, betAmount, evaluation);
+    }
+
+    /**
+     * Evaluates the cells of a grid, implemented by the generated class.
+     *
+     * @throws IllegalArgumentException if the number of cells does not match the game
+     */
+    abstract int evaluate(byte[] cells, int betAmount, RewardCalculator.Evaluation evaluation);
+
+    /**
+     * Offers the combinations of empty covered areas to every standard symbol present, called by the generated class
+     * after the covered areas. Empty areas are rare enough not to be worth generating code for.
+     */
+    final void offerEmptyLines(RewardCalculator.Evaluation evaluation) {
+        for (int combination : game.emptyLineCombinations) {
+            double multiplier = combinationMultipliers[combination];
+            for (int i = 0; i < evaluation.presentCount; i++) {
+                int symbol = evaluation.present[i];
+                if (!game.standard[symbol]) {
+                    continue;
+                }
+                double best = evaluation.linearMultipliers[symbol];
+                if (multiplier > best
+                        || (multiplier == best && combination < evaluation.linearCombinations[symbol])) {
+                    evaluation.linearMultipliers[symbol] = multiplier;
+                    evaluation.linearCombinations[symbol] = combination;
+                }
+            }
+        }
+    }
+}
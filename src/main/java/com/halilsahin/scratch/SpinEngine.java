@@ -0,0 +1,242 @@
+package com.halilsahin.scratch;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe spin engine for serving many concurrent players from one game.
+ * <p>
+ * The engine is immutable after construction and can be shared freely. Random state is never shared between
+ * threads: {@link #spin(int)} draws from {@link ThreadLocalRandom}, a {@link Session} owns a seeded
+ * {@link SplittableRandom} for reproducible play, and {@link #spinReward(int, long)} derives all randomness of a spin
+ * from that spin's own seed so that it can be replayed from an audit record. Grids and evaluation scratch state are
+ * kept per thread, so spins contend on nothing and throughput scales with the number of cores.
+ *
+ * @author Halil Şahin
+ */
+public final class SpinEngine {
+
+    private static final LongSupplier THREAD_LOCAL_RANDOM = () -> ThreadLocalRandom.current().nextLong();
+
+    private final CompiledGame game;
+    private final MatrixGenerator generator;
+    private final RewardCalculator calculator;
+    private final SpinMetrics metrics;
+    private final ThreadLocal<Scratch> scratch;
+
+    public SpinEngine(CompiledGame game) {
+        this(game, (PayoutTable) null, null);
+    }
+
+    /**
+     * Creates an engine that evaluates grids through the given payout table, see {@link PayoutTable}.
+     *
+     * @param game        the compiled game
+     * @param payoutTable the table shared by all threads of the engine
+     */
+    public SpinEngine(CompiledGame game, PayoutTable payoutTable) {
+        this(game, payoutTable, null);
+    }
+
+    /**
+     * Creates an engine with an optional payout table and optional metrics.
+     *
+     * @param game        the compiled game
+     * @param payoutTable the table shared by all threads of the engine, or null to evaluate every grid in full
+     * @param metrics     the metrics to record every spin in, or null to record nothing
+     * @throws IllegalArgumentException if the table or the metrics were created for another game
+     */
+    public SpinEngine(CompiledGame game, PayoutTable payoutTable, SpinMetrics metrics) {
+        this(game, payoutTable != null ? new RewardCalculator(game, payoutTable) : new RewardCalculator(game), metrics);
+    }
+
+    /**
+     * Creates an engine that evaluates grids with the given evaluator generated for its game, with optional metrics.
+     *
+     * @param evaluator the evaluator, see {@link SpecializedEvaluator}
+     * @param metrics   the metrics to record every spin in, or null to record nothing
+     * @throws IllegalArgumentException if the metrics were created for another game
+     */
+    public SpinEngine(SpecializedEvaluator evaluator, SpinMetrics metrics) {
+        this(evaluator.getGame(), new RewardCalculator(evaluator), metrics);
+    }
+
+    private SpinEngine(CompiledGame game, RewardCalculator calculator, SpinMetrics metrics) {
+        if (metrics != null && metrics.getGame() != game) {
+            throw new IllegalArgumentException("Metrics do not match the game");
+        }
+        this.game = game;
+        this.generator = new MatrixGenerator(game, THREAD_LOCAL_RANDOM);
+        this.calculator = calculator;
+        this.metrics = metrics;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(game));
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Returns the metrics spins are recorded in, or null if the engine records none.
+     */
+    public SpinMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Plays one spin with thread-local randomness.
+     *
+     * @param betAmount the betting amount
+     * @return the result of the spin
+     */
+    public RewardCalculator.Result spin(int betAmount) {
+        return spin(betAmount, THREAD_LOCAL_RANDOM);
+    }
+
+    /**
+     * Plays one spin drawing from the given source of random bits, which must not be shared with other threads.
+     *
+     * @param betAmount the betting amount
+     * @param random    supplies uniformly distributed 64-bit values
+     * @return the result of the spin
+     */
+    public RewardCalculator.Result spin(int betAmount, LongSupplier random) {
+        Grid grid = Grid.of(game);
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        play(grid, evaluation, betAmount, random);
+        return calculator.toResult(grid, evaluation);
+    }
+
+    /**
+     * Plays one spin with thread-local randomness without building a result.
+     * The grid and evaluation of the spin stay available through {@link #lastGrid()} and {@link #lastEvaluation()}
+     * until the same thread spins again.
+     *
+     * @param betAmount the betting amount
+     * @return the total reward
+     */
+    public int spinReward(int betAmount) {
+        return spinReward(betAmount, THREAD_LOCAL_RANDOM);
+    }
+
+    /**
+     * Plays one spin drawing from the given source of random bits without building a result.
+     *
+     * @param betAmount the betting amount
+     * @param random    supplies uniformly distributed 64-bit values, not shared with other threads
+     * @return the total reward
+     */
+    public int spinReward(int betAmount, LongSupplier random) {
+        Scratch local = scratch.get();
+        return play(local.grid, local.evaluation, betAmount, random);
+    }
+
+    /**
+     * Plays the spin determined by the given seed: the grid is generated from the bits of
+     * {@code new SplittableRandom(seed)}, so replaying the seed always yields the same grid and reward.
+     *
+     * @param betAmount the betting amount
+     * @param seed      the spin seed
+     * @return the result of the spin
+     */
+    public RewardCalculator.Result spin(int betAmount, long seed) {
+        return spin(betAmount, new SplitMix64(seed));
+    }
+
+    /**
+     * Plays the spin determined by the given seed without building a result, see {@link #spin(int, long)}.
+     *
+     * @param betAmount the betting amount
+     * @param seed      the spin seed
+     * @return the total reward
+     */
+    public int spinReward(int betAmount, long seed) {
+        Scratch local = scratch.get();
+        return spinReward(betAmount, local.seeded.reset(seed));
+    }
+
+    /**
+     * Returns the grid of the calling thread's last {@link #spinReward(int)}.
+     */
+    public Grid lastGrid() {
+        return scratch.get().grid;
+    }
+
+    /**
+     * Returns the evaluation of the calling thread's last {@link #spinReward(int)}.
+     */
+    public RewardCalculator.Evaluation lastEvaluation() {
+        return scratch.get().evaluation;
+    }
+
+    /**
+     * Builds the result of the calling thread's last {@link #spinReward(int)} from its evaluation, without evaluating
+     * the grid again.
+     */
+    public RewardCalculator.Result lastResult() {
+        Scratch local = scratch.get();
+        return calculator.toResult(local.grid, local.evaluation);
+    }
+
+    private int play(Grid grid, RewardCalculator.Evaluation evaluation, int betAmount, LongSupplier random) {
+        if (metrics == null || !metrics.sample()) {
+            generator.generateGrid(grid, random);
+            int reward = calculator.evaluate(grid.cells, betAmount, evaluation);
+            if (metrics != null) {
+                metrics.recordSpin(grid.cells, evaluation);
+            }
+            return reward;
+        }
+        long start = System.nanoTime();
+        generator.generateGrid(grid, random);
+        long generated = System.nanoTime();
+        int reward = calculator.evaluate(grid.cells, betAmount, evaluation);
+        metrics.recordTimings(generated - start, System.nanoTime() - generated);
+        metrics.recordSpin(grid.cells, evaluation);
+        return reward;
+    }
+
+    /**
+     * Opens a session whose spins are reproducible from its seed.
+     *
+     * @param seed the session seed
+     * @return a new session
+     */
+    public Session newSession(long seed) {
+        return new Session(seed);
+    }
+
+    /**
+     * Sequence of spins of one player drawing from a seeded {@link SplittableRandom}.
+     * A session is confined to one thread at a time; different sessions may spin concurrently.
+     */
+    public final class Session {
+        private final SplittableRandom random;
+        private final LongSupplier bits;
+
+        private Session(long seed) {
+            this.random = new SplittableRandom(seed);
+            this.bits = random::nextLong;
+        }
+
+        public RewardCalculator.Result spin(int betAmount) {
+            return SpinEngine.this.spin(betAmount, bits);
+        }
+
+        public int spinReward(int betAmount) {
+            return SpinEngine.this.spinReward(betAmount, bits);
+        }
+    }
+
+    private static final class Scratch {
+        private final Grid grid;
+        private final RewardCalculator.Evaluation evaluation;
+        private final SplitMix64 seeded = new SplitMix64(0);
+
+        private Scratch(CompiledGame game) {
+            this.grid = Grid.of(game);
+            this.evaluation = new RewardCalculator.Evaluation(game);
+        }
+    }
+}
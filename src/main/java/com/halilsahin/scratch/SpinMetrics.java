@@ -0,0 +1,269 @@
+package com.halilsahin.scratch;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the spins played by a {@link SpinEngine}: spins, wins, bonus symbol hits by
+ * symbol, win combination triggers by combination, and the time spent generating, evaluating and serializing.
+ * <p>
+ * Counters are {@link LongAdder}s and histograms are {@link LatencyHistogram}s, so recording from many threads
+ * contends on nothing and never allocates. Counters see every spin. Reading the clock costs about as much as
+ * evaluating a small grid, so only a random sample of spins is timed, one in {@value #DEFAULT_TIMING_SAMPLE} by
+ * default. Metrics are off unless an engine is given an instance; an engine without metrics does not read the
+ * clock. The metrics can be read through JMX after {@link #register(String)}, or as text through {@link #dump()}.
+ *
+ * @author Halil Şahin
+ */
+public final class SpinMetrics implements SpinMetricsMXBean {
+
+    /**
+     * One in how many spins is timed by default.
+     */
+    public static final int DEFAULT_TIMING_SAMPLE = 16;
+
+    private static final String DOMAIN = "com.halilsahin.scratch";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final CompiledGame game;
+    private final int timingSample;
+    private final LongAdder spins = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    // Per symbol ordinal; only bonus symbols are ever incremented
+    private final LongAdder[] bonusHits;
+    private final LongAdder[] combinationTriggers;
+    private final LatencyHistogram generation = new LatencyHistogram();
+    private final LatencyHistogram evaluation = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private volatile ObjectName objectName;
+
+    public SpinMetrics(CompiledGame game) {
+        this(game, DEFAULT_TIMING_SAMPLE);
+    }
+
+    /**
+     * Creates metrics timing a random sample of spins.
+     *
+     * @param game         the game whose spins are recorded
+     * @param timingSample one in how many spins is timed, 1 to time every spin
+     * @throws IllegalArgumentException if the sample is not positive
+     */
+    public SpinMetrics(CompiledGame game, int timingSample) {
+        if (timingSample <= 0) {
+            throw new IllegalArgumentException("Timing sample must be positive");
+        }
+        this.game = game;
+        this.timingSample = timingSample;
+        this.bonusHits = newAdders(game.getSymbolCount());
+        this.combinationTriggers = newAdders(game.getCombinationCount());
+    }
+
+    public CompiledGame getGame() {
+        return game;
+    }
+
+    /**
+     * Decides whether the calling thread should time the spin it is about to play.
+     */
+    boolean sample() {
+        return timingSample == 1 || ThreadLocalRandom.current().nextInt(timingSample) == 0;
+    }
+
+    /**
+     * Records the stage durations of a timed spin.
+     *
+     * @param generationNanos the time spent generating the grid
+     * @param evaluationNanos the time spent evaluating the grid
+     */
+    void recordTimings(long generationNanos, long evaluationNanos) {
+        generation.record(generationNanos);
+        evaluation.record(evaluationNanos);
+    }
+
+    /**
+     * Records a played spin.
+     *
+     * @param cells the cells of the grid
+     * @param spin the evaluation of the grid
+     */
+    void recordSpin(byte[] cells, RewardCalculator.Evaluation spin) {
+        spins.increment();
+        for (int i = 0; i < spin.bonusCount; i++) {
+            bonusHits[cells[spin.bonusCells[i]]].increment();
+        }
+        if (!spin.won) {
+            return;
+        }
+        wins.increment();
+        for (int i = 0; i < spin.presentCount; i++) {
+            int symbol = spin.present[i];
+            if (spin.countCombinations[symbol] >= 0) {
+                combinationTriggers[spin.countCombinations[symbol]].increment();
+            }
+            if (spin.linearCombinations[symbol] >= 0) {
+                combinationTriggers[spin.linearCombinations[symbol]].increment();
+            }
+        }
+    }
+
+    /**
+     * Records the time spent serializing the result of a timed spin.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    void recordSerialization(long nanos) {
+        serialization.record(nanos);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing metrics registered under the same name.
+     *
+     * @param name the name to register under, e.g. the game id
+     * @return the object name of the MBean
+     * @throws JMException if registration fails
+     */
+    public ObjectName register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName registered = new ObjectName(DOMAIN + ":type=SpinMetrics,name=" + ObjectName.quote(name));
+        if (server.isRegistered(registered)) {
+            server.unregisterMBean(registered);
+        }
+        server.registerMBean(this, registered);
+        this.objectName = registered;
+        return registered;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if registered.
+     *
+     * @throws JMException if unregistration fails
+     */
+    public void unregister() throws JMException {
+        ObjectName registered = objectName;
+        if (registered != null) {
+            objectName = null;
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registered)) {
+                server.unregisterMBean(registered);
+            }
+        }
+    }
+
+    @Override
+    public long getSpins() {
+        return spins.sum();
+    }
+
+    @Override
+    public long getWins() {
+        return wins.sum();
+    }
+
+    @Override
+    public Map<String, Long> getBonusHits() {
+        Map<String, Long> hits = new LinkedHashMap<>();
+        for (int symbol = 0; symbol < bonusHits.length; symbol++) {
+            if (!game.isStandard(symbol)) {
+                hits.put(game.symbolName(symbol), bonusHits[symbol].sum());
+            }
+        }
+        return hits;
+    }
+
+    @Override
+    public Map<String, Long> getCombinationTriggers() {
+        Map<String, Long> triggers = new LinkedHashMap<>();
+        for (int combination = 0; combination < combinationTriggers.length; combination++) {
+            triggers.put(game.combinationName(combination), combinationTriggers[combination].sum());
+        }
+        return triggers;
+    }
+
+    @Override
+    public Map<String, Long> getGenerationNanos() {
+        return summary(generation.snapshot());
+    }
+
+    @Override
+    public Map<String, Long> getEvaluationNanos() {
+        return summary(evaluation.snapshot());
+    }
+
+    @Override
+    public Map<String, Long> getSerializationNanos() {
+        return summary(serialization.snapshot());
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format, one sample per line.
+     */
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append("scratch_spins_total ").append(getSpins()).append('\n');
+        text.append("scratch_wins_total ").append(getWins()).append('\n');
+        getBonusHits().forEach((symbol, hits) -> text.append("scratch_bonus_hits_total{symbol=\"")
+                .append(escape(symbol)).append("\"} ").append(hits).append('\n'));
+        getCombinationTriggers().forEach((combination, triggers) -> text
+                .append("scratch_combination_triggers_total{combination=\"").append(escape(combination))
+                .append("\"} ").append(triggers).append('\n'));
+        dump(text, "scratch_generation_nanos", generation.snapshot());
+        dump(text, "scratch_evaluation_nanos", evaluation.snapshot());
+        dump(text, "scratch_serialization_nanos", serialization.snapshot());
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        spins.reset();
+        wins.reset();
+        for (LongAdder hits : bonusHits) {
+            hits.reset();
+        }
+        for (LongAdder triggers : combinationTriggers) {
+            triggers.reset();
+        }
+        generation.reset();
+        evaluation.reset();
+        serialization.reset();
+    }
+
+    private static void dump(StringBuilder text, String name, LatencyHistogram.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(snapshot.valueAt(quantile)).append('\n');
+        }
+        text.append(name).append("_max ").append(snapshot.getMax()).append('\n');
+        text.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+    }
+
+    private static Map<String, Long> summary(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Long> summary = new LinkedHashMap<>();
+        summary.put("count", snapshot.getCount());
+        summary.put("mean", Math.round(snapshot.getMean()));
+        summary.put("p50", snapshot.valueAt(0.5));
+        summary.put("p90", snapshot.valueAt(0.9));
+        summary.put("p99", snapshot.valueAt(0.99));
+        summary.put("p99.9", snapshot.valueAt(0.999));
+        summary.put("max", snapshot.getMax());
+        return summary;
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,50 @@
+package com.halilsahin.scratch;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link SpinMetrics}, as seen through JMX.
+ *
+ * @author Halil Şahin
+ */
+public interface SpinMetricsMXBean {
+
+    long getSpins();
+
+    long getWins();
+
+    /**
+     * Returns how often each bonus symbol appeared in a spin, by symbol name.
+     */
+    Map<String, Long> getBonusHits();
+
+    /**
+     * Returns how often each win combination applied, by combination name.
+     */
+    Map<String, Long> getCombinationTriggers();
+
+    /**
+     * Returns count, mean, p50, p90, p99, p99.9 and max of grid generation in nanoseconds.
+     */
+    Map<String, Long> getGenerationNanos();
+
+    /**
+     * Returns count, mean, p50, p90, p99, p99.9 and max of grid evaluation in nanoseconds.
+     */
+    Map<String, Long> getEvaluationNanos();
+
+    /**
+     * Returns count, mean, p50, p90, p99, p99.9 and max of result serialization in nanoseconds.
+     */
+    Map<String, Long> getSerializationNanos();
+
+    /**
+     * Returns all metrics in a line-based text format.
+     */
+    String dump();
+
+    /**
+     * Clears all counters and histograms.
+     */
+    void reset();
+}
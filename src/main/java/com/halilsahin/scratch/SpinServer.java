@@ -0,0 +1,240 @@
+package com.halilsahin.scratch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Long-running spin server speaking a line-based protocol over local TCP connections or standard input.
+ * <p>
+ * Every request is one line; every response is one NDJSON line:
+ * <ul>
+ *     <li>{@code SPIN <bet> [game]} plays a spin and answers with the result, as written by {@link NdjsonResultWriter};
+ *     the game id is required when serving a {@link ConfigRegistry} and ignored otherwise</li>
+ *     <li>{@code PING} answers {@code {"pong":true}}</li>
+ *     <li>{@code QUIT} closes the connection</li>
+ * </ul>
+ * Requests may be pipelined. A connection answers everything already buffered on its input as one batch and only
+ * flushes once the input runs dry, so a client sending many requests at once gets them back in few writes.
+ * <p>
+ * Each connection is served by its own thread: a virtual thread when the runtime provides them, a pooled platform
+ * thread otherwise. The game is loaded and compiled once, and all connections share one {@link SpinEngine}; with a
+ * registry, every variant has its own shared engine and reloaded variants take effect on the next spin.
+ * <p>
+ * With an {@link AuditLog}, every spin is played from a fresh random seed and recorded, and the records of a batch
+ * are handed to the operating system before its responses are sent. When the engine of a spin has
+ * {@link SpinMetrics}, the time spent encoding sampled responses is recorded there.
+ *
+ * @author Halil Şahin
+ */
+public class SpinServer implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(SpinServer.class.getName());
+    private static final byte[] PONG = "{\"pong\":true}\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SpinEngine engine;
+    private final ConfigRegistry registry;
+    private final AuditLog auditLog;
+    private final ExecutorService executor;
+    private volatile ServerSocket serverSocket;
+
+    public SpinServer(SpinEngine engine) {
+        this(engine, null, null);
+    }
+
+    /**
+     * Creates a server recording every spin in the given audit log.
+     *
+     * @param engine   the engine to spin
+     * @param auditLog the log to append every spin to
+     */
+    public SpinServer(SpinEngine engine, AuditLog auditLog) {
+        this(engine, null, auditLog);
+    }
+
+    /**
+     * Creates a server playing whichever variant of the registry each request names.
+     *
+     * @param registry the registry to take game variants from
+     */
+    public SpinServer(ConfigRegistry registry) {
+        this(null, registry, null);
+    }
+
+    private SpinServer(SpinEngine engine, ConfigRegistry registry, AuditLog auditLog) {
+        this.engine = engine;
+        this.registry = registry;
+        this.auditLog = auditLog;
+        this.executor = newConnectionExecutor();
+    }
+
+    /**
+     * Binds to the given port on the loopback interface and accepts connections in the background.
+     *
+     * @param port the port, or 0 for any free port
+     * @return the bound port
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptLoop);
+        LOGGER.info("Spin server listening on port " + serverSocket.getLocalPort());
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves a single client over the given streams until it quits or the input ends, e.g. standard input and output.
+     *
+     * @param in  the request stream
+     * @param out the response stream
+     * @throws IOException if reading or writing fails
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 64 * 1024);
+        NdjsonResultWriter writer = new NdjsonResultWriter(out, Integer.MAX_VALUE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!handle(line.trim(), writer, out)) {
+                break;
+            }
+            // End of the pipelined batch: answer everything at once
+            if (!reader.ready()) {
+                flushAuditLog();
+                writer.flush();
+            }
+        }
+        flushAuditLog();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Handles one request.
+     *
+     * @return false if the client asked to quit
+     */
+    private boolean handle(String request, NdjsonResultWriter writer, OutputStream out) throws IOException {
+        if (request.isEmpty()) {
+            return true;
+        }
+        if (request.startsWith("SPIN ")) {
+            String[] arguments = request.substring(5).trim().split("\\s+");
+            int betAmount;
+            try {
+                betAmount = Integer.parseInt(arguments[0]);
+            } catch (NumberFormatException e) {
+                writer.writeError("Invalid betting amount: " + arguments[0]);
+                return true;
+            }
+            SpinEngine spinEngine = engine;
+            if (registry != null) {
+                if (arguments.length < 2) {
+                    writer.writeError("Missing game id");
+                    return true;
+                }
+                try {
+                    spinEngine = registry.get(arguments[1]).getEngine();
+                } catch (IOException e) {
+                    writer.writeError(e.getMessage());
+                    return true;
+                }
+            }
+            if (auditLog != null) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                spinEngine.spinReward(betAmount, seed);
+                auditLog.append(seed, betAmount, spinEngine.lastGrid(), spinEngine.lastEvaluation());
+            } else {
+                spinEngine.spinReward(betAmount);
+            }
+            SpinMetrics metrics = spinEngine.getMetrics();
+            if (metrics != null && metrics.sample()) {
+                long start = System.nanoTime();
+                writer.write(spinEngine.lastGrid(), spinEngine.lastEvaluation());
+                metrics.recordSerialization(System.nanoTime() - start);
+            } else {
+                writer.write(spinEngine.lastGrid(), spinEngine.lastEvaluation());
+            }
+            return true;
+        }
+        switch (request) {
+            case "PING":
+                flushAuditLog();
+                writer.flush();
+                out.write(PONG);
+                return true;
+            case "QUIT":
+                return false;
+            default:
+                writer.writeError("Unknown request: " + request);
+                return true;
+        }
+    }
+
+    private void flushAuditLog() throws IOException {
+        if (auditLog != null) {
+            auditLog.flush();
+        }
+    }
+
+    private void acceptLoop() {
+        ServerSocket socket = serverSocket;
+        while (!socket.isClosed()) {
+            try {
+                Socket client = socket.accept();
+                client.setTcpNoDelay(true);
+                executor.execute(() -> serveClient(client));
+            } catch (SocketException e) {
+                // Closed by close()
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to accept connection: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void serveClient(Socket client) {
+        try (Socket socket = client) {
+            serve(socket.getInputStream(), socket.getOutputStream());
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Connection closed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Uses a virtual thread per connection when the runtime supports it (Java 21+), a cached thread pool otherwise.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "spin-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
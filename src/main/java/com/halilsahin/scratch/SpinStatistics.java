@@ -0,0 +1,223 @@
+package com.halilsahin.scratch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Accumulates the outcomes of many spins: counts, reward sums, the {@link RewardHistogram} and how often each
+ * combination and bonus symbol applied. Accumulators of independent workers are combined with
+ * {@link #merge(SpinStatistics)}.
+ * <p>
+ * All sums are kept in integers, the sum of squared rewards in 128 bits, so merging is exact and the result does not
+ * depend on how spins were split across workers, or in which order the accumulators were merged.
+ * <p>
+ * Instances are not thread-safe; give every worker its own.
+ *
+ * @author Halil Şahin
+ */
+public final class SpinStatistics {
+
+    private long spins;
+    private long hits;
+    private long totalReward;
+    // Unsigned 128-bit sum of squared rewards
+    private long sumOfSquaresHigh;
+    private long sumOfSquaresLow;
+    private int maxReward;
+    private final long[] combinationTriggers;
+    private final long[] bonusTriggers;
+    private final RewardHistogram rewards = new RewardHistogram();
+
+    public SpinStatistics(CompiledGame game) {
+        this(game.getCombinationCount(), game.getSymbolCount());
+    }
+
+    private SpinStatistics(int combinations, int symbols) {
+        this.combinationTriggers = new long[combinations];
+        this.bonusTriggers = new long[symbols];
+    }
+
+    /**
+     * Creates an empty accumulator for the same game as the given one.
+     *
+     * @param like an accumulator of the game
+     * @return the empty accumulator
+     */
+    static SpinStatistics empty(SpinStatistics like) {
+        return new SpinStatistics(like.combinationTriggers.length, like.bonusTriggers.length);
+    }
+
+    /**
+     * Records the outcome of one spin.
+     *
+     * @param reward              the total reward
+     * @param winningCombinations the applied combination ids as a bitmask, 0 for a loss
+     * @param bonusSymbol         the ordinal of the bonus symbol in the grid, or -1 if none
+     */
+    public void record(int reward, long winningCombinations, int bonusSymbol) {
+        spins++;
+        totalReward += reward;
+        addSquares(0, (long) reward * reward);
+        rewards.record(reward);
+        if (reward > maxReward) {
+            maxReward = reward;
+        }
+        if (winningCombinations != 0) {
+            hits++;
+            long remaining = winningCombinations;
+            while (remaining != 0) {
+                combinationTriggers[Long.numberOfTrailingZeros(remaining)]++;
+                remaining &= remaining - 1;
+            }
+        }
+        if (bonusSymbol >= 0) {
+            bonusTriggers[bonusSymbol]++;
+        }
+    }
+
+    /**
+     * Adds the outcomes recorded by another accumulator of the same game to this one.
+     *
+     * @param other the accumulator to merge
+     */
+    public void merge(SpinStatistics other) {
+        if (other.combinationTriggers.length != combinationTriggers.length
+                || other.bonusTriggers.length != bonusTriggers.length) {
+            throw new IllegalArgumentException("Statistics belong to different games");
+        }
+        spins += other.spins;
+        hits += other.hits;
+        totalReward += other.totalReward;
+        addSquares(other.sumOfSquaresHigh, other.sumOfSquaresLow);
+        maxReward = Math.max(maxReward, other.maxReward);
+        rewards.merge(other.rewards);
+        for (int i = 0; i < combinationTriggers.length; i++) {
+            combinationTriggers[i] += other.combinationTriggers[i];
+        }
+        for (int i = 0; i < bonusTriggers.length; i++) {
+            bonusTriggers[i] += other.bonusTriggers[i];
+        }
+    }
+
+    public long getSpins() {
+        return spins;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getTotalReward() {
+        return totalReward;
+    }
+
+    /**
+     * Returns the sum of squared rewards, rounded to the nearest double.
+     */
+    public double getSumOfSquares() {
+        // Unsigned conversion of the low word
+        double low = (double) (sumOfSquaresLow >>> 1) * 2 + (sumOfSquaresLow & 1);
+        return sumOfSquaresHigh * 0x1p64 + low;
+    }
+
+    public int getMaxReward() {
+        return maxReward;
+    }
+
+    public long getCombinationTriggers(int combination) {
+        return combinationTriggers[combination];
+    }
+
+    public long getBonusTriggers(int symbol) {
+        return bonusTriggers[symbol];
+    }
+
+    public RewardHistogram getRewardHistogram() {
+        return rewards;
+    }
+
+    /**
+     * Writes the exact state of this accumulator.
+     *
+     * @param out the output to write to
+     * @throws IOException if writing fails
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(spins);
+        out.writeLong(hits);
+        out.writeLong(totalReward);
+        out.writeLong(sumOfSquaresHigh);
+        out.writeLong(sumOfSquaresLow);
+        out.writeInt(maxReward);
+        writeCounts(out, combinationTriggers);
+        writeCounts(out, bonusTriggers);
+        Map<Integer, Long> histogram = rewards.toMap();
+        out.writeInt(histogram.size());
+        for (Map.Entry<Integer, Long> entry : histogram.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    /**
+     * Reads an accumulator written by {@link #write(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the accumulator
+     * @throws IOException if reading fails
+     */
+    static SpinStatistics read(DataInput in) throws IOException {
+        long spins = in.readLong();
+        long hits = in.readLong();
+        long totalReward = in.readLong();
+        long sumOfSquaresHigh = in.readLong();
+        long sumOfSquaresLow = in.readLong();
+        int maxReward = in.readInt();
+        long[] combinationTriggers = readCounts(in);
+        long[] bonusTriggers = readCounts(in);
+        SpinStatistics statistics = new SpinStatistics(combinationTriggers.length, bonusTriggers.length);
+        statistics.spins = spins;
+        statistics.hits = hits;
+        statistics.totalReward = totalReward;
+        statistics.sumOfSquaresHigh = sumOfSquaresHigh;
+        statistics.sumOfSquaresLow = sumOfSquaresLow;
+        statistics.maxReward = maxReward;
+        System.arraycopy(combinationTriggers, 0, statistics.combinationTriggers, 0, combinationTriggers.length);
+        System.arraycopy(bonusTriggers, 0, statistics.bonusTriggers, 0, bonusTriggers.length);
+        int distinctRewards = in.readInt();
+        for (int i = 0; i < distinctRewards; i++) {
+            statistics.rewards.add(in.readInt(), in.readLong());
+        }
+        return statistics;
+    }
+
+    private void addSquares(long high, long low) {
+        long sum = sumOfSquaresLow + low;
+        if (Long.compareUnsigned(sum, sumOfSquaresLow) < 0) {
+            high++;
+        }
+        sumOfSquaresLow = sum;
+        sumOfSquaresHigh += high;
+    }
+
+    private static void writeCounts(DataOutput out, long[] counts) throws IOException {
+        out.writeInt(counts.length);
+        for (long count : counts) {
+            out.writeLong(count);
+        }
+    }
+
+    private static long[] readCounts(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid count table length " + length);
+        }
+        long[] counts = new long[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = in.readLong();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,58 @@
+package com.halilsahin.scratch;
+
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * Resettable source of random bits producing the same sequence as {@code new SplittableRandom(seed).nextLong()}.
+ * <p>
+ * Deterministic spins derive all their randomness from a per-spin seed. Reseeding this generator instead of
+ * allocating a {@link SplittableRandom} for every spin keeps the spin path allocation-free, while anyone holding the
+ * seed can still reproduce the spin with a plain {@code SplittableRandom}. Instances are not thread-safe.
+ *
+ * @author Halil Şahin
+ */
+public final class SplitMix64 implements LongSupplier {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long state;
+
+    public SplitMix64(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Restarts the sequence from the given seed.
+     *
+     * @param seed the seed
+     * @return this generator
+     */
+    public SplitMix64 reset(long seed) {
+        this.state = seed;
+        return this;
+    }
+
+    /**
+     * Returns a value of the sequence of a seed without generating the values before it: {@code valueAt(seed, i)} is
+     * the value {@code nextLong()} returns after {@code i} earlier calls on {@code new SplittableRandom(seed)}.
+     *
+     * @param seed  the seed of the sequence
+     * @param index the position in the sequence, starting at 0
+     * @return the value at that position
+     */
+    public static long valueAt(long seed, long index) {
+        return mix(seed + (index + 1) * GOLDEN_GAMMA);
+    }
+
+    @Override
+    public long getAsLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,281 @@
+package com.halilsahin.scratch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finite pool of pre-printed tickets in a memory-mapped file, handed out one by one in a fixed order.
+ * <p>
+ * A pool is written by {@link TicketPoolBuilder}. The file starts with a {@value #HEADER_SIZE}-byte header followed by
+ * fixed-width big-endian records in dispensing order:
+ * <pre>
+ * header
+ *  offset  size   field
+ *       0     8   magic "SCRTICKT"
+ *       8     4   format version
+ *      12     4   cell count
+ *      16     4   record size
+ *      20     4   betting amount the tickets were scored at
+ *      24     8   fingerprint of the game, see {@link CompiledGame#getFingerprint()}
+ *      32     8   number of tickets
+ *      40     8   total reward of all tickets
+ *      48     8   number of winning tickets
+ *      56     8   seed of the pool
+ *
+ * record
+ *  offset  size   field
+ *       0     8   ticket seed, see {@link SpinEngine#spinReward(int, long)}
+ *       8     4   total reward
+ *      12     8   applied win combination ids, bit i for combination id i
+ *      20     1   ordinal of the bonus symbol in the grid, -1 if none
+ *      21 cells   symbol ordinals of the grid, row-major
+ * </pre>
+ * Since the pool is finite and fully scored in advance, its total payout is known before the first ticket is sold.
+ * <p>
+ * {@link #next()} issues the next ticket by incrementing an {@link AtomicLong} cursor, so any number of threads can
+ * dispense concurrently without locks, and never generates or evaluates anything. The issued ticket is a number; its
+ * reward, combinations and cells are read straight from the mapped file. The cursor lives in memory only: a pool
+ * reopened after a restart resumes from the position passed to {@link #open(Path, long)}.
+ *
+ * @author Halil Şahin
+ */
+public final class TicketPool implements Closeable {
+
+    static final long MAGIC = 0x5343525449434b54L; // "SCRTICKT"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int CELLS_OFFSET = 21;
+    // Records per mapped segment are chosen so that a segment stays below 1 GiB
+    static final int SEGMENT_BYTES = 1 << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int cells;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private final int betAmount;
+    private final long fingerprint;
+    private final long tickets;
+    private final long totalReward;
+    private final long winningTickets;
+    private final long seed;
+    private final AtomicLong cursor;
+
+    private TicketPool(FileChannel channel, ByteBuffer header, long issued) throws IOException {
+        this.channel = channel;
+        this.cells = header.getInt(12);
+        this.recordSize = header.getInt(16);
+        this.betAmount = header.getInt(20);
+        this.fingerprint = header.getLong(24);
+        this.tickets = header.getLong(32);
+        this.totalReward = header.getLong(40);
+        this.winningTickets = header.getLong(48);
+        this.seed = header.getLong(56);
+        this.recordsPerSegment = recordsPerSegment(recordSize);
+        this.segments = map(channel, FileChannel.MapMode.READ_ONLY, tickets, recordSize);
+        this.cursor = new AtomicLong(issued);
+    }
+
+    /**
+     * Opens a pool for dispensing from its first ticket.
+     *
+     * @param path the pool file
+     * @return the pool
+     * @throws IOException if the file cannot be read or is not a complete ticket pool
+     */
+    public static TicketPool open(Path path) throws IOException {
+        return open(path, 0);
+    }
+
+    /**
+     * Opens a pool for dispensing, skipping the tickets already issued.
+     *
+     * @param path   the pool file
+     * @param issued the number of tickets issued before
+     * @return the pool
+     * @throws IOException if the file cannot be read or is not a complete ticket pool
+     */
+    public static TicketPool open(Path path, long issued) throws IOException {
+        if (issued < 0) {
+            throw new IllegalArgumentException("Issued tickets must not be negative: " + issued);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Not a ticket pool: " + path);
+                }
+            }
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("Not a ticket pool: " + path);
+            }
+            int version = header.getInt(8);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported ticket pool version " + version + " in " + path);
+            }
+            int cells = header.getInt(12);
+            long tickets = header.getLong(32);
+            if (cells <= 0 || header.getInt(16) != CELLS_OFFSET + cells || tickets < 0
+                    || channel.size() != HEADER_SIZE + tickets * (CELLS_OFFSET + cells)) {
+                throw new IOException("Corrupt or incomplete ticket pool " + path);
+            }
+            return new TicketPool(channel, header, issued);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Issues the next ticket.
+     *
+     * @return the number of the ticket, or -1 if the pool is sold out
+     */
+    public long next() {
+        long ticket = cursor.getAndIncrement();
+        return ticket < tickets ? ticket : -1;
+    }
+
+    /**
+     * Returns the number of tickets issued so far.
+     */
+    public long getIssued() {
+        return Math.min(cursor.get(), tickets);
+    }
+
+    /**
+     * Returns the number of tickets left.
+     */
+    public long getRemaining() {
+        return tickets - getIssued();
+    }
+
+    /**
+     * Returns the seed the given ticket was generated from, which reproduces it with
+     * {@link SpinEngine#spinReward(int, long)}.
+     */
+    public long seed(long ticket) {
+        return segment(ticket).getLong(offset(ticket));
+    }
+
+    /**
+     * Returns the total reward of the given ticket.
+     */
+    public int reward(long ticket) {
+        return segment(ticket).getInt(offset(ticket) + 8);
+    }
+
+    /**
+     * Returns the applied combination ids of the given ticket as a bitmask, bit {@code i} for combination id {@code i}.
+     */
+    public long combinationMask(long ticket) {
+        return segment(ticket).getLong(offset(ticket) + 12);
+    }
+
+    /**
+     * Returns the ordinal of the bonus symbol of the given ticket, or -1 if it has none.
+     */
+    public int bonusSymbol(long ticket) {
+        return segment(ticket).get(offset(ticket) + 20);
+    }
+
+    /**
+     * Returns the ordinal of the symbol at the given row-major cell of a ticket.
+     */
+    public int cell(long ticket, int cell) {
+        if (cell < 0 || cell >= cells) {
+            throw new IllegalArgumentException("Cell out of range: " + cell);
+        }
+        return segment(ticket).get(offset(ticket) + CELLS_OFFSET + cell);
+    }
+
+    /**
+     * Copies the grid of a ticket.
+     *
+     * @param ticket the ticket number
+     * @param grid   the grid to overwrite, sized for the game
+     */
+    public void copyGrid(long ticket, Grid grid) {
+        if (grid.size() != cells) {
+            throw new IllegalArgumentException("Grid size does not match the ticket pool");
+        }
+        MappedByteBuffer segment = segment(ticket);
+        int offset = offset(ticket) + CELLS_OFFSET;
+        for (int cell = 0; cell < cells; cell++) {
+            grid.cells[cell] = segment.get(offset + cell);
+        }
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int getBetAmount() {
+        return betAmount;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getTickets() {
+        return tickets;
+    }
+
+    /**
+     * Returns the sum of the rewards of all tickets in the pool.
+     */
+    public long getTotalReward() {
+        return totalReward;
+    }
+
+    public long getWinningTickets() {
+        return winningTickets;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long ticket) {
+        if (ticket < 0 || ticket >= tickets) {
+            throw new IllegalArgumentException("No such ticket: " + ticket);
+        }
+        return segments[(int) (ticket / recordsPerSegment)];
+    }
+
+    private int offset(long ticket) {
+        return (int) (ticket % recordsPerSegment) * recordSize;
+    }
+
+    static int recordsPerSegment(int recordSize) {
+        return SEGMENT_BYTES / recordSize;
+    }
+
+    /**
+     * Maps the records of a pool in segments of whole records.
+     */
+    static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long tickets, int recordSize)
+            throws IOException {
+        int perSegment = recordsPerSegment(recordSize);
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((tickets + perSegment - 1) / perSegment)];
+        for (int i = 0; i < segments.length; i++) {
+            long first = (long) i * perSegment;
+            long records = Math.min(perSegment, tickets - first);
+            segments[i] = channel.map(mode, HEADER_SIZE + first * recordSize, records * recordSize);
+        }
+        return segments;
+    }
+}
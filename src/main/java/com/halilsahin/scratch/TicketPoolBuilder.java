@@ -0,0 +1,229 @@
+package com.halilsahin.scratch;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates, scores and shuffles a finite {@link TicketPool} and writes it to a memory-mapped file.
+ * <p>
+ * Ticket {@code i} of a pool with seed {@code s} is generated from the spin seed
+ * {@link SplitMix64#valueAt(long, long) SplitMix64.valueAt(s, i)}, exactly like spin {@code i} of a
+ * {@link Simulator simulation} with the same seed, and evaluated with {@link RewardCalculator} at the pool's betting
+ * amount. The dispensing order is a seeded Fisher-Yates shuffle of the ticket numbers. Workers fill contiguous slices
+ * of the file in dispensing order in parallel, so the file is written sequentially and the pool depends only on its
+ * seed, not on the thread count. The header, including the magic, is written last: a file left behind by a failed
+ * build is never mistaken for a pool.
+ *
+ * @author Halil Şahin
+ */
+public class TicketPoolBuilder {
+
+    private static final Logger LOGGER = Logger.getLogger(TicketPoolBuilder.class.getName());
+    // The shuffle keeps a permutation of all tickets in an int array
+    private static final long MAX_TICKETS = Integer.MAX_VALUE - 8;
+
+    private final CompiledGame game;
+
+    public TicketPoolBuilder(CompiledGame game) {
+        if (game.getCombinationCount() > Long.SIZE) {
+            throw new IllegalArgumentException("Ticket pools support at most " + Long.SIZE + " win combinations");
+        }
+        this.game = game;
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option configOption = new Option("c", "config", true, "config file path");
+        configOption.setRequired(true);
+        options.addOption(configOption);
+        Option betOption = new Option("b", "betting-amount", true, "betting amount the tickets are sold at");
+        betOption.setRequired(true);
+        options.addOption(betOption);
+        Option ticketsOption = new Option("n", "tickets", true, "number of tickets in the pool");
+        ticketsOption.setRequired(true);
+        options.addOption(ticketsOption);
+        Option outOption = new Option("o", "out", true, "ticket pool file to write");
+        outOption.setRequired(true);
+        options.addOption(outOption);
+        options.addOption(new Option(null, "seed", true, "pool seed"));
+        options.addOption(new Option(null, "threads", true, "generation threads, defaults to the number of processors"));
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: " + e.getMessage(), e);
+            new HelpFormatter().printHelp("ticket-pool-builder", options);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            CompiledGame game = CompiledGame.compile(Config.load(cmd.getOptionValue("config")));
+            long tickets = Long.parseLong(cmd.getOptionValue("tickets"));
+            int betAmount = Integer.parseInt(cmd.getOptionValue("betting-amount"));
+            long seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : System.nanoTime();
+            int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads"))
+                    : Runtime.getRuntime().availableProcessors();
+            Path path = Paths.get(cmd.getOptionValue("out"));
+
+            new TicketPoolBuilder(game).build(path, tickets, betAmount, seed, threads);
+            try (TicketPool pool = TicketPool.open(path)) {
+                LOGGER.info(String.format("Wrote %d tickets to %s: total reward %d (RTP %.6f), %d winning tickets",
+                        pool.getTickets(), path, pool.getTotalReward(),
+                        pool.getTickets() == 0 ? 0 : (double) pool.getTotalReward() / pool.getTickets() / betAmount,
+                        pool.getWinningTickets()));
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to build ticket pool: " + e.getMessage(), e);
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Invalid argument: " + e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Builds a pool, replacing the file if it exists.
+     *
+     * @param path      the pool file
+     * @param tickets   the number of tickets
+     * @param betAmount the betting amount the tickets are scored at
+     * @param seed      the pool seed
+     * @param threads   the number of workers
+     * @throws IOException if writing the file fails
+     */
+    public void build(Path path, long tickets, int betAmount, long seed, int threads) throws IOException {
+        if (tickets < 0 || tickets > MAX_TICKETS || threads <= 0) {
+            throw new IllegalArgumentException("Tickets must be between 0 and " + MAX_TICKETS
+                    + " and threads must be positive");
+        }
+        int[] order = shuffle((int) tickets, new SplittableRandom(seed).split());
+        int recordSize = TicketPool.CELLS_OFFSET + game.cells;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer[] segments = TicketPool.map(channel, FileChannel.MapMode.READ_WRITE, tickets, recordSize);
+            long[] totals = fill(segments, order, recordSize, betAmount, seed, threads);
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(TicketPool.HEADER_SIZE);
+            header.putLong(TicketPool.MAGIC).putInt(TicketPool.FORMAT_VERSION).putInt(game.cells).putInt(recordSize)
+                    .putInt(betAmount).putLong(game.getFingerprint()).putLong(tickets).putLong(totals[0])
+                    .putLong(totals[1]).putLong(seed);
+            header.flip();
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Fills the records in parallel.
+     *
+     * @return the total reward and the number of winning tickets
+     */
+    private long[] fill(MappedByteBuffer[] segments, int[] order, int recordSize, int betAmount, long seed,
+                        int threads) {
+        int perSegment = TicketPool.recordsPerSegment(recordSize);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<long[]>> tasks = new ArrayList<>(threads);
+            int start = 0;
+            for (int worker = 0; worker < threads; worker++) {
+                int end = start + order.length / threads + (worker < order.length % threads ? 1 : 0);
+                int from = start;
+                tasks.add(pool.submit(() -> fillSlots(segments, perSegment, recordSize, order, from, end, betAmount,
+                        seed)));
+                start = end;
+            }
+            long[] totals = new long[2];
+            for (ForkJoinTask<long[]> task : tasks) {
+                long[] worker = task.get();
+                totals[0] += worker[0];
+                totals[1] += worker[1];
+            }
+            return totals;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ticket pool build was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ticket pool build failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long[] fillSlots(MappedByteBuffer[] segments, int perSegment, int recordSize, int[] order, int from,
+                             int to, int betAmount, long seed) {
+        MatrixGenerator generator = new MatrixGenerator(game);
+        RewardCalculator calculator = new RewardCalculator(game);
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        SplitMix64 random = new SplitMix64(0);
+        Grid grid = Grid.of(game);
+        long totalReward = 0;
+        long winningTickets = 0;
+        for (int slot = from; slot < to; slot++) {
+            long ticketSeed = SplitMix64.valueAt(seed, order[slot]);
+            generator.generateGrid(grid, random.reset(ticketSeed));
+            int reward = calculator.evaluate(grid.cells, betAmount, evaluation);
+            totalReward += reward;
+            if (evaluation.won) {
+                winningTickets++;
+            }
+
+            // Absolute puts leave the shared buffer's position alone
+            ByteBuffer segment = segments[slot / perSegment];
+            int offset = (slot % perSegment) * recordSize;
+            segment.putLong(offset, ticketSeed);
+            segment.putInt(offset + 8, reward);
+            segment.putLong(offset + 12, evaluation.won ? evaluation.winningCombinationMask() : 0L);
+            segment.put(offset + 20, (byte) evaluation.bonusSymbol);
+            for (int cell = 0; cell < grid.cells.length; cell++) {
+                segment.put(offset + TicketPool.CELLS_OFFSET + cell, grid.cells[cell]);
+            }
+        }
+        return new long[]{totalReward, winningTickets};
+    }
+
+    /**
+     * Returns the ticket numbers in dispensing order.
+     */
+    private static int[] shuffle(int tickets, SplittableRandom random) {
+        int[] order = new int[tickets];
+        for (int i = 0; i < tickets; i++) {
+            order[i] = i;
+        }
+        for (int i = tickets - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+}
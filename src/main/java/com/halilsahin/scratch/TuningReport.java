@@ -0,0 +1,55 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Outcome of a {@link WeightTuner} run: the figures the tuned weights reach on the tuning sample, the factors applied
+ * to the original weights and, once validated, an independent simulation of the tuned configuration.
+ *
+ * @author Halil Şahin
+ */
+@Data
+public class TuningReport {
+    private static final Logger LOGGER = Logger.getLogger(TuningReport.class.getName());
+    private static final ObjectWriter WRITER = Json.INDENTED;
+
+    private WeightTuner.Targets targets;
+    private int spins;
+    private int betAmount;
+    private int generations;
+    private long candidates;
+    private double elapsedMillis;
+    private double millisPerCandidate;
+    // Whether the return-to-player and hit rate targets were met within the tolerance on the sample
+    private boolean converged;
+    private double rtp;
+    private double hitRate;
+    // Null when no target was set, or when the sample has no max win
+    private Double maxWinOdds;
+    // 95% confidence interval of the max-win odds on the sample, null when no target was set; the high end is also
+    // null when the sample has no max win
+    private Double maxWinOddsLow;
+    private Double maxWinOddsHigh;
+    // Factor of every weighted symbol, keyed by "standard:" or "bonus:" and the symbol name
+    private Map<String, Double> factors;
+    private SimulationReport validation;
+    @JsonIgnore
+    private Config config;
+
+    @Override
+    public String toString() {
+        try {
+            return WRITER.writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Failed to convert report to JSON: " + e.getMessage(), e);
+            return super.toString();
+        }
+    }
+}
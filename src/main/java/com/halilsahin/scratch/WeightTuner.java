@@ -0,0 +1,674 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Data;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fits the symbol weights of a configuration to a target return-to-player, and optionally to a target hit frequency
+ * and to the odds of a large win.
+ * <p>
+ * Every weighted symbol has one scale factor, applied to its weight in every cell distribution, and every bonus symbol
+ * has one for the bonus distribution; reward multipliers, combinations and cells without a distribution are left
+ * alone. The search is a (1+&lambda;) evolution strategy over the logarithms of the factors: each generation perturbs
+ * the best factors so far into {@code candidates} new ones, evaluates them in parallel and keeps the best, widening
+ * the step after an improvement and narrowing it otherwise.
+ * <p>
+ * Candidates are compared with common random numbers: the uniform values of all sample spins are drawn once, and every
+ * candidate turns the same values into grids by inverting its own cumulative weights. Two candidates therefore differ
+ * only by their weights, not by sampling noise, which makes small steps meaningful with a modest sample, and a
+ * candidate costs one pass over the sample with the already compiled {@link RewardCalculator}. Candidates are scored
+ * with the integer weights they would be written with, so the reported figures are exactly those of the emitted
+ * configuration on the sample. The sample does not depend on the thread count, and neither does the result.
+ * <p>
+ * Since the fit is made on a fixed sample, {@link #validate(TuningReport, long, int)} checks the tuned configuration
+ * with an independent {@link Simulator} run.
+ *
+ * @author Halil Şahin
+ */
+public class WeightTuner {
+
+    private static final Logger LOGGER = Logger.getLogger(WeightTuner.class.getName());
+    private static final ObjectWriter CONFIG_WRITER = Json.MAPPER.copy()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .writer(SerializationFeature.INDENT_OUTPUT);
+
+    // Rescaled weights are written with the largest weight of a distribution at this value
+    static final int RESOLUTION = 10_000;
+    private static final double INITIAL_STEP = 0.5;
+    private static final double MIN_STEP = 1e-3;
+    private static final double MAX_STEP = 2;
+    // Keeps factors that do not matter for the targets close to 1
+    private static final double REGULARIZATION = 1e-6;
+    // The search goes on until the max wins are within this many standard deviations of their expected count
+    private static final double MAX_WIN_DEVIATIONS = 2;
+
+    private final Config config;
+    private final CompiledGame game;
+    private final int betAmount;
+    private final int spins;
+    private final long seed;
+    private final List<String> parameters = new ArrayList<>();
+    private final List<Distribution> distributions = new ArrayList<>();
+    // Symbol ordinals of every distribution
+    private final int[][] symbols;
+    // Distribution index of every cell
+    private final int[] cellDistributions;
+    // Index of the bonus distribution, or -1 if the game places no bonus symbol
+    private final int bonusDistribution;
+    // Uniform 64-bit values of the sample: one per cell, then two for the bonus symbol, for every spin
+    private final long[] sample;
+    private final int stride;
+
+    /**
+     * Prepares a tuner and draws its sample.
+     *
+     * @param config    the configuration to tune, left unchanged
+     * @param betAmount the betting amount of every spin
+     * @param spins     the number of sample spins every candidate is evaluated on
+     * @param seed      the seed of the sample and the search
+     * @throws IllegalArgumentException if the configuration is inconsistent or the sample is empty
+     */
+    public WeightTuner(Config config, int betAmount, int spins, long seed) {
+        this.game = CompiledGame.compile(config);
+        if (spins <= 0) {
+            throw new IllegalArgumentException("Sample spins must be positive: " + spins);
+        }
+        this.config = config;
+        this.betAmount = betAmount;
+        this.spins = spins;
+        this.seed = seed;
+
+        Map<String, Integer> parameterIndex = new LinkedHashMap<>();
+        Map<Integer, Integer> cellIndex = new LinkedHashMap<>();
+        Config.Probabilities probabilities = config.getProbabilities();
+        List<Config.StandardSymbolProbability> standard = probabilities != null
+                && probabilities.getStandardSymbols() != null ? probabilities.getStandardSymbols() : Collections.emptyList();
+        for (Config.StandardSymbolProbability probability : standard) {
+            int cell = probability.getRow() * game.columns + probability.getColumn();
+            // The first distribution declared for a cell wins, as in CompiledGame
+            if (!cellIndex.containsKey(cell)) {
+                Distribution distribution = Distribution.of(game, probability.getSymbols(), "standard:", parameterIndex);
+                if (distribution != null) {
+                    cellIndex.put(cell, distributions.size());
+                    distributions.add(distribution);
+                }
+            }
+        }
+        int uniform = -1;
+        this.cellDistributions = new int[game.cells];
+        for (int cell = 0; cell < game.cells; cell++) {
+            Integer index = cellIndex.get(cell);
+            if (index == null) {
+                if (uniform < 0) {
+                    uniform = distributions.size();
+                    distributions.add(Distribution.uniform(game));
+                }
+                index = uniform;
+            }
+            cellDistributions[cell] = index;
+        }
+        Distribution bonus = Distribution.of(game, probabilities != null && probabilities.getBonusSymbols() != null
+                ? probabilities.getBonusSymbols().getSymbols() : null, "bonus:", parameterIndex);
+        this.bonusDistribution = bonus == null ? -1 : distributions.size();
+        if (bonus != null) {
+            distributions.add(bonus);
+        }
+        parameters.addAll(parameterIndex.keySet());
+        this.symbols = new int[distributions.size()][];
+        for (int d = 0; d < symbols.length; d++) {
+            symbols[d] = distributions.get(d).symbols;
+        }
+
+        this.stride = game.cells + 2;
+        if ((long) spins * stride > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many sample spins: " + spins);
+        }
+        this.sample = new long[spins * stride];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < sample.length; i++) {
+            sample[i] = random.nextLong();
+        }
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        Option configOption = new Option("c", "config", true, "config file path");
+        configOption.setRequired(true);
+        options.addOption(configOption);
+        Option betOption = new Option("b", "betting-amount", true, "betting amount of every spin");
+        betOption.setRequired(true);
+        options.addOption(betOption);
+        Option outOption = new Option("o", "out", true, "tuned config file to write");
+        outOption.setRequired(true);
+        options.addOption(outOption);
+        Option rtpOption = new Option(null, "rtp", true, "target return-to-player, in multiples of the bet");
+        rtpOption.setRequired(true);
+        options.addOption(rtpOption);
+        options.addOption(new Option(null, "hit-rate", true, "target fraction of winning spins"));
+        options.addOption(new Option(null, "max-win", true, "multiple of the bet that counts as a max win"));
+        options.addOption(new Option(null, "max-win-odds", true, "target odds of a max win, as 1 in N spins"));
+        options.addOption(new Option(null, "spins", true, "sample spins per candidate, default 20000"));
+        options.addOption(new Option(null, "generations", true, "maximum number of generations, default 200"));
+        options.addOption(new Option(null, "candidates", true, "candidates per generation, default 16"));
+        options.addOption(new Option(null, "tolerance", true,
+                "accepted relative error of the rtp and hit rate targets, default 0.002"));
+        options.addOption(new Option(null, "validation-spins", true,
+                "spins of the validating simulation, default 1000000, 0 to skip"));
+        options.addOption(new Option(null, "seed", true, "seed of the sample and the search"));
+        options.addOption(new Option(null, "threads", true, "evaluation threads, defaults to the number of processors"));
+
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            LOGGER.log(Level.SEVERE, "Parsing command line options failed: " + e.getMessage(), e);
+            new HelpFormatter().printHelp("weight-tuner", options);
+            System.exit(1);
+            return;
+        }
+
+        try {
+            Config config = Config.load(cmd.getOptionValue("config"));
+            Targets targets = new Targets();
+            targets.setRtp(Double.parseDouble(cmd.getOptionValue("rtp")));
+            if (cmd.hasOption("hit-rate")) {
+                targets.setHitRate(Double.parseDouble(cmd.getOptionValue("hit-rate")));
+            }
+            if (cmd.hasOption("max-win") != cmd.hasOption("max-win-odds")) {
+                throw new IllegalArgumentException("--max-win and --max-win-odds go together");
+            }
+            if (cmd.hasOption("max-win")) {
+                targets.setMaxWinMultiple(Double.parseDouble(cmd.getOptionValue("max-win")));
+                targets.setMaxWinOdds(Double.parseDouble(cmd.getOptionValue("max-win-odds")));
+            }
+            int betAmount = Integer.parseInt(cmd.getOptionValue("betting-amount"));
+            int spins = Integer.parseInt(cmd.getOptionValue("spins", "20000"));
+            int generations = Integer.parseInt(cmd.getOptionValue("generations", "200"));
+            int candidates = Integer.parseInt(cmd.getOptionValue("candidates", "16"));
+            double tolerance = Double.parseDouble(cmd.getOptionValue("tolerance", "0.002"));
+            long validationSpins = Long.parseLong(cmd.getOptionValue("validation-spins", "1000000"));
+            long seed = cmd.hasOption("seed") ? Long.parseLong(cmd.getOptionValue("seed")) : System.nanoTime();
+            int threads = cmd.hasOption("threads") ? Integer.parseInt(cmd.getOptionValue("threads"))
+                    : Runtime.getRuntime().availableProcessors();
+
+            WeightTuner tuner = new WeightTuner(config, betAmount, spins, seed);
+            TuningReport report = tuner.tune(targets, generations, candidates, tolerance, threads);
+            if (validationSpins > 0) {
+                tuner.validate(report, validationSpins, threads);
+            }
+            write(report.getConfig(), Paths.get(cmd.getOptionValue("out")));
+            LOGGER.info("Tuning report:\n" + report);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to tune configuration: " + e.getMessage(), e);
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.SEVERE, "Invalid argument: " + e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Searches for weights that meet the targets on the sample.
+     *
+     * @param targets     the targets to fit
+     * @param generations the maximum number of generations
+     * @param candidates  the number of candidates per generation
+     * @param tolerance   the relative error accepted for the return-to-player and hit rate, ending the search early
+     *                    once both are met and the count of max wins is within two standard deviations of its
+     *                    expected count on the sample; a sample rarely resolves max-win odds that closely, so they
+     *                    are reported as an interval and do not count towards convergence
+     * @param threads     the number of candidates evaluated at once
+     * @return the report, holding the tuned configuration
+     */
+    public TuningReport tune(Targets targets, int generations, int candidates, double tolerance, int threads) {
+        targets.check();
+        if (generations < 0 || candidates <= 0 || threads <= 0 || !(tolerance >= 0)) {
+            throw new IllegalArgumentException("Generations must not be negative, tolerance must not be negative and "
+                    + "candidates and threads must be positive");
+        }
+        long start = System.nanoTime();
+        Random random = new Random(new SplittableRandom(seed).split().nextLong());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Candidate best = new Candidate(new double[parameters.size()]);
+            best.evaluate(targets);
+            double step = INITIAL_STEP;
+            int generation = 0;
+            long evaluated = 1;
+            while (generation < generations && !(best.meets(targets, tolerance) && best.maxWinsPlausible(targets))) {
+                generation++;
+                List<Candidate> offspring = new ArrayList<>(candidates);
+                for (int i = 0; i < candidates; i++) {
+                    double[] theta = best.theta.clone();
+                    for (int p = 0; p < theta.length; p++) {
+                        theta[p] += step * random.nextGaussian();
+                    }
+                    offspring.add(new Candidate(theta));
+                }
+                evaluateAll(pool, offspring, targets);
+                evaluated += candidates;
+
+                // Ties go to the earlier candidate, which keeps the search independent of the thread count
+                Candidate challenger = offspring.get(0);
+                for (Candidate candidate : offspring) {
+                    if (candidate.loss < challenger.loss) {
+                        challenger = candidate;
+                    }
+                }
+                if (challenger.loss < best.loss) {
+                    best = challenger;
+                    step = Math.min(MAX_STEP, step * 1.5);
+                } else {
+                    step = Math.max(MIN_STEP, step * 0.8);
+                }
+            }
+            double elapsedMillis = (System.nanoTime() - start) / 1e6;
+            LOGGER.fine(String.format("Tuned in %d generations, %d candidates, %.1f ms", generation, evaluated,
+                    elapsedMillis));
+            return best.report(targets, tolerance, generation, evaluated, elapsedMillis);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Simulates the tuned configuration of a report on fresh spins, independent of the tuning sample, and stores the
+     * result in the report.
+     *
+     * @param report  the report of {@link #tune(Targets, int, int, double, int)}
+     * @param spins   the number of spins to simulate
+     * @param threads the number of simulation threads
+     * @return the simulation report
+     */
+    public SimulationReport validate(TuningReport report, long spins, int threads) {
+        SimulationReport validation = new Simulator(CompiledGame.compile(report.getConfig()))
+                .run(spins, betAmount, new SplittableRandom(seed).split().split().nextLong(), threads);
+        report.setValidation(validation);
+        return validation;
+    }
+
+    /**
+     * Writes a configuration as JSON, leaving out unset fields.
+     *
+     * @param config the configuration
+     * @param path   the file to write
+     * @throws IOException if writing fails
+     */
+    public static void write(Config config, Path path) throws IOException {
+        Files.write(path, CONFIG_WRITER.writeValueAsBytes(config));
+    }
+
+    private void evaluateAll(ForkJoinPool pool, List<Candidate> candidates, Targets targets) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            tasks.add(pool.submit(() -> candidate.evaluate(targets)));
+        }
+        try {
+            for (ForkJoinTask<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Tuning was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Candidate evaluation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Targets of a tuning run. Only the return-to-player is required; a max win needs both its multiple and its odds.
+     */
+    @Data
+    public static class Targets {
+        private double rtp;
+        private Double hitRate;
+        private Double maxWinMultiple;
+        private Double maxWinOdds;
+
+        void check() {
+            if (!(rtp > 0)) {
+                throw new IllegalArgumentException("Target RTP must be positive: " + rtp);
+            }
+            if (hitRate != null && !(hitRate > 0 && hitRate < 1)) {
+                throw new IllegalArgumentException("Target hit rate must be between 0 and 1: " + hitRate);
+            }
+            if ((maxWinMultiple == null) != (maxWinOdds == null)) {
+                throw new IllegalArgumentException("A max win target needs both a multiple and odds");
+            }
+            if (maxWinOdds != null && !(maxWinMultiple > 0 && maxWinOdds > 1)) {
+                throw new IllegalArgumentException("Max win multiple must be positive and odds above 1");
+            }
+        }
+    }
+
+    /**
+     * One weight map of the configuration, with its positive entries only.
+     */
+    private static final class Distribution {
+        final Map<String, Integer> source;
+        final String[] names;
+        final int[] symbols;
+        final int[] weights;
+        // Parameter of every entry, -1 for the fixed uniform distribution
+        final int[] parameters;
+
+        private Distribution(Map<String, Integer> source, String[] names, int[] symbols, int[] weights,
+                             int[] parameters) {
+            this.source = source;
+            this.names = names;
+            this.symbols = symbols;
+            this.weights = weights;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Returns the distribution of a weight map, or null if it has no positive weight.
+         */
+        static Distribution of(CompiledGame game, Map<String, Integer> source, String kind,
+                               Map<String, Integer> parameterIndex) {
+            if (source == null) {
+                return null;
+            }
+            List<String> names = new ArrayList<>();
+            List<Integer> weights = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : source.entrySet()) {
+                if (entry.getValue() != null && entry.getValue() > 0) {
+                    names.add(entry.getKey());
+                    weights.add(entry.getValue());
+                }
+            }
+            if (names.isEmpty()) {
+                return null;
+            }
+            int n = names.size();
+            int[] symbols = new int[n];
+            int[] values = new int[n];
+            int[] parameters = new int[n];
+            for (int i = 0; i < n; i++) {
+                symbols[i] = game.ordinalOf(names.get(i));
+                values[i] = weights.get(i);
+                parameters[i] = parameterIndex.computeIfAbsent(kind + names.get(i), key -> parameterIndex.size());
+            }
+            return new Distribution(source, names.toArray(new String[0]), symbols, values, parameters);
+        }
+
+        static Distribution uniform(CompiledGame game) {
+            int n = game.standardSymbols.length;
+            if (n == 0) {
+                throw new IllegalArgumentException("Cells without a distribution need standard symbols");
+            }
+            int[] weights = new int[n];
+            int[] parameters = new int[n];
+            Arrays.fill(weights, 1);
+            Arrays.fill(parameters, -1);
+            return new Distribution(null, null, game.standardSymbols.clone(), weights, parameters);
+        }
+
+        /**
+         * Returns the integer weights under the given factors: the original weights if every factor is 1, otherwise
+         * the scaled weights rescaled so that the largest is {@link #RESOLUTION}, and never below 1.
+         */
+        int[] scale(double[] theta) {
+            boolean unchanged = true;
+            double[] scaled = new double[weights.length];
+            double max = 0;
+            for (int i = 0; i < weights.length; i++) {
+                double factor = parameters[i] < 0 ? 0 : theta[parameters[i]];
+                unchanged &= factor == 0;
+                scaled[i] = weights[i] * Math.exp(factor);
+                max = Math.max(max, scaled[i]);
+            }
+            if (unchanged) {
+                return weights;
+            }
+            int[] result = new int[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                result[i] = (int) Math.max(1, Math.round(scaled[i] / max * RESOLUTION));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Factors under evaluation, with the integer weights they stand for and their figures on the sample.
+     */
+    private final class Candidate {
+        final double[] theta;
+        final int[][] weights;
+        double rtp;
+        double hitRate;
+        long maxWins;
+        double loss;
+
+        Candidate(double[] theta) {
+            this.theta = theta;
+            this.weights = new int[distributions.size()][];
+            for (int d = 0; d < weights.length; d++) {
+                weights[d] = distributions.get(d).scale(theta);
+            }
+        }
+
+        /**
+         * Plays the sample with this candidate's weights.
+         */
+        void evaluate(Targets targets) {
+            double[][] cumulative = new double[weights.length][];
+            for (int d = 0; d < weights.length; d++) {
+                cumulative[d] = cumulative(weights[d]);
+            }
+            RewardCalculator calculator = new RewardCalculator(game);
+            RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+            byte[] cells = new byte[game.cells];
+            long maxWinReward = targets.getMaxWinMultiple() == null ? Long.MAX_VALUE
+                    : (long) Math.ceil(targets.getMaxWinMultiple() * betAmount);
+            long totalReward = 0;
+            long hits = 0;
+            long maxWinCount = 0;
+            for (int spin = 0, base = 0; spin < spins; spin++, base += stride) {
+                for (int cell = 0; cell < cells.length; cell++) {
+                    int d = cellDistributions[cell];
+                    cells[cell] = (byte) symbols[d][pick(cumulative[d], sample[base + cell])];
+                }
+                if (bonusDistribution >= 0) {
+                    // Same draw of the bonus cell as MatrixGenerator
+                    int cell = (int) (((sample[base + cells.length] >>> 32) * cells.length) >>> 32);
+                    cells[cell] = (byte) symbols[bonusDistribution][
+                            pick(cumulative[bonusDistribution], sample[base + cells.length + 1])];
+                }
+                int reward = calculator.evaluate(cells, betAmount, evaluation);
+                totalReward += reward;
+                if (evaluation.won) {
+                    hits++;
+                }
+                if (reward >= maxWinReward) {
+                    maxWinCount++;
+                }
+            }
+            this.rtp = (double) totalReward / spins / betAmount;
+            this.hitRate = (double) hits / spins;
+            this.maxWins = maxWinCount;
+
+            double error = rtp / targets.getRtp() - 1;
+            double loss = error * error;
+            if (targets.getHitRate() != null) {
+                error = hitRate / targets.getHitRate() - 1;
+                loss += error * error;
+            }
+            if (targets.getMaxWinOdds() != null) {
+                // Compared in log space, with half a win added so that no max win at all is still ranked
+                error = Math.log((maxWinCount + 0.5) / spins * targets.getMaxWinOdds());
+                loss += error * error;
+            }
+            for (double factor : theta) {
+                loss += REGULARIZATION * factor * factor;
+            }
+            this.loss = loss;
+        }
+
+        /**
+         * Returns whether the return-to-player and hit rate are within the tolerance of their targets.
+         */
+        boolean meets(Targets targets, double tolerance) {
+            if (Math.abs(rtp / targets.getRtp() - 1) > tolerance) {
+                return false;
+            }
+            return targets.getHitRate() == null || Math.abs(hitRate / targets.getHitRate() - 1) <= tolerance;
+        }
+
+        /**
+         * Returns whether the count of max wins is within sampling error of the count the target odds give.
+         */
+        boolean maxWinsPlausible(Targets targets) {
+            if (targets.getMaxWinOdds() == null) {
+                return true;
+            }
+            double expected = spins / targets.getMaxWinOdds();
+            return Math.abs(maxWins - expected) <= MAX_WIN_DEVIATIONS * Math.sqrt(expected);
+        }
+
+        TuningReport report(Targets targets, double tolerance, int generations, long evaluated, double elapsedMillis) {
+            TuningReport report = new TuningReport();
+            report.setTargets(targets);
+            report.setSpins(spins);
+            report.setBetAmount(betAmount);
+            report.setGenerations(generations);
+            report.setCandidates(evaluated);
+            report.setElapsedMillis(elapsedMillis);
+            report.setMillisPerCandidate(elapsedMillis / evaluated);
+            report.setConverged(meets(targets, tolerance));
+            report.setRtp(rtp);
+            report.setHitRate(hitRate);
+            if (targets.getMaxWinOdds() != null) {
+                report.setMaxWinOdds(maxWins == 0 ? null : (double) spins / maxWins);
+                report.setMaxWinOddsLow(spins / poissonBound(maxWins, SimulationReport.Z_95));
+                report.setMaxWinOddsHigh(maxWins == 0 ? null : spins / poissonBound(maxWins, -SimulationReport.Z_95));
+            }
+            Map<String, Double> factors = new LinkedHashMap<>();
+            for (int p = 0; p < parameters.size(); p++) {
+                factors.put(parameters.get(p), Math.exp(theta[p]));
+            }
+            report.setFactors(factors);
+            report.setConfig(tunedConfig());
+            return report;
+        }
+
+        /**
+         * Returns a copy of the configuration with this candidate's weights.
+         */
+        Config tunedConfig() {
+            Config tuned = copy(config);
+            Config.Probabilities probabilities = tuned.getProbabilities();
+            if (probabilities == null) {
+                return tuned;
+            }
+            // The copy keeps the order of the lists and maps, so distributions are found at the same positions
+            Map<Map<String, Integer>, Integer> indices = new IdentityHashMap<>();
+            for (int d = 0; d < distributions.size(); d++) {
+                if (distributions.get(d).source != null) {
+                    indices.put(distributions.get(d).source, d);
+                }
+            }
+            if (config.getProbabilities().getStandardSymbols() != null) {
+                List<Config.StandardSymbolProbability> original = config.getProbabilities().getStandardSymbols();
+                List<Config.StandardSymbolProbability> copied = probabilities.getStandardSymbols();
+                for (int i = 0; i < original.size(); i++) {
+                    Integer d = indices.get(original.get(i).getSymbols());
+                    if (d != null) {
+                        copied.get(i).setSymbols(weightMap(d));
+                    }
+                }
+            }
+            if (bonusDistribution >= 0) {
+                probabilities.getBonusSymbols().setSymbols(weightMap(bonusDistribution));
+            }
+            return tuned;
+        }
+
+        /**
+         * Returns the weight map of a distribution, keeping the order and the zero weights of the original.
+         */
+        private Map<String, Integer> weightMap(int d) {
+            Distribution distribution = distributions.get(d);
+            Map<String, Integer> map = new LinkedHashMap<>(distribution.source);
+            for (int i = 0; i < distribution.names.length; i++) {
+                map.put(distribution.names[i], weights[d][i]);
+            }
+            return map;
+        }
+    }
+
+    private static double[] cumulative(int[] weights) {
+        double[] cumulative = new double[weights.length];
+        double total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum / total;
+        }
+        cumulative[weights.length - 1] = 1;
+        return cumulative;
+    }
+
+    /**
+     * Inverts cumulative probabilities at the uniform value of the given random bits.
+     */
+    private static int pick(double[] cumulative, long bits) {
+        double u = (bits >>> 11) * 0x1.0p-53;
+        int i = 0;
+        while (u >= cumulative[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns a confidence bound of the mean of a Poisson count by the Wilson-Hilferty approximation, an upper bound
+     * for positive {@code z} and a lower one for negative {@code z}.
+     */
+    static double poissonBound(long count, double z) {
+        if (z < 0 && count == 0) {
+            return 0;
+        }
+        double k = z < 0 ? count : count + 1;
+        double root = 1 - 1 / (9 * k) + z / (3 * Math.sqrt(k));
+        return k * root * root * root;
+    }
+
+    private static Config copy(Config config) {
+        try {
+            return Json.MAPPER.readValue(Json.MAPPER.writeValueAsBytes(config), Config.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to copy configuration: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AliasSamplerTest {
+
+    @Test
+    void testFrequenciesFollowWeights() {
+        int[] outcomes = {10, 20, 30, 40, 50, 60};
+        int[] weights = {1, 2, 3, 4, 5, 6};
+        assertFrequencies(outcomes, weights);
+    }
+
+    @Test
+    void testSkewedWeights() {
+        int[] outcomes = {7, 8, 9};
+        int[] weights = {1000000, 1, 999};
+        assertFrequencies(outcomes, weights);
+    }
+
+    @Test
+    void testSingleOutcome() {
+        AliasSampler sampler = new AliasSampler(new int[]{3}, new int[]{5});
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(3, sampler.sample(random.nextLong()));
+        }
+        assertEquals(1.0, sampler.probability(0));
+    }
+
+    @Test
+    void testInvalidWeightsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new int[0], new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new int[]{1, 2}, new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> new AliasSampler(new int[]{1, 2}, new int[]{1, 0}));
+    }
+
+    private static void assertFrequencies(int[] outcomes, int[] weights) {
+        AliasSampler sampler = new AliasSampler(outcomes, weights);
+        long total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+
+        int draws = 2_000_000;
+        int[] counts = new int[outcomes.length];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < draws; i++) {
+            int outcome = sampler.sample(random.nextLong());
+            for (int j = 0; j < outcomes.length; j++) {
+                if (outcomes[j] == outcome) {
+                    counts[j]++;
+                }
+            }
+        }
+
+        for (int j = 0; j < outcomes.length; j++) {
+            double p = (double) weights[j] / total;
+            assertEquals(p, sampler.probability(j), 1e-12);
+            // Five standard deviations of the binomial count
+            double tolerance = 5 * Math.sqrt(draws * p * (1 - p)) + 1;
+            assertEquals(draws * p, counts[j], tolerance, "outcome " + outcomes[j]);
+        }
+    }
+}
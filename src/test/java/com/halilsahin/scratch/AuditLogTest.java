@@ -0,0 +1,105 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuditLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testSeededSpinsAreReproducible() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        assertEquals(game.getFingerprint(), CompiledGame.compile(Config.load("src/main/resources/config.json")).getFingerprint());
+
+        SplitMix64 bits = new SplitMix64(42);
+        SplittableRandom reference = new SplittableRandom(42);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(reference.nextLong(), bits.getAsLong());
+        }
+
+        SpinEngine engine = new SpinEngine(game);
+        assertEquals(engine.spin(100, 7L), engine.spin(100, 7L));
+        int reward = engine.spinReward(100, 7L);
+        assertEquals(engine.spin(100, 7L).getReward(), reward);
+    }
+
+    @Test
+    void testReplaysLog() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        SpinEngine engine = new SpinEngine(game);
+        Path path = directory.resolve("spins.audit");
+
+        SplittableRandom seeds = new SplittableRandom(1);
+        try (AuditLog log = AuditLog.open(path, game)) {
+            spin(engine, log, seeds, 60_000);
+        }
+        // Reopening appends behind the existing records
+        try (AuditLog log = AuditLog.open(path, game)) {
+            assertEquals(60_000, log.records());
+            spin(engine, log, seeds, 1_000);
+        }
+        assertEquals(AuditLog.HEADER_SIZE + 61_000L * (AuditLog.CELLS_OFFSET + 9), Files.size(path));
+
+        AuditReplay replay = new AuditReplay(Collections.singletonList(game));
+        ReplayReport report = replay.replay(path);
+        assertEquals(61_000, report.getRecords());
+        assertEquals(61_000, report.getVerified());
+        assertTrue(report.isClean());
+
+        // Tamper with the reward of record 1234
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ByteBuffer reward = ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE);
+            reward.flip();
+            channel.write(reward, AuditLog.HEADER_SIZE + 1234L * (AuditLog.CELLS_OFFSET + 9) + 20);
+        }
+        report = replay.replay(path);
+        assertFalse(report.isClean());
+        assertEquals(1, report.getMismatches());
+        assertEquals(Collections.singletonList(1234L), report.getMismatchedRecords());
+    }
+
+    @Test
+    void testReportsUnknownVersionsAndCutsTornRecords() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        Config changed = Config.load("src/main/resources/config.json");
+        changed.getSymbols().get("A").setRewardMultiplier(50);
+        CompiledGame other = CompiledGame.compile(changed);
+        assertNotEquals(game.getFingerprint(), other.getFingerprint());
+
+        Path path = directory.resolve("spins.audit");
+        try (AuditLog log = AuditLog.open(path, game)) {
+            spin(new SpinEngine(game), log, new SplittableRandom(2), 10);
+        }
+        Files.write(path, new byte[5], StandardOpenOption.APPEND);
+        try (AuditLog log = AuditLog.open(path, game)) {
+            assertEquals(10, log.records());
+        }
+
+        ReplayReport report = new AuditReplay(Collections.singletonList(other)).replay(path);
+        assertEquals(10, report.getRecords());
+        assertEquals(10, report.getUnknownVersions());
+    }
+
+    private static void spin(SpinEngine engine, AuditLog log, SplittableRandom seeds, int spins) throws Exception {
+        for (int i = 0; i < spins; i++) {
+            long seed = seeds.nextLong();
+            engine.spinReward(100, seed);
+            log.append(seed, 100, engine.lastGrid(), engine.lastEvaluation());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchEvaluatorTest {
+
+    @Test
+    void testBackendsMatchCalculator() throws Exception {
+        CompiledGame small = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        CompiledGame large = CompiledGame.compile(TestConfigs.paylines(10, 60, 3));
+        assertTrue(BatchEvaluator.isSupported(large));
+        for (CompiledGame game : new CompiledGame[]{small, large}) {
+            assertMatchesCalculator(new BatchEvaluator(game, 300, false), game);
+            if (BatchEvaluator.isVectorAvailable()) {
+                assertMatchesCalculator(new BatchEvaluator(game, 300, true), game);
+            }
+        }
+    }
+
+    @Test
+    void testVectorBackendIsUsedWhenAvailable() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        assertEquals(BatchEvaluator.isVectorAvailable() ? "vector" : "scalar", new BatchEvaluator(game, 64).getBackend());
+        assertEquals("scalar", new BatchEvaluator(game, 64, false).getBackend());
+    }
+
+    @Test
+    void testGeneratesSameGridsAsGenerator() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        BatchEvaluator evaluator = new BatchEvaluator(game, 100);
+        MatrixGenerator generator = new MatrixGenerator(game);
+        evaluator.generate(100, generator, new SplittableRandom(5)::nextLong);
+
+        SplittableRandom random = new SplittableRandom(5);
+        Grid expected = Grid.of(game);
+        Grid actual = Grid.of(game);
+        for (int g = 0; g < 100; g++) {
+            generator.generateGrid(expected, random::nextLong);
+            evaluator.getGrid(g, actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static void assertMatchesCalculator(BatchEvaluator evaluator, CompiledGame game) {
+        RewardCalculator calculator = new RewardCalculator(game);
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        Random random = new Random(11);
+        int[] rewards = new int[evaluator.getCapacity()];
+        long[] combinations = new long[evaluator.getCapacity()];
+        int[] bonusSymbols = new int[evaluator.getCapacity()];
+        Grid grid = Grid.of(game);
+        for (int batch = 0; batch < 20; batch++) {
+            // Partial batches, few distinct symbols for frequent wins and sometimes several bonus cells
+            int n = 1 + random.nextInt(evaluator.getCapacity());
+            Grid[] grids = new Grid[n];
+            for (int g = 0; g < n; g++) {
+                int distinct = 1 + random.nextInt(3);
+                grids[g] = Grid.of(game);
+                for (int cell = 0; cell < grid.size(); cell++) {
+                    grids[g].set(cell, random.nextInt(12) == 0
+                            ? game.bonusSymbols[random.nextInt(game.bonusSymbols.length)]
+                            : game.standardSymbols[random.nextInt(distinct)]);
+                }
+                evaluator.setGrid(g, grids[g]);
+            }
+
+            evaluator.evaluate(n, 100, rewards, combinations, bonusSymbols);
+            for (int g = 0; g < n; g++) {
+                int reward = calculator.evaluate(grids[g], 100, evaluation);
+                assertEquals(reward, rewards[g]);
+                assertEquals(evaluation.isWin() ? evaluation.winningCombinationMask() : 0, combinations[g]);
+                assertEquals(evaluation.getBonusSymbol(), bonusSymbols[g]);
+            }
+        }
+    }
+}
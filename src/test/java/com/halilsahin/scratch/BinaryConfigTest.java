@@ -0,0 +1,86 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinaryConfigTest {
+
+    @Test
+    void testRoundTripPreservesConfigAndFingerprint(@TempDir Path directory) throws Exception {
+        Config config = Config.load("src/main/resources/config.json");
+        // Nulls and an empty covered area survive the round trip as well
+        Map<String, Config.WinCombination> combinations = new LinkedHashMap<>(config.getWinCombinations());
+        Config.WinCombination empty = new Config.WinCombination();
+        empty.setRewardMultiplier(1.5);
+        empty.setWhen("linear_symbols");
+        empty.setGroup("empty_area");
+        empty.setCoveredAreas(List.of(List.of()));
+        combinations.put("empty_area", empty);
+        config.setWinCombinations(combinations);
+
+        Path file = directory.resolve("config.bin");
+        BinaryConfig.write(config, file);
+        Config loaded = Config.load(file.toString());
+
+        assertEquals(config, loaded);
+        assertEquals(CompiledGame.compile(config).getFingerprint(), CompiledGame.compile(loaded).getFingerprint());
+    }
+
+    @Test
+    void testBuildOutputMatchesJson() throws Exception {
+        // Written by the compile-config execution in the process-classes phase
+        Config json = Config.load("src/main/resources/config.json");
+        Config binary = Config.load("target/classes/config.bin");
+        assertEquals(json, binary);
+    }
+
+    @Test
+    void testBinaryLoadLeavesJacksonUninitialized() throws Exception {
+        // A fresh JVM, since other tests in this one have long initialized Jackson
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-verbose:class", "-cp", System.getProperty("java.class.path"), LoadBinary.class.getName(),
+                "target/classes/config.bin")
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+        assertTrue(output.contains("Loaded 3x3"), output);
+        assertTrue(output.contains(BinaryConfig.class.getName()), output);
+        assertFalse(output.contains("com.fasterxml.jackson.databind"), output);
+    }
+
+    @Test
+    void testRejectsUnknownVersions() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryConfig.write(Config.load("src/main/resources/config.json"), out);
+        byte[] bytes = out.toByteArray();
+        bytes[11] = 99;
+        assertThrows(IOException.class, () -> BinaryConfig.read(new ByteArrayInputStream(bytes)));
+        assertThrows(IOException.class, () -> BinaryConfig.read(new ByteArrayInputStream(new byte[16])));
+    }
+
+    /**
+     * Loads and compiles a configuration, run in its own JVM by {@link #testBinaryLoadLeavesJacksonUninitialized}.
+     */
+    static final class LoadBinary {
+        public static void main(String[] args) throws IOException {
+            CompiledGame game = CompiledGame.compile(Config.load(args[0]));
+            System.out.println("Loaded " + game.getRows() + "x" + game.getColumns());
+        }
+    }
+}
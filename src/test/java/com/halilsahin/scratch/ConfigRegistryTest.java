@@ -0,0 +1,171 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigRegistryTest {
+
+    private static final Path CONFIG = Paths.get("src/main/resources/config.json");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testLoadsOnceAndReloads() throws Exception {
+        Files.copy(CONFIG, directory.resolve("classic.json"));
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4)) {
+            ConfigRegistry.Version first = registry.get("classic");
+            assertSame(first, registry.get("classic"));
+            assertEquals(3, first.getGame().getRows());
+
+            writeVariant("classic", 4);
+            assertTrue(registry.reload("classic"));
+            ConfigRegistry.Version second = registry.get("classic");
+            assertNotSame(first, second);
+            assertTrue(second.getNumber() > first.getNumber());
+            assertEquals(4, second.getGame().getRows());
+            // The previous version stays usable by whoever still holds it
+            assertEquals(3, first.getEngine().spin(100).getMatrix().length);
+
+            Files.write(directory.resolve("classic.json"), "{ broken".getBytes(StandardCharsets.UTF_8));
+            assertFalse(registry.reload("classic"));
+            assertSame(second, registry.get("classic"));
+
+            assertThrows(IOException.class, () -> registry.get("missing"));
+            assertThrows(IOException.class, () -> registry.get("../classic"));
+        }
+    }
+
+    @Test
+    void testCreatesEnginesThroughFactory() throws Exception {
+        Files.copy(CONFIG, directory.resolve("classic.json"));
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4,
+                game -> new SpinEngine(game, null, new SpinMetrics(game)))) {
+            ConfigRegistry.Version first = registry.get("classic");
+            assertSame(first.getGame(), first.getEngine().getMetrics().getGame());
+
+            writeVariant("classic", 4);
+            assertTrue(registry.reload("classic"));
+            ConfigRegistry.Version second = registry.get("classic");
+            assertSame(second.getGame(), second.getEngine().getMetrics().getGame());
+        }
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws Exception {
+        for (String gameId : new String[]{"a", "b", "c"}) {
+            Files.copy(CONFIG, directory.resolve(gameId + ".json"));
+        }
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 2)) {
+            registry.get("a");
+            registry.get("b");
+            registry.get("a");
+            registry.get("c");
+            assertEquals(2, registry.loadedGameIds().size());
+            assertTrue(registry.loadedGameIds().contains("a"));
+            assertTrue(registry.loadedGameIds().contains("c"));
+        }
+    }
+
+    @Test
+    void testWatchesDirectory() throws Exception {
+        Files.copy(CONFIG, directory.resolve("classic.json"));
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4)) {
+            registry.start();
+            ConfigRegistry.Version first = registry.get("classic");
+            writeVariant("classic", 5);
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (registry.get("classic") == first && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(5, registry.get("classic").getGame().getRows());
+        }
+    }
+
+    @Test
+    void testServesVariantsByGameId() throws Exception {
+        Files.copy(CONFIG, directory.resolve("small.json"));
+        writeVariant("large", 4);
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new SpinServer(registry).serve(new ByteArrayInputStream(
+                    "SPIN 10 small\nSPIN 10 large\nSPIN 10\nSPIN 10 other\n".getBytes(StandardCharsets.US_ASCII)), out);
+            String[] lines = out.toString(StandardCharsets.US_ASCII.name()).split("\n");
+            assertEquals(4, lines.length);
+            assertTrue(lines[0].startsWith("{\"matrix\":[[") && lines[0].split("\\],\\[").length == 3);
+            assertTrue(lines[1].split("\\],\\[").length == 4);
+            assertTrue(lines[2].contains("\"error\""));
+            assertTrue(lines[3].contains("\"error\""));
+        }
+    }
+
+    @Test
+    void testChangesDuringLoadsAreNotLost() throws Exception {
+        Files.copy(CONFIG, directory.resolve("classic.json"));
+        AtomicInteger loads = new AtomicInteger();
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4) {
+            @Override
+            Version load(String gameId) throws IOException {
+                Version version = super.load(gameId);
+                // The file changes after the first read, and the change is reported before that version is stored
+                if (loads.incrementAndGet() == 1) {
+                    writeVariant(gameId, 4);
+                    assertFalse(reload(gameId));
+                }
+                return version;
+            }
+        }) {
+            assertEquals(4, registry.get("classic").getGame().getRows());
+            assertEquals(2, loads.get());
+        }
+
+        // A slow reload finishing after a later one does not replace the newer version
+        loads.set(0);
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4) {
+            @Override
+            Version load(String gameId) throws IOException {
+                Version version = super.load(gameId);
+                if (loads.incrementAndGet() == 2) {
+                    writeVariant(gameId, 5);
+                    assertTrue(reload(gameId));
+                }
+                return version;
+            }
+        }) {
+            ConfigRegistry.Version first = registry.get("classic");
+            assertFalse(registry.reload("classic"));
+            assertEquals(5, registry.get("classic").getGame().getRows());
+            assertTrue(registry.get("classic").getNumber() > first.getNumber());
+        }
+    }
+
+    /**
+     * Writes a copy of the shipped configuration with a different grid size, which the shipped probabilities allow
+     * because cells without a distribution fall back to a uniform one.
+     */
+    private void writeVariant(String gameId, int size) throws IOException {
+        String json = new String(Files.readAllBytes(CONFIG), StandardCharsets.UTF_8)
+                .replace("\"columns\": 3", "\"columns\": " + size)
+                .replace("\"rows\": 3", "\"rows\": " + size);
+        Path target = directory.resolve(gameId + ".json");
+        Path temporary = directory.resolve(gameId + ".tmp");
+        Files.write(temporary, json.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, target, java.nio.file.StandardCopyOption.REPLACE_EXISTING, java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+}
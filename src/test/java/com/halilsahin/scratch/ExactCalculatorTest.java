@@ -0,0 +1,142 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExactCalculatorTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testProbabilitiesSumToOne() {
+        ExactReport report = new ExactCalculator(game).calculate(100);
+        double total = 0;
+        for (double probability : report.getPayouts().values()) {
+            total += probability;
+        }
+        assertEquals(1.0, total, 1e-9);
+        assertEquals(9L * 1679616L, report.getGrids());
+    }
+
+    @Test
+    void testAgreesWithSimulation() {
+        ExactReport exact = new ExactCalculator(game).calculate(100);
+        SimulationReport simulated = new Simulator(game).run(2_000_000, 100, 3L, 4);
+
+        // Five standard errors either way
+        double rtpError = 5 * simulated.getVolatility() / Math.sqrt(simulated.getSpins());
+        assertEquals(exact.getRtp(), simulated.getRtp(), rtpError);
+        double hitError = 5 * Math.sqrt(exact.getHitRate() * (1 - exact.getHitRate()) / simulated.getSpins());
+        assertEquals(exact.getHitRate(), simulated.getHitRate(), hitError);
+        assertTrue(exact.getPayouts().containsKey(simulated.getMaxReward()));
+    }
+
+    @Test
+    void testMatchesEvaluationOfEveryGrid() throws Exception {
+        // Four symbols of which C and D are interchangeable, and an area covered by any symbol present
+        Config config = Config.load("src/main/resources/config.json");
+        config.getSymbols().get("D").setRewardMultiplier(2.5);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("A", 1);
+        weights.put("B", 2);
+        weights.put("C", 3);
+        weights.put("D", 3);
+        for (Config.StandardSymbolProbability probability : config.getProbabilities().getStandardSymbols()) {
+            probability.setSymbols(weights);
+        }
+        Config.WinCombination anywhere = new Config.WinCombination();
+        anywhere.setWhen("linear_symbols");
+        anywhere.setGroup("anywhere");
+        anywhere.setRewardMultiplier(1.5);
+        anywhere.setCoveredAreas(Collections.singletonList(Collections.emptyList()));
+        Map<String, Config.WinCombination> combinations = new LinkedHashMap<>(config.getWinCombinations());
+        combinations.put("same_symbols_anywhere", anywhere);
+        config.setWinCombinations(combinations);
+        CompiledGame small = CompiledGame.compile(config);
+
+        ExactReport report = new ExactCalculator(small).calculate(100);
+        Map<Integer, Double> expected = enumerate(small, 100);
+        assertEquals(expected.keySet(), report.getPayouts().keySet());
+        for (Map.Entry<Integer, Double> payout : expected.entrySet()) {
+            assertEquals(payout.getValue(), report.getPayouts().get(payout.getKey()), 1e-12);
+        }
+        assertTrue(report.getStates() < report.getGrids());
+    }
+
+    @Test
+    void testLargerGridAgreesWithSimulation() throws Exception {
+        // 16 cells of six uniformly drawn symbols, about 10^13 grids merged into well under a million states
+        Config config = Config.load("src/main/resources/config.json");
+        config.setRows(4);
+        config.setColumns(4);
+        config.getProbabilities().setStandardSymbols(Collections.emptyList());
+        CompiledGame large = CompiledGame.compile(config);
+
+        ExactReport exact = new ExactCalculator(large).calculate(100);
+        assertTrue(exact.getGrids() > 1e12);
+        SimulationReport simulated = new Simulator(large).run(500_000, 100, 5L, 2);
+        double rtpError = 5 * simulated.getVolatility() / Math.sqrt(simulated.getSpins());
+        assertEquals(exact.getRtp(), simulated.getRtp(), rtpError);
+    }
+
+    @Test
+    void testStateLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new ExactCalculator(game, 1000).calculate(100));
+    }
+
+    /**
+     * Evaluates every grid the generator can produce, bonus cell included, and sums the probabilities per reward.
+     */
+    private static Map<Integer, Double> enumerate(CompiledGame game, int betAmount) {
+        RewardCalculator calculator = new RewardCalculator(game);
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        Map<Integer, Double> payouts = new TreeMap<>();
+        byte[] cells = new byte[game.cells];
+        int[] choices = new int[game.cells];
+        for (int position = 0; position < game.cells; position++) {
+            for (int bonus = 0; bonus < game.bonusSampler.size(); bonus++) {
+                Arrays.fill(choices, 0);
+                while (true) {
+                    double probability = game.bonusSampler.probability(bonus) / game.cells;
+                    for (int cell = 0; cell < game.cells; cell++) {
+                        if (cell == position) {
+                            cells[cell] = (byte) game.bonusSampler.outcome(bonus);
+                        } else {
+                            cells[cell] = (byte) game.cellSamplers[cell].outcome(choices[cell]);
+                            probability *= game.cellSamplers[cell].probability(choices[cell]);
+                        }
+                    }
+                    payouts.merge(calculator.evaluate(cells, betAmount, evaluation), probability, Double::sum);
+                    // Next fill of the cells around the bonus position
+                    int cell = 0;
+                    while (cell < game.cells && (cell == position
+                            || ++choices[cell] == game.cellSamplers[cell].size())) {
+                        if (cell != position) {
+                            choices[cell] = 0;
+                        }
+                        cell++;
+                    }
+                    if (cell == game.cells) {
+                        break;
+                    }
+                }
+            }
+        }
+        return payouts;
+    }
+}
@@ -0,0 +1,72 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ImportanceSimulatorTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testUntiltedSpinsAreThoseOfSimulator() {
+        ImportanceReport report = new ImportanceSimulator(game, Collections.emptyList(), 0)
+                .run(100_000, 100, 7L, 3, 100, 1e6);
+        SimulationReport plain = new Simulator(game).run(100_000, 100, 7L, 2);
+
+        assertEquals(plain.getRtp(), report.getRtp());
+        assertEquals(1.0, report.getMeanWeight());
+        assertEquals(100_000, report.getEffectiveSampleSize(), 1e-6);
+        double tail = 0;
+        for (Map.Entry<Integer, Double> payout : plain.getPayouts().entrySet()) {
+            if (payout.getKey() >= 100 * 100) {
+                tail += payout.getValue();
+            }
+        }
+        assertEquals(tail, report.getTails().get(0).getProbability(), 1e-12);
+
+        // No spin wins a million times the bet, which still bounds its probability
+        ImportanceReport.Tail unreached = report.getTails().get(1);
+        assertEquals(0, unreached.getSamples());
+        assertEquals(0.0, unreached.getProbability());
+        assertEquals(-Math.log(0.05) / 100_000, unreached.getUpperBound(), 1e-15);
+    }
+
+    @Test
+    void testJackpotOddsAgreeWithExactDistribution() {
+        double[] multiples = {300, 1000, 2000};
+        List<Map<String, Double>> tilts = ImportanceSimulator.jackpotTilts(game, 100);
+        ImportanceSimulator simulator = new ImportanceSimulator(game, tilts, 0.2);
+        ImportanceReport report = simulator.run(100_000, 100, 11L, 2, multiples);
+        assertEquals(report, simulator.run(100_000, 100, 11L, 3, multiples));
+
+        ExactReport exact = new ExactCalculator(game).calculate(100);
+        // Five standard errors either way
+        assertEquals(exact.getRtp(), report.getRtp(), 5 * report.getRtpStandardError());
+        assertEquals(1.0, report.getMeanWeight(), 5 * report.getMeanWeightStandardError());
+        assertTrue(report.getMaxWeight() <= 1 / 0.2 + 1e-9);
+        for (ImportanceReport.Tail tail : report.getTails()) {
+            double probability = 0;
+            for (Map.Entry<Integer, Double> payout : exact.getPayouts().entrySet()) {
+                if (payout.getKey() >= tail.getMultiple() * 100) {
+                    probability += payout.getValue();
+                }
+            }
+            assertEquals(probability, tail.getProbability(), 5 * tail.getStandardError(), "x" + tail.getMultiple());
+            assertTrue(tail.getSamples() > 100, "x" + tail.getMultiple());
+        }
+        // A 1 in 9 million win, pinned down as if by billions of plain spins
+        assertTrue(report.getTails().get(1).getEquivalentSpins() > 1e9);
+    }
+}
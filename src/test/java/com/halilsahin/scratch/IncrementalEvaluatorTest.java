@@ -0,0 +1,82 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalEvaluatorTest {
+
+    @Test
+    void testCascadesMatchFullEvaluation() throws Exception {
+        assertCascadesMatch(CompiledGame.compile(Config.load("src/main/resources/config.json")));
+        assertCascadesMatch(CompiledGame.compile(TestConfigs.paylines(6, 40, 5)));
+    }
+
+    @Test
+    void testRefillOnlyTouchesVacatedCells() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(1)::nextLong);
+        Grid grid = generator.generateGrid();
+        Grid before = Grid.of(game);
+        before.copyFrom(grid);
+        int[] vacated = {0, 4, 8};
+
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 1_000; i++) {
+            generator.refill(grid, vacated, vacated.length, random::nextLong);
+            for (int cell = 0; cell < grid.size(); cell++) {
+                if (cell != 0 && cell != 4 && cell != 8) {
+                    assertEquals(before.get(cell), grid.get(cell));
+                } else {
+                    assertTrue(game.isStandard(grid.get(cell)));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> generator.refill(grid, new int[]{9}, 1));
+    }
+
+    /**
+     * Plays cascades on random grids, removing random cells and refilling them, and compares every step with a full
+     * evaluation of the same grid.
+     */
+    private static void assertCascadesMatch(CompiledGame game) {
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(7)::nextLong);
+        RewardCalculator calculator = new RewardCalculator(game);
+        RewardCalculator.Evaluation expected = new RewardCalculator.Evaluation(game);
+        IncrementalEvaluator state = new IncrementalEvaluator(game);
+        SplittableRandom random = new SplittableRandom(11);
+        Grid grid = Grid.of(game);
+        int[] vacated = new int[game.cells];
+
+        for (int spin = 0; spin < 500; spin++) {
+            generator.generateGrid(grid);
+            state.load(grid);
+            for (int step = 0; step < 8; step++) {
+                int reward = state.evaluate(100);
+                RewardCalculator.Evaluation actual = state.getEvaluation();
+                assertEquals(calculator.evaluate(grid, 100, expected), reward);
+                assertEquals(expected.isWin(), actual.isWin());
+                assertEquals(expected.winningCombinationMask(), actual.winningCombinationMask());
+                assertEquals(expected.getBonusSymbol(), actual.getBonusSymbol());
+
+                int count = 1 + random.nextInt(4);
+                for (int i = 0; i < count; i++) {
+                    vacated[i] = random.nextInt(game.cells);
+                }
+                if (step % 2 == 0) {
+                    generator.refill(grid, vacated, count);
+                } else {
+                    // Any symbol, bonus symbols included
+                    for (int i = 0; i < count; i++) {
+                        grid.set(vacated[i], random.nextInt(game.getSymbolCount()));
+                    }
+                }
+                state.update(grid, vacated, count);
+            }
+        }
+    }
+}
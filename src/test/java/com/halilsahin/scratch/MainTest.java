@@ -44,6 +44,16 @@ public class MainTest {
         assertTrue(logOutput.contains("appliedBonusSymbol"));
     }
 
+    @Test
+    void testDirectoryRejectsSingleGameOptions() {
+        Main.main(new String[]{"--config", "src/main/resources", "--serve", "stdin", "--payout-table", "16"});
+        Main.main(new String[]{"--config", "src/main/resources", "--serve", "stdin", "--metrics"});
+
+        String logOutput = outContent.toString();
+        assertTrue(logOutput.contains("A payout table requires a single configuration file"));
+        assertTrue(logOutput.contains("Metrics require a single configuration file"));
+    }
+
     @Test
     void testSpecificMatrixReward() throws Exception {
         String configPath = "src/main/resources/config.json";
@@ -0,0 +1,59 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NdjsonResultWriterTest {
+
+    private static CompiledGame game;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testBothPathsWriteTheResult() throws Exception {
+        SpinEngine engine = new SpinEngine(game);
+        RewardCalculator calculator = new RewardCalculator(game);
+        ByteArrayOutputStream fromResults = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromEvaluations = new ByteArrayOutputStream();
+        List<RewardCalculator.Result> expected = new ArrayList<>();
+
+        try (NdjsonResultWriter resultWriter = new NdjsonResultWriter(fromResults, game, 7);
+             NdjsonResultWriter evaluationWriter = new NdjsonResultWriter(fromEvaluations, game, 7)) {
+            SpinEngine.Session session = engine.newSession(5L);
+            for (int i = 0; i < 500; i++) {
+                session.spinReward(100);
+                RewardCalculator.Result result = calculator.calculateReward(engine.lastGrid(), 100);
+                expected.add(result);
+                resultWriter.write(result);
+                evaluationWriter.write(engine.lastGrid(), engine.lastEvaluation());
+            }
+        }
+
+        String[] resultLines = fromResults.toString(StandardCharsets.UTF_8.name()).split("\n");
+        String[] evaluationLines = fromEvaluations.toString(StandardCharsets.UTF_8.name()).split("\n");
+        assertEquals(expected.size(), resultLines.length);
+        assertEquals(expected.size(), evaluationLines.length);
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(MAPPER.valueToTree(expected.get(i)), MAPPER.readTree(resultLines[i]));
+            assertEquals(MAPPER.valueToTree(expected.get(i)), MAPPER.readTree(evaluationLines[i]));
+        }
+    }
+
+    @Test
+    void testEscaping() {
+        assertEquals("\"a\\\"b\\\\c\\n\\u0001\"", new String(NdjsonResultWriter.encodeString("a\"b\\c\n\u0001"),
+                StandardCharsets.UTF_8));
+    }
+}
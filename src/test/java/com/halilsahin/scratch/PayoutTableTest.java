@@ -0,0 +1,67 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PayoutTableTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testLookupsMatchFullEvaluation() {
+        PayoutTable table = new PayoutTable(game, 1 << 20);
+        RewardCalculator plain = new RewardCalculator(game);
+        RewardCalculator tabulated = new RewardCalculator(game, table);
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(5)::nextLong);
+        Grid[] grids = new Grid[2000];
+        for (int i = 0; i < grids.length; i++) {
+            grids[i] = generator.generateGrid();
+        }
+
+        // The second round is served from the table, with other betting amounts than the ones recorded
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < grids.length; i++) {
+                int bet = 1 + (i * 37 + round * 11) % 500;
+                assertEquals(plain.calculateReward(grids[i], bet), tabulated.calculateReward(grids[i], bet));
+            }
+        }
+        assertTrue(table.getSize() > 0);
+    }
+
+    @Test
+    void testTableStopsGrowingAtItsMemoryCap() {
+        PayoutTable table = new PayoutTable(game, 64 * 12);
+        RewardCalculator plain = new RewardCalculator(game);
+        RewardCalculator tabulated = new RewardCalculator(game, table);
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(6)::nextLong);
+        for (int i = 0; i < 5000; i++) {
+            Grid grid = generator.generateGrid();
+            assertEquals(plain.calculateReward(grid, 100), tabulated.calculateReward(grid, 100));
+        }
+        assertEquals(32, table.getMaxEntries());
+        assertEquals(table.getMaxEntries(), table.getSize());
+    }
+
+    @Test
+    void testLargeGridsAreNotSupported() throws Exception {
+        Config large = Config.load("src/main/resources/config.json");
+        large.setRows(10);
+        large.setColumns(10);
+        CompiledGame largeGame = CompiledGame.compile(large);
+        assertFalse(PayoutTable.isSupported(largeGame));
+        assertThrows(IllegalArgumentException.class, () -> new PayoutTable(largeGame, 1 << 20));
+        assertThrows(IllegalArgumentException.class, () -> new RewardCalculator(largeGame, new PayoutTable(game, 1 << 20)));
+    }
+}
@@ -0,0 +1,303 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RewardCalculatorTest {
+
+    private static Config config;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        config = Config.load("src/main/resources/config.json");
+    }
+
+    @Test
+    void testMatchesReferenceOnRandomMatrices() {
+        RewardCalculator calculator = new RewardCalculator(config);
+        List<String> symbols = new ArrayList<>(config.getSymbols().keySet());
+        List<String> standardSymbols = new ArrayList<>();
+        for (String symbol : symbols) {
+            if (config.getSymbols().get(symbol).getType().equals("standard")) {
+                standardSymbols.add(symbol);
+            }
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            // Few distinct symbols so that linear and count combinations fire often
+            int distinct = 1 + random.nextInt(3);
+            String[][] matrix = new String[config.getRows()][config.getColumns()];
+            for (int r = 0; r < config.getRows(); r++) {
+                for (int c = 0; c < config.getColumns(); c++) {
+                    matrix[r][c] = random.nextInt(10) == 0
+                            ? symbols.get(random.nextInt(symbols.size()))
+                            : standardSymbols.get(random.nextInt(distinct));
+                }
+            }
+            int bet = 1 + random.nextInt(1000);
+
+            RewardCalculator.Result expected = referenceReward(config, matrix, bet);
+            RewardCalculator.Result actual = calculator.calculateReward(matrix, bet);
+            assertEquals(expected.getReward(), actual.getReward());
+            assertEquals(expected.getAppliedWinningCombinations(), actual.getAppliedWinningCombinations());
+            assertEquals(expected.getAppliedBonusSymbol(), actual.getAppliedBonusSymbol());
+            assertArrayEquals(matrix, actual.getMatrix());
+        }
+    }
+
+    @Test
+    void testMatchesReferenceOnLargeGridWithManyLines() throws Exception {
+        Config large = Config.load("src/main/resources/config.json");
+        large.setRows(7);
+        large.setColumns(7);
+        Random random = new Random(7);
+        Map<String, Config.WinCombination> combinations = new LinkedHashMap<>(large.getWinCombinations());
+        // Overlapping, unordered and repeated cells, equal multipliers across combinations and an empty area
+        combinations.put("payline_a", randomLines(random, 3, 80, false));
+        combinations.put("payline_b", randomLines(random, 3, 80, false));
+        combinations.put("payline_c", randomLines(random, 1.2, 40, true));
+        large.setWinCombinations(combinations);
+        RewardCalculator calculator = new RewardCalculator(large);
+
+        List<String> symbols = new ArrayList<>(large.getSymbols().keySet());
+        for (int i = 0; i < 5000; i++) {
+            int distinct = 1 + random.nextInt(3);
+            String[][] matrix = new String[7][7];
+            for (int r = 0; r < 7; r++) {
+                for (int c = 0; c < 7; c++) {
+                    matrix[r][c] = random.nextInt(20) == 0
+                            ? symbols.get(random.nextInt(symbols.size()))
+                            : symbols.get(random.nextInt(distinct));
+                }
+            }
+            RewardCalculator.Result expected = referenceReward(large, matrix, 10);
+            RewardCalculator.Result actual = calculator.calculateReward(matrix, 10);
+            assertEquals(expected.getReward(), actual.getReward());
+            assertEquals(expected.getAppliedWinningCombinations(), actual.getAppliedWinningCombinations());
+            assertEquals(expected.getAppliedBonusSymbol(), actual.getAppliedBonusSymbol());
+        }
+    }
+
+    @Test
+    void testGeneratedMatricesUseConfiguredSymbols() {
+        CompiledGame game = CompiledGame.compile(config);
+        MatrixGenerator generator = new MatrixGenerator(game);
+        for (int i = 0; i < 1000; i++) {
+            String[][] matrix = generator.generateMatrix();
+            assertEquals(config.getRows(), matrix.length);
+            int bonusCount = 0;
+            for (String[] row : matrix) {
+                assertEquals(config.getColumns(), row.length);
+                for (String cell : row) {
+                    if (!game.isStandard(game.ordinalOf(cell))) {
+                        bonusCount++;
+                    }
+                }
+            }
+            assertEquals(1, bonusCount);
+        }
+    }
+
+    @Test
+    void testGridOverloadMatchesMatrix() {
+        CompiledGame game = CompiledGame.compile(config);
+        MatrixGenerator generator = new MatrixGenerator(game);
+        RewardCalculator calculator = new RewardCalculator(game);
+        Grid grid = Grid.of(game);
+        for (int i = 0; i < 1000; i++) {
+            generator.generateGrid(grid);
+            String[][] matrix = grid.toMatrix(game);
+            assertEquals(grid, Grid.fromMatrix(game, matrix));
+
+            RewardCalculator.Result fromGrid = calculator.calculateReward(grid, 100);
+            RewardCalculator.Result fromMatrix = calculator.calculateReward(matrix, 100);
+            assertEquals(fromMatrix, fromGrid);
+        }
+    }
+
+    @Test
+    void testBatchMatchesSingleSpins() {
+        CompiledGame game = CompiledGame.compile(config);
+        BatchSpinner spinner = new BatchSpinner(game);
+        RewardCalculator calculator = new RewardCalculator(game);
+        int[] rewards = new int[1];
+        long[] combinations = new long[1];
+        int[] bonusSymbols = new int[1];
+        for (int i = 0; i < 1000; i++) {
+            spinner.spinBatch(1, 100, rewards, combinations, bonusSymbols);
+            RewardCalculator.Result result = calculator.calculateReward(spinner.lastGrid(), 100);
+
+            assertEquals(result.getReward(), rewards[0]);
+            long expectedCombinations = 0;
+            for (List<String> names : result.getAppliedWinningCombinations().values()) {
+                for (String name : names) {
+                    expectedCombinations |= 1L << game.combinationId(name);
+                }
+            }
+            assertEquals(expectedCombinations, combinations[0]);
+            if (!"LOSS".equals(result.getAppliedBonusSymbol())) {
+                assertEquals(result.getAppliedBonusSymbol(), game.symbolName(bonusSymbols[0]));
+            }
+        }
+    }
+
+    @Test
+    void testBatchUsesGivenCalculator() {
+        CompiledGame game = CompiledGame.compile(config);
+        PayoutTable table = new PayoutTable(game, 1 << 20);
+        BatchSpinner spinner = new BatchSpinner(new MatrixGenerator(game), new RewardCalculator(game, table));
+        BatchSpinner interpreted = new BatchSpinner(game);
+        long[] seeds = new long[2_000];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = i;
+        }
+        int[] rewards = new int[seeds.length];
+        int[] expected = new int[seeds.length];
+        assertEquals(interpreted.spinBatch(seeds.length, 100, seeds, expected, null, null),
+                spinner.spinBatch(seeds.length, 100, seeds, rewards, null, null));
+        assertArrayEquals(expected, rewards);
+        // Every grid went through the payout table rather than the batch evaluator
+        assertTrue(table.getSize() > 0);
+    }
+
+    @Test
+    void testUnknownSymbolIsRejected() {
+        RewardCalculator calculator = new RewardCalculator(config);
+        String[][] matrix = {
+                {"A", "A", "B"},
+                {"A", "Z", "B"},
+                {"A", "A", "B"}
+        };
+        assertThrows(IllegalArgumentException.class, () -> calculator.calculateReward(matrix, 100));
+    }
+
+    private static Config.WinCombination randomLines(Random random, double multiplier, int lines, boolean emptyArea) {
+        List<List<String>> areas = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            List<String> area = new ArrayList<>();
+            int length = 2 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                area.add(random.nextInt(7) + ":" + random.nextInt(7));
+            }
+            if (random.nextBoolean() && !area.isEmpty()) {
+                area.add(area.get(0));
+            }
+            areas.add(area);
+        }
+        if (emptyArea) {
+            areas.add(new ArrayList<>());
+        }
+        Config.WinCombination combination = new Config.WinCombination();
+        combination.setWhen("linear_symbols");
+        combination.setGroup("paylines");
+        combination.setRewardMultiplier(multiplier);
+        combination.setCoveredAreas(areas);
+        return combination;
+    }
+
+    /**
+     * The original string-based implementation, kept as the reference for the compiled evaluator.
+     */
+    private static RewardCalculator.Result referenceReward(Config gameConfig, String[][] matrix, int betAmount) {
+        int totalReward = 0;
+        Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
+        String appliedBonusSymbol = null;
+
+        for (String symbol : gameConfig.getSymbols().keySet()) {
+            if (gameConfig.getSymbols().get(symbol).getType().equals("standard")) {
+                int symbolCount = 0;
+                for (int r = 0; r < gameConfig.getRows(); r++) {
+                    for (int c = 0; c < gameConfig.getColumns(); c++) {
+                        if (matrix[r][c].equals(symbol)) {
+                            symbolCount++;
+                        }
+                    }
+                }
+
+                if (symbolCount > 0) {
+                    List<String> winningCombinations = new ArrayList<>();
+                    double maxCountMultiplier = 0;
+                    double maxLinearMultiplier = 0;
+                    String maxCountCombination = null;
+                    String maxLinearCombination = null;
+
+                    for (String combinationKey : gameConfig.getWinCombinations().keySet()) {
+                        Config.WinCombination combination = gameConfig.getWinCombinations().get(combinationKey);
+                        if (combination.getWhen().equals("same_symbols") && combination.getCount() <= symbolCount
+                                && combination.getRewardMultiplier() > maxCountMultiplier) {
+                            maxCountMultiplier = combination.getRewardMultiplier();
+                            maxCountCombination = combinationKey;
+                        }
+                        if (combination.getWhen().equals("linear_symbols")) {
+                            for (List<String> area : combination.getCoveredAreas()) {
+                                boolean covered = true;
+                                for (String pos : area) {
+                                    String[] parts = pos.split(":");
+                                    if (!matrix[Integer.parseInt(parts[0])][Integer.parseInt(parts[1])].equals(symbol)) {
+                                        covered = false;
+                                        break;
+                                    }
+                                }
+                                if (covered && combination.getRewardMultiplier() > maxLinearMultiplier) {
+                                    maxLinearMultiplier = combination.getRewardMultiplier();
+                                    maxLinearCombination = combinationKey;
+                                }
+                            }
+                        }
+                    }
+
+                    if (maxCountCombination != null) {
+                        winningCombinations.add(maxCountCombination);
+                    }
+                    if (maxLinearCombination != null) {
+                        winningCombinations.add(maxLinearCombination);
+                    }
+                    if (!winningCombinations.isEmpty()) {
+                        totalReward += (int) Math.round(betAmount * gameConfig.getSymbols().get(symbol).getRewardMultiplier()
+                                * maxCountMultiplier * Math.max(1, maxLinearMultiplier));
+                        appliedWinningCombinations.put(symbol, winningCombinations);
+                    }
+                }
+            }
+        }
+
+        for (int r = 0; r < gameConfig.getRows(); r++) {
+            for (int c = 0; c < gameConfig.getColumns(); c++) {
+                String cell = matrix[r][c];
+                Config.Symbol bonusSymbol = gameConfig.getSymbols().get(cell);
+                if (bonusSymbol.getType().equals("bonus")) {
+                    appliedBonusSymbol = cell;
+                    switch (bonusSymbol.getImpact()) {
+                        case "multiply_reward":
+                            totalReward *= bonusSymbol.getRewardMultiplier();
+                            break;
+                        case "extra_bonus":
+                            totalReward += bonusSymbol.getExtra();
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+
+        if (appliedWinningCombinations.isEmpty()) {
+            totalReward = 0;
+            appliedBonusSymbol = "LOSS";
+        }
+        return new RewardCalculator.Result(matrix, totalReward, appliedWinningCombinations, appliedBonusSymbol);
+    }
+}
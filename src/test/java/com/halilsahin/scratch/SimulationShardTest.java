@@ -0,0 +1,119 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimulationShardTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testShardingDoesNotChangeResults(@TempDir Path directory) throws Exception {
+        SpinStatistics whole = new Simulator(game).simulate(30_000, 100, 5L, 1);
+
+        // Uneven shards with different thread counts, written, read back and merged out of order
+        long[] bounds = {0, 7_001, 7_002, 19_999, 30_000};
+        List<SimulationShard> shards = new ArrayList<>();
+        for (int i = bounds.length - 2; i >= 0; i--) {
+            Path file = directory.resolve("shard-" + i + ".stats");
+            SimulationShard.run(game, bounds[i], bounds[i + 1], 100, 5L, i + 1).write(file);
+            shards.add(SimulationShard.read(file));
+        }
+        SimulationShard merged = SimulationShard.merge(shards);
+
+        assertTrue(merged.isContiguous());
+        assertEquals(0, merged.getStart());
+        assertEquals(30_000, merged.getEnd());
+        assertSameStatistics(whole, merged.getStatistics());
+        assertEquals(new Simulator(game).run(30_000, 100, 5L, 3), merged.report(game));
+
+        // Merging merged shards again
+        SimulationShard left = SimulationShard.merge(shards.subList(0, 2));
+        SimulationShard right = SimulationShard.merge(shards.subList(2, 4));
+        assertSameStatistics(whole, SimulationShard.merge(List.of(right, left)).getStatistics());
+    }
+
+    @Test
+    void testSpinsReplayFromTheirSeeds() {
+        SimulationShard shard = SimulationShard.run(game, 1_000, 1_200, 10, 9L, 2);
+        SpinEngine engine = new SpinEngine(game);
+        SpinStatistics replayed = new SpinStatistics(game);
+        for (long spin = 1_000; spin < 1_200; spin++) {
+            int reward = engine.spinReward(10, SplitMix64.valueAt(9L, spin));
+            RewardCalculator.Evaluation evaluation = engine.lastEvaluation();
+            replayed.record(reward, evaluation.isWin() ? evaluation.winningCombinationMask() : 0L,
+                    evaluation.bonusSymbol);
+        }
+        assertSameStatistics(replayed, shard.getStatistics());
+    }
+
+    @Test
+    void testMergeRejectsOverlapsAndOtherSimulations() {
+        SimulationShard first = SimulationShard.run(game, 0, 1_000, 100, 1L, 1);
+        SimulationShard overlapping = SimulationShard.run(game, 999, 2_000, 100, 1L, 1);
+        SimulationShard otherBet = SimulationShard.run(game, 1_000, 2_000, 10, 1L, 1);
+        SimulationShard otherSeed = SimulationShard.run(game, 1_000, 2_000, 100, 2L, 1);
+        SimulationShard gap = SimulationShard.run(game, 3_000, 4_000, 100, 1L, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> SimulationShard.merge(List.of(first, overlapping)));
+        assertThrows(IllegalArgumentException.class, () -> SimulationShard.merge(List.of(first, otherBet)));
+        assertThrows(IllegalArgumentException.class, () -> SimulationShard.merge(List.of(first, otherSeed)));
+        assertThrows(IllegalArgumentException.class, () -> SimulationShard.merge(List.of(first, first)));
+        assertFalse(SimulationShard.merge(List.of(gap, first)).isContiguous());
+        assertEquals(2_000, SimulationShard.merge(List.of(gap, first)).getStatistics().getSpins());
+    }
+
+    @Test
+    void testShardsRunInSeparateProcesses(@TempDir Path directory) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        List<SimulationShard> shards = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Path file = directory.resolve("shard-" + i + ".stats");
+            processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Main.class.getName(), "--config", "src/main/resources/config.json", "--betting-amount", "100",
+                    "--simulate", "5000", "--seed", "42", "--threads", "2", "--shard-start", String.valueOf(i * 5_000),
+                    "--stats-out", file.toString())
+                    .redirectErrorStream(true).redirectOutput(new File(directory.toFile(), "shard-" + i + ".log"))
+                    .start());
+        }
+        for (int i = 0; i < processes.size(); i++) {
+            assertTrue(processes.get(i).waitFor(60, TimeUnit.SECONDS));
+            shards.add(SimulationShard.read(directory.resolve("shard-" + i + ".stats")));
+        }
+        assertEquals(new Simulator(game).run(10_000, 100, 42L, 1), SimulationShard.merge(shards).report(game));
+    }
+
+    private static void assertSameStatistics(SpinStatistics expected, SpinStatistics actual) {
+        assertEquals(expected.getSpins(), actual.getSpins());
+        assertEquals(expected.getHits(), actual.getHits());
+        assertEquals(expected.getTotalReward(), actual.getTotalReward());
+        assertEquals(expected.getSumOfSquares(), actual.getSumOfSquares());
+        assertEquals(expected.getMaxReward(), actual.getMaxReward());
+        for (int i = 0; i < game.getCombinationCount(); i++) {
+            assertEquals(expected.getCombinationTriggers(i), actual.getCombinationTriggers(i));
+        }
+        for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+            assertEquals(expected.getBonusTriggers(symbol), actual.getBonusTriggers(symbol));
+        }
+        assertEquals(expected.getRewardHistogram().toMap(), actual.getRewardHistogram().toMap());
+    }
+}
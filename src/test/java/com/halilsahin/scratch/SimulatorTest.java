@@ -0,0 +1,40 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimulatorTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testReproducibleForSeedAndThreads() {
+        Simulator simulator = new Simulator(game);
+        SimulationReport first = simulator.run(200_000, 100, 7L, 4);
+        SimulationReport second = simulator.run(200_000, 100, 7L, 4);
+        assertEquals(first, second);
+        assertEquals(200_000, first.getSpins());
+    }
+
+    @Test
+    void testReportIsConsistent() {
+        SimulationReport report = new Simulator(game).run(100_000, 10, 11L, 3);
+        assertTrue(report.getRtpLow() <= report.getRtp() && report.getRtp() <= report.getRtpHigh());
+        assertTrue(report.getHitRate() > 0 && report.getHitRate() < 1);
+
+        double bonusRate = 0;
+        for (double rate : report.getBonusRates().values()) {
+            bonusRate += rate;
+        }
+        // Every spin places exactly one bonus symbol
+        assertEquals(1.0, bonusRate, 1e-9);
+    }
+}
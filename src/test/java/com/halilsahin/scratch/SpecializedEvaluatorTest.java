@@ -0,0 +1,133 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpecializedEvaluatorTest {
+
+    @Test
+    void testShippedGameMatchesInterpretedEvaluation() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        assertMatches(game, 50_000);
+
+        SpecializedEvaluator evaluator = SpecializedEvaluator.compile(game);
+        RewardCalculator calculator = new RewardCalculator(evaluator);
+        RewardCalculator interpreted = new RewardCalculator(game);
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(3)::nextLong);
+        for (int i = 0; i < 1_000; i++) {
+            Grid grid = generator.generateGrid();
+            assertEquals(interpreted.calculateReward(grid, 100), calculator.calculateReward(grid, 100));
+        }
+
+        // Seeded spins replay identically on an engine evaluating with the generated class
+        SpinEngine engine = new SpinEngine(game);
+        SpinEngine specialized = new SpinEngine(evaluator, null);
+        for (long seed = 0; seed < 1_000; seed++) {
+            RewardCalculator.Result result = engine.spin(100, seed);
+            assertEquals(result, specialized.spin(100, seed));
+            // Built from the specialized evaluation of the spin, as single seeded spins are logged
+            assertEquals(result.getReward(), specialized.spinReward(100, seed));
+            assertEquals(result, specialized.lastResult());
+        }
+
+        RewardCalculator.Evaluation evaluation = new RewardCalculator.Evaluation(game);
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(new byte[game.cells + 1], 100,
+                evaluation));
+        assertThrows(IllegalArgumentException.class, () -> evaluator.evaluate(Grid.of(
+                CompiledGame.compile(paylineConfig(6, 40, 0))), 100, evaluation));
+    }
+
+    @Test
+    void testPaylineGamesMatchInterpretedEvaluation() throws Exception {
+        assertMatches(CompiledGame.compile(paylineConfig(6, 40, 0)), 20_000);
+        // Enough cells and areas to split the generated code over several methods of each kind
+        CompiledGame large = CompiledGame.compile(paylineConfig(12, 1_500, 1));
+        assertTrue(SpecializedEvaluator.isSupported(large));
+        assertMatches(large, 5_000);
+    }
+
+    /**
+     * Evaluates random grids with both the interpreted and the specialized evaluator and compares every part of the
+     * evaluations. Half of the grids are generated by the game, the others hold any symbol in any cell, so many
+     * standard symbols fill areas and many bonus symbols apply.
+     */
+    private static void assertMatches(CompiledGame game, int grids) {
+        RewardCalculator calculator = new RewardCalculator(game);
+        SpecializedEvaluator evaluator = SpecializedEvaluator.compile(game);
+        RewardCalculator.Evaluation expected = new RewardCalculator.Evaluation(game);
+        RewardCalculator.Evaluation actual = new RewardCalculator.Evaluation(game);
+        MatrixGenerator generator = new MatrixGenerator(game, new SplittableRandom(7)::nextLong);
+        SplittableRandom random = new SplittableRandom(11);
+        Grid grid = Grid.of(game);
+        int[] standard = game.standardSymbols;
+
+        for (int i = 0; i < grids; i++) {
+            if (i % 2 == 0) {
+                generator.generateGrid(grid);
+            } else {
+                // Few distinct symbols make long runs of equal cells likely
+                int symbols = 1 + random.nextInt(3);
+                for (int cell = 0; cell < game.cells; cell++) {
+                    grid.set(cell, random.nextInt(8) == 0 ? random.nextInt(game.getSymbolCount())
+                            : standard[random.nextInt(Math.min(symbols, standard.length))]);
+                }
+            }
+            int bet = 1 + random.nextInt(1_000);
+            int reward = calculator.evaluate(grid, bet, expected);
+            assertEquals(reward, evaluator.evaluate(grid, bet, actual));
+            assertEquals(expected.getReward(), actual.getReward());
+            assertEquals(expected.baseReward, actual.baseReward);
+            assertEquals(expected.isWin(), actual.isWin());
+            assertEquals(expected.getBonusSymbol(), actual.getBonusSymbol());
+            assertEquals(expected.presentCount, actual.presentCount);
+            assertEquals(expected.bonusCount, actual.bonusCount);
+            for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+                assertEquals(expected.count(symbol), actual.count(symbol));
+                assertEquals(expected.countCombination(symbol), actual.countCombination(symbol));
+                assertEquals(expected.linearCombination(symbol), actual.linearCombination(symbol));
+                assertEquals(expected.linearMultipliers[symbol], actual.linearMultipliers[symbol]);
+            }
+            for (int b = 0; b < expected.bonusCount; b++) {
+                assertEquals(expected.bonusCells[b], actual.bonusCells[b]);
+            }
+        }
+    }
+
+    /**
+     * Random paylines extended by areas covering whole rows and an empty area.
+     */
+    private static Config paylineConfig(int size, int paylines, long seed) throws Exception {
+        Config config = TestConfigs.paylines(size, paylines, seed);
+
+        // A row outranks any payline it contains
+        List<List<String>> rows = new ArrayList<>();
+        for (int r = 0; r < size; r++) {
+            List<String> row = new ArrayList<>();
+            for (int c = 0; c < size; c++) {
+                row.add(r + ":" + c);
+            }
+            rows.add(row);
+        }
+        Config.WinCombination fullRows = new Config.WinCombination();
+        fullRows.setWhen("linear_symbols");
+        fullRows.setGroup("rows");
+        fullRows.setRewardMultiplier(7);
+        fullRows.setCoveredAreas(rows);
+        TestConfigs.withCombination(config, "same_symbols_on_row", fullRows);
+
+        Config.WinCombination empty = new Config.WinCombination();
+        empty.setWhen("linear_symbols");
+        empty.setGroup("anywhere");
+        empty.setRewardMultiplier(1.5);
+        empty.setCoveredAreas(Collections.singletonList(Collections.emptyList()));
+        return TestConfigs.withCombination(config, "same_symbols_anywhere", empty);
+    }
+}
@@ -0,0 +1,59 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SpinEngineTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testSessionsAreReproducible() {
+        SpinEngine engine = new SpinEngine(game);
+        SpinEngine.Session first = engine.newSession(99L);
+        SpinEngine.Session second = engine.newSession(99L);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(first.spin(100), second.spin(100));
+        }
+    }
+
+    @Test
+    void testConcurrentSpinsAreConsistent() throws Exception {
+        SpinEngine engine = new SpinEngine(game);
+        RewardCalculator calculator = new RewardCalculator(game);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    int mismatches = 0;
+                    for (int i = 0; i < 20_000; i++) {
+                        int reward = engine.spinReward(100);
+                        if (reward != calculator.calculateReward(engine.lastGrid(), 100).getReward()) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(0, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
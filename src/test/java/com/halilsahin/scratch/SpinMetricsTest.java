@@ -0,0 +1,129 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpinMetricsTest {
+
+    private static CompiledGame game;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testCountersMatchPlayedSpins() {
+        SpinMetrics metrics = new SpinMetrics(game, 1);
+        SpinEngine engine = new SpinEngine(game, null, metrics);
+        SplittableRandom random = new SplittableRandom(3);
+        long wins = 0;
+        Map<String, Long> bonusHits = new HashMap<>();
+        Map<String, Long> triggers = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            engine.spinReward(100, random::nextLong);
+            Grid grid = engine.lastGrid();
+            RewardCalculator.Evaluation evaluation = engine.lastEvaluation();
+            for (int cell = 0; cell < grid.size(); cell++) {
+                if (!game.isStandard(grid.cells[cell])) {
+                    bonusHits.merge(game.symbolName(grid.cells[cell]), 1L, Long::sum);
+                }
+            }
+            if (evaluation.isWin()) {
+                wins++;
+                for (int symbol = 0; symbol < game.getSymbolCount(); symbol++) {
+                    if (evaluation.countCombination(symbol) >= 0) {
+                        triggers.merge(game.combinationName(evaluation.countCombination(symbol)), 1L, Long::sum);
+                    }
+                    if (evaluation.linearCombination(symbol) >= 0) {
+                        triggers.merge(game.combinationName(evaluation.linearCombination(symbol)), 1L, Long::sum);
+                    }
+                }
+            }
+        }
+
+        assertEquals(10_000, metrics.getSpins());
+        assertEquals(wins, metrics.getWins());
+        metrics.getBonusHits().forEach((symbol, hits) -> assertEquals(bonusHits.getOrDefault(symbol, 0L), hits, symbol));
+        metrics.getCombinationTriggers().forEach((combination, count) ->
+                assertEquals(triggers.getOrDefault(combination, 0L), count, combination));
+        assertEquals(10_000L, metrics.getGenerationNanos().get("count"));
+        assertEquals(10_000L, metrics.getEvaluationNanos().get("count"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getSpins());
+        assertEquals(0L, metrics.getEvaluationNanos().get("count"));
+
+        // Sampled timings, exact counters
+        SpinMetrics sampled = new SpinMetrics(game);
+        SpinEngine sampledEngine = new SpinEngine(game, null, sampled);
+        for (int i = 0; i < 10_000; i++) {
+            sampledEngine.spinReward(100);
+        }
+        assertEquals(10_000, sampled.getSpins());
+        long timed = sampled.getEvaluationNanos().get("count");
+        assertTrue(timed > 10_000 / SpinMetrics.DEFAULT_TIMING_SAMPLE / 2 && timed < 10_000 / 4, String.valueOf(timed));
+    }
+
+    @Test
+    void testHistogramPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_002, snapshot.getCount());
+        assertEquals(0, snapshot.valueAt(0));
+        assertEquals(50_000, snapshot.valueAt(0.5), 50_000 * 0.035);
+        assertEquals(99_000, snapshot.valueAt(0.99), 99_000 * 0.035);
+        assertEquals(LatencyHistogram.MAX_VALUE, snapshot.getMax());
+        assertEquals(63, recordOnce(63).getMax());
+    }
+
+    @Test
+    void testMetricsAreExposedThroughJmxAndText() throws Exception {
+        SpinMetrics metrics = new SpinMetrics(game, 1);
+        SpinEngine engine = new SpinEngine(game, null, metrics);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SpinServer(engine).serve(
+                new ByteArrayInputStream("SPIN 10\nSPIN 20\nSPIN 30\n".getBytes(StandardCharsets.US_ASCII)), out);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = metrics.register("metrics-test");
+        try {
+            assertEquals(3L, server.getAttribute(name, "Spins"));
+            assertTrue(server.getAttribute(name, "SerializationNanos") != null);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+
+        String dump = metrics.dump();
+        assertTrue(dump.contains("scratch_spins_total 3\n"), dump);
+        assertTrue(dump.contains("scratch_serialization_nanos_count 3\n"), dump);
+        assertTrue(dump.contains("scratch_bonus_hits_total{symbol=\"10x\"}"), dump);
+    }
+
+    private static LatencyHistogram.Snapshot recordOnce(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        return histogram.snapshot();
+    }
+}
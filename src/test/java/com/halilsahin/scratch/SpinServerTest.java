@@ -0,0 +1,75 @@
+package com.halilsahin.scratch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpinServerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void testPipelinedRequestsOverSocket() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        try (SpinServer server = new SpinServer(new SpinEngine(game));
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.start(0))) {
+            OutputStream out = socket.getOutputStream();
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                requests.append("SPIN 100\n");
+            }
+            requests.append("PING\nSPIN x\nQUIT\n");
+            out.write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            for (int i = 0; i < 100; i++) {
+                JsonNode response = MAPPER.readTree(in.readLine());
+                assertEquals(3, response.get("matrix").size());
+                assertTrue(response.has("reward"));
+                assertTrue(response.has("appliedBonusSymbol"));
+            }
+            assertTrue(MAPPER.readTree(in.readLine()).get("pong").asBoolean());
+            assertTrue(MAPPER.readTree(in.readLine()).has("error"));
+            assertEquals(null, in.readLine());
+        }
+    }
+
+    @Test
+    void testServesStreams() throws Exception {
+        CompiledGame game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SpinServer(new SpinEngine(game)).serve(
+                new ByteArrayInputStream("SPIN 10\nSPIN 20\n".getBytes(StandardCharsets.US_ASCII)), out);
+        assertEquals(2, out.toString(StandardCharsets.US_ASCII.name()).split("\n").length);
+    }
+
+    @Test
+    void testLoadGeneratorCountsErrorsSeparately(@TempDir Path directory) throws Exception {
+        Files.copy(Paths.get("src/main/resources/config.json"), directory.resolve("classic.json"));
+        try (ConfigRegistry registry = new ConfigRegistry(directory, 4);
+             SpinServer server = new SpinServer(registry)) {
+            int port = server.start(0);
+            String spins = new LoadGenerator(port, 2, 500, 16, 100, "classic").run();
+            assertTrue(spins.startsWith("1000 spins and 0 errors"), spins);
+            String errors = new LoadGenerator(port, 2, 500, 16, 100, "missing").run();
+            assertTrue(errors.startsWith("0 spins and 1000 errors"), errors);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.halilsahin.scratch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Configurations shared by the evaluator tests.
+ *
+ * @author Halil Şahin
+ */
+final class TestConfigs {
+
+    private TestConfigs() {
+    }
+
+    /**
+     * The shipped configuration on a square grid with a {@code same_symbols_on_payline} combination of random paylines.
+     * Lines start in one of the first three rows of the first column, so many of them share their first cells, and
+     * move at most one row up or down per column for two up to {@code size} columns.
+     *
+     * @param size  the number of rows and columns
+     * @param lines the number of paylines
+     * @param seed  the seed the lines are drawn from
+     * @return the configuration
+     */
+    static Config paylines(int size, int lines, long seed) throws Exception {
+        Config config = Config.load("src/main/resources/config.json");
+        config.setRows(size);
+        config.setColumns(size);
+        SplittableRandom random = new SplittableRandom(seed);
+        List<List<String>> areas = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            List<String> line = new ArrayList<>();
+            int row = random.nextInt(Math.min(3, size));
+            int length = 2 + random.nextInt(size - 1);
+            for (int c = 0; c < length; c++) {
+                line.add(row + ":" + c);
+                row = Math.max(0, Math.min(size - 1, row + random.nextInt(3) - 1));
+            }
+            areas.add(line);
+        }
+        Config.WinCombination paylines = new Config.WinCombination();
+        paylines.setWhen("linear_symbols");
+        paylines.setGroup("paylines");
+        paylines.setRewardMultiplier(2);
+        paylines.setCoveredAreas(areas);
+        return withCombination(config, "same_symbols_on_payline", paylines);
+    }
+
+    /**
+     * Adds a win combination after the existing ones.
+     */
+    static Config withCombination(Config config, String name, Config.WinCombination combination) {
+        Map<String, Config.WinCombination> combinations = new LinkedHashMap<>(config.getWinCombinations());
+        combinations.put(name, combination);
+        config.setWinCombinations(combinations);
+        return config;
+    }
+}
@@ -0,0 +1,121 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TicketPoolTest {
+
+    private static CompiledGame game;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        game = CompiledGame.compile(Config.load("src/main/resources/config.json"));
+    }
+
+    @Test
+    void testPoolHoldsScoredShuffledTickets() throws Exception {
+        Path path = directory.resolve("tickets.pool");
+        new TicketPoolBuilder(game).build(path, 20_000, 100, 3L, 3);
+        Path single = directory.resolve("single.pool");
+        new TicketPoolBuilder(game).build(single, 20_000, 100, 3L, 1);
+        assertArrayEquals(Files.readAllBytes(single), Files.readAllBytes(path));
+
+        SpinStatistics simulated = new Simulator(game).simulate(20_000, 100, 3L, 1);
+        SpinEngine engine = new SpinEngine(game);
+        Grid grid = Grid.of(game);
+        Set<Long> seeds = new HashSet<>();
+        try (TicketPool pool = TicketPool.open(path)) {
+            assertEquals(20_000, pool.getTickets());
+            assertEquals(game.getFingerprint(), pool.getFingerprint());
+            assertEquals(simulated.getTotalReward(), pool.getTotalReward());
+            assertEquals(simulated.getHits(), pool.getWinningTickets());
+
+            long totalReward = 0;
+            int inOrder = 0;
+            for (long ticket = 0; ticket < pool.getTickets(); ticket++) {
+                long seed = pool.seed(ticket);
+                seeds.add(seed);
+                if (seed == SplitMix64.valueAt(3L, ticket)) {
+                    inOrder++;
+                }
+                int reward = pool.reward(ticket);
+                totalReward += reward;
+                if (ticket % 100 == 0) {
+                    // Every ticket is the spin of its seed
+                    assertEquals(engine.spinReward(100, seed), reward);
+                    RewardCalculator.Evaluation evaluation = engine.lastEvaluation();
+                    assertEquals(evaluation.isWin() ? evaluation.winningCombinationMask() : 0L, pool.combinationMask(ticket));
+                    assertEquals(evaluation.getBonusSymbol(), pool.bonusSymbol(ticket));
+                    pool.copyGrid(ticket, grid);
+                    assertEquals(engine.lastGrid(), grid);
+                    assertEquals(grid.get(4), pool.cell(ticket, 4));
+                }
+            }
+            assertEquals(pool.getTotalReward(), totalReward);
+            assertTrue(inOrder < 100, "tickets are not shuffled");
+        }
+        for (long i = 0; i < 20_000; i++) {
+            assertTrue(seeds.contains(SplitMix64.valueAt(3L, i)));
+        }
+    }
+
+    @Test
+    void testConcurrentDispensingIssuesEveryTicketOnce() throws Exception {
+        Path path = directory.resolve("tickets.pool");
+        new TicketPoolBuilder(game).build(path, 50_000, 10, 1L, 2);
+        AtomicIntegerArray issued = new AtomicIntegerArray(50_000);
+        try (TicketPool pool = TicketPool.open(path)) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(() -> {
+                    long ticket;
+                    while ((ticket = pool.next()) >= 0) {
+                        issued.incrementAndGet((int) ticket);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(-1, pool.next());
+            assertEquals(0, pool.getRemaining());
+        }
+        for (int i = 0; i < issued.length(); i++) {
+            assertEquals(1, issued.get(i));
+        }
+
+        try (TicketPool pool = TicketPool.open(path, 49_999)) {
+            assertEquals(49_999, pool.next());
+            assertEquals(-1, pool.next());
+        }
+    }
+
+    @Test
+    void testIncompletePoolIsRejected() throws Exception {
+        Path path = directory.resolve("tickets.pool");
+        new TicketPoolBuilder(game).build(path, 1_000, 10, 1L, 1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 1);
+        }
+        assertThrows(IOException.class, () -> TicketPool.open(path));
+    }
+}
@@ -0,0 +1,91 @@
+package com.halilsahin.scratch;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WeightTunerTest {
+
+    private static Config config;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        config = Config.load("src/main/resources/config.json");
+    }
+
+    @Test
+    void testTunedWeightsReachTargetRtp() {
+        WeightTuner.Targets targets = new WeightTuner.Targets();
+        targets.setRtp(5.0);
+        WeightTuner tuner = new WeightTuner(config, 100, 20_000, 5L);
+        TuningReport report = tuner.tune(targets, 100, 8, 0.002, 2);
+
+        assertTrue(report.isConverged(), report.toString());
+        assertEquals(5.0, report.getRtp(), 5.0 * 0.002);
+
+        // The fit holds up on spins the tuner has not seen
+        SimulationReport validation = tuner.validate(report, 200_000, 2);
+        assertEquals(5.0, validation.getRtp(), 4 * (validation.getRtpHigh() - validation.getRtp()));
+        assertEquals(validation, report.getValidation());
+    }
+
+    @Test
+    void testReachableMaxWinTargetConverges() {
+        WeightTuner.Targets targets = new WeightTuner.Targets();
+        targets.setRtp(5.0);
+        targets.setMaxWinMultiple(50.0);
+        // 20000 / 3000 expected max wins is not a whole number, so no count matches the odds exactly
+        targets.setMaxWinOdds(3000.0);
+        TuningReport report = new WeightTuner(config, 100, 20_000, 5L).tune(targets, 100, 8, 0.002, 2);
+
+        assertTrue(report.isConverged(), report.toString());
+        assertEquals(5.0, report.getRtp(), 5.0 * 0.002);
+        double expected = 20_000 / 3000.0;
+        assertEquals(expected, 20_000 / report.getMaxWinOdds(), 2 * Math.sqrt(expected));
+        // The sample cannot tell the target odds from much shorter or longer ones, as the interval shows
+        assertTrue(report.getMaxWinOddsLow() < 3000 && 3000 < report.getMaxWinOddsHigh(), report.toString());
+        assertTrue(report.getMaxWinOddsHigh() / report.getMaxWinOddsLow() > 2, report.toString());
+    }
+
+    @Test
+    void testPoissonBoundsMatchExactIntervals() {
+        // Exact 95% bounds of the mean of a Poisson count of 10 are 4.795 and 18.390
+        assertEquals(4.795, WeightTuner.poissonBound(10, -SimulationReport.Z_95), 0.01);
+        assertEquals(18.390, WeightTuner.poissonBound(10, SimulationReport.Z_95), 0.01);
+        assertEquals(0.0, WeightTuner.poissonBound(0, -SimulationReport.Z_95));
+        // -ln(0.025) for no count at all
+        assertEquals(3.689, WeightTuner.poissonBound(0, SimulationReport.Z_95), 0.03);
+    }
+
+    @Test
+    void testTuningIsReproducibleAndOnlyChangesWeights(@TempDir Path directory) throws Exception {
+        WeightTuner.Targets targets = new WeightTuner.Targets();
+        targets.setRtp(6.0);
+        targets.setMaxWinMultiple(50.0);
+        targets.setMaxWinOdds(1000.0);
+        TuningReport single = new WeightTuner(config, 100, 5_000, 9L).tune(targets, 10, 6, 0, 1);
+        TuningReport parallel = new WeightTuner(config, 100, 5_000, 9L).tune(targets, 10, 6, 0, 3);
+        assertEquals(single.getConfig(), parallel.getConfig());
+        assertEquals(single.getFactors(), parallel.getFactors());
+        assertEquals(single.getRtp(), parallel.getRtp());
+
+        Config tuned = single.getConfig();
+        assertNotEquals(config.getProbabilities(), tuned.getProbabilities());
+        assertEquals(config.getSymbols(), tuned.getSymbols());
+        assertEquals(config.getWinCombinations(), tuned.getWinCombinations());
+        assertEquals(config.getProbabilities().getStandardSymbols().size(),
+                tuned.getProbabilities().getStandardSymbols().size());
+
+        Path path = directory.resolve("tuned.json");
+        WeightTuner.write(tuned, path);
+        assertEquals(tuned, Config.load(path.toString()));
+        assertEquals(CompiledGame.compile(tuned).getFingerprint(),
+                CompiledGame.compile(Config.load(path.toString())).getFingerprint());
+    }
+}